@@ -19,10 +19,12 @@ import jakarta.inject.Inject;
 import java.text.MessageFormat;
 import java.util.List;
 
-import org.csanchez.rollout.k8sagent.agents.KubernetesAgent;
 import org.csanchez.rollout.k8sagent.model.KubernetesAgentResponse;
+import org.csanchez.rollout.k8sagent.service.AdmissionController;
+import org.csanchez.rollout.k8sagent.service.AgentInvocationService;
 import org.csanchez.rollout.k8sagent.service.AgentResponseFormatter;
 import org.csanchez.rollout.k8sagent.service.AgentResponseParser;
+import org.csanchez.rollout.k8sagent.utils.ToolCallLimiter;
 
 /**
  * A2A framework integration for the KubernetesAgent.
@@ -33,13 +35,19 @@ import org.csanchez.rollout.k8sagent.service.AgentResponseParser;
 public class A2AAgentExecutor {
 
     @Inject
-    KubernetesAgent kubernetesAgent;
+    AgentInvocationService agentInvocationService;
+    
+    @Inject
+    AdmissionController admissionController;
     
     @Inject
     AgentResponseParser responseParser;
     
     @Inject
     AgentResponseFormatter responseFormatter;
+    
+    @Inject
+    ToolCallLimiter toolCallLimiter;
 
     @Produces
     public AgentExecutor agentExecutor() {
@@ -64,8 +72,14 @@ public class A2AAgentExecutor {
                     String memoryId = extractMemoryId(context);
                     Log.debug(MessageFormat.format("Using memory ID: {0}", memoryId));
                     
-                    // Process the request using the KubernetesAgent with memory support
-                    String agentResponse = kubernetesAgent.chat(memoryId, messageContent);
+                    // Process the request using the KubernetesAgent with memory support once admitted,
+                    // sharing admission control, the rate-limit gate and retries with the REST endpoint
+                    String agentResponse = admissionController.admit(admissionController.priorityOf(context.getMessage().getMetadata()), () -> {
+                            // Each request is a new analysis with its own tool call budget
+                            toolCallLimiter.resetSession(memoryId);
+                            return agentInvocationService.chat(memoryId, messageContent);
+                        })
+                        .await().indefinitely();
                     Log.info("KubernetesAgent processed request successfully");
                     
                     // Parse the agent response into a structured format
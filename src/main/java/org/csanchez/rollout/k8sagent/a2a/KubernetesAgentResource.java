@@ -1,21 +1,28 @@
 package org.csanchez.rollout.k8sagent.a2a;
 
 import io.quarkus.logging.Log;
+import io.smallrye.mutiny.Uni;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.Response.Status;
 
+import java.net.URI;
 import java.text.MessageFormat;
+import java.time.Duration;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
-import org.csanchez.rollout.k8sagent.agents.KubernetesAgent;
+import org.csanchez.rollout.k8sagent.model.AnalysisJob;
 import org.csanchez.rollout.k8sagent.model.KubernetesAgentRequest;
 import org.csanchez.rollout.k8sagent.model.KubernetesAgentResponse;
-import org.csanchez.rollout.k8sagent.service.AgentResponseParser;
-import org.csanchez.rollout.k8sagent.utils.RetryHelper;
-import org.csanchez.rollout.k8sagent.utils.ToolCallLimiter;
+import org.csanchez.rollout.k8sagent.service.AnalysisJobService;
+import org.csanchez.rollout.k8sagent.service.AnalysisRejectedException;
+import org.csanchez.rollout.k8sagent.service.AnalysisService;
+import org.csanchez.rollout.k8sagent.service.BatchAnalysisService;
+import org.csanchez.rollout.k8sagent.service.LlmUnavailableException;
 
 /**
  * REST API controller for Kubernetes Agent.
@@ -24,112 +31,182 @@ import org.csanchez.rollout.k8sagent.utils.ToolCallLimiter;
 @Path("/a2a")
 public class KubernetesAgentResource {
 
+    private static final int JOB_QUEUE_FULL_RETRY_AFTER_SECONDS = 30;
+    
+    @Inject
+    AnalysisService analysisService;
+    
     @Inject
-    KubernetesAgent kubernetesAgent;
+    AnalysisJobService jobService;
     
     @Inject
-    AgentResponseParser responseParser;
+    BatchAnalysisService batchService;
      
     /**
-     * Main analyze endpoint
+     * Main analyze endpoint.
+     * Runs on the event loop: the agent conversation runs on a virtual thread, and
+     * rate-limit waits and retry backoffs are scheduled on a timer, so an analysis never
+     * holds a worker thread.
      */
     @POST
     @Path("/analyze")
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
-    public Response analyze(KubernetesAgentRequest request) {
+    public Uni<Response> analyze(KubernetesAgentRequest request) {
         Log.info(MessageFormat.format("Received analysis request from user: {0}", request.userId()));
         
+        return analysisService.analyze(request)
+            .map(response -> {
+                Log.info("Analysis completed successfully");
+                return Response.ok(response).build();
+            })
+            .onFailure(AnalysisRejectedException.class).recoverWithItem(e -> rejectedResponse((AnalysisRejectedException) e))
+            .onFailure(LlmUnavailableException.class).recoverWithItem(e -> unavailableResponse((LlmUnavailableException) e))
+            .onFailure().recoverWithItem(e -> errorResponse(request, e));
+    }
+    
+    /**
+     * Analyze many rollouts at once, sharing one snapshot of each namespace between them.
+     * Responds with one response per request, in request order; a failed analysis gets
+     * the same fallback response as on the single analyze endpoint
+     */
+    @POST
+    @Path("/analyze/batch")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Uni<Response> analyzeBatch(List<KubernetesAgentRequest> requests) {
+        if (requests == null || requests.isEmpty() || requests.size() > batchService.getMaxRequests()) {
+            return Uni.createFrom().item(Response.status(Status.BAD_REQUEST)
+                .entity(Map.of("error", MessageFormat.format("A batch must have between 1 and {0} requests",
+                    batchService.getMaxRequests())))
+                .build());
+        }
+        Log.info(MessageFormat.format("Received batch of {0} analysis requests", requests.size()));
+        
+        return batchService.analyze(requests, (request, e) -> {
+                if (e instanceof AnalysisRejectedException rejected) {
+                    return rejectedBody(rejected);
+                }
+                return e instanceof LlmUnavailableException unavailable ? unavailableBody(unavailable) : errorBody(request, e);
+            })
+            .map(responses -> Response.ok(responses).build());
+    }
+    
+    /**
+     * Submit an analysis to run in the background; poll the returned job for its result
+     */
+    @POST
+    @Path("/analyze/jobs")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response submitJob(KubernetesAgentRequest request) {
         try {
-            // Build prompt with context
-            String prompt = buildPrompt(request);
-            Log.debug(MessageFormat.format("Built prompt: {0}", prompt));
-            
-            // Get effective memory ID (uses memoryId if provided, otherwise falls back to userId)
-            String memoryId = request.getEffectiveMemoryId();
-            Log.debug(MessageFormat.format("Using memory ID: {0}", memoryId));
-            
-            // Reset tool call limiter for this new analysis session
-            ToolCallLimiter.resetSession(memoryId);
-            Log.info(MessageFormat.format("Reset tool call limiter for session: {0}", memoryId));
-            
-            // Execute analysis with retry logic for transient errors
-            String analysisResult = RetryHelper.executeWithRetryOnTransientErrors(
-                () -> kubernetesAgent.chat(memoryId, prompt),
-                "AI agent analysis"
-            );
-            
-            // Parse response
-            KubernetesAgentResponse response = responseParser.parse(analysisResult);
-            Log.info("Analysis completed successfully");
-            return Response.ok(response).build();
-            
-        } catch (Exception e) {
-            Log.error(MessageFormat.format("Error processing request from user: {0}", request.userId()), e);
-            Log.error(MessageFormat.format("Request details - Prompt: {0}", request.prompt()));
-            Log.error(MessageFormat.format("Request details - Context: {0}", request.context()));
-            
-            // Log additional details for debugging
-            if (e instanceof NullPointerException) {
-                Log.error("NullPointerException detected - this may be a Gemini API response issue");
-                Log.error(MessageFormat.format("Stack trace: {0}", getStackTraceAsString(e)));
-            }
-            
-            KubernetesAgentResponse errorResponse = KubernetesAgentResponse.empty()
-                .withAnalysis(MessageFormat.format("Error: {0}", e.getMessage()))
-                .withRootCause("Analysis failed: " + e.getClass().getSimpleName())
-                .withRemediation("Unable to provide remediation due to API error. Please try again.")
-                .withPromote(true) // Default to promote on error
-                .withConfidence(0);
-            
-            return Response.status(Status.INTERNAL_SERVER_ERROR)
-                .entity(errorResponse)
+            AnalysisJob job = jobService.submit(request);
+            return Response.accepted(job)
+                .location(URI.create("/a2a/analyze/jobs/" + job.id()))
+                .build();
+        } catch (RejectedExecutionException e) {
+            Log.warn(MessageFormat.format("Analysis job rejected, queue is full (user: {0})", request.userId()));
+            return Response.status(Status.TOO_MANY_REQUESTS)
+                .header("Retry-After", JOB_QUEUE_FULL_RETRY_AFTER_SECONDS)
+                .entity(Map.of("error", "Too many analysis jobs queued, retry later"))
                 .build();
         }
     }
     
     /**
-     * Convert exception stack trace to string for logging
+     * Get an analysis job. With wait, respond as soon as the job is done or after that
+     * many seconds (long poll, capped at agent.jobs.max-wait)
      */
-    private String getStackTraceAsString(Exception e) {
-        StringBuilder sb = new StringBuilder();
-        for (StackTraceElement element : e.getStackTrace()) {
-            sb.append("\n  at ").append(element.toString());
-        }
-        return sb.toString();
+    @GET
+    @Path("/analyze/jobs/{id}")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Uni<Response> getJob(@PathParam("id") String id, @QueryParam("wait") @DefaultValue("0") int waitSeconds) {
+        return jobService.await(id, Duration.ofSeconds(waitSeconds))
+            .map(job -> job != null
+                ? Response.ok(job).build()
+                : Response.status(Status.NOT_FOUND)
+                    .entity(Map.of("error", "Unknown or expired analysis job: " + id))
+                    .build());
+    }
+    
+    /**
+     * Fallback when admission control rejects the analysis (queue full or queue timeout)
+     */
+    private Response rejectedResponse(AnalysisRejectedException e) {
+        return Response.status(Status.TOO_MANY_REQUESTS)
+            .header("Retry-After", Math.max(1, e.getRetryAfter().toSeconds()))
+            .entity(rejectedBody(e))
+            .build();
+    }
+    
+    private KubernetesAgentResponse rejectedBody(AnalysisRejectedException e) {
+        return KubernetesAgentResponse.empty()
+            .withAnalysis("The agent is overloaded, no analysis was performed")
+            .withRootCause("Analysis unavailable: " + e.getMessage())
+            .withRemediation("Retry the analysis later.")
+            .withPromote(true) // Default to promote on error
+            .withConfidence(0);
     }
     
     /**
-     * Build prompt from request
+     * Fast fallback while the LLM circuit breaker is open, so the caller gets a decision
+     * right away instead of waiting for its own timeout
      */
-    private String buildPrompt(KubernetesAgentRequest request) {
-        Map<String, Object> context = request.context();
+    private Response unavailableResponse(LlmUnavailableException e) {
+        return Response.status(Status.SERVICE_UNAVAILABLE)
+            .header("Retry-After", Math.max(1, e.getRetryAfter().toSeconds()))
+            .entity(unavailableBody(e))
+            .build();
+    }
+    
+    private KubernetesAgentResponse unavailableBody(LlmUnavailableException e) {
+        Log.warn(MessageFormat.format("Analysis not attempted: {0}", e.getMessage()));
         
-        StringBuilder prompt = new StringBuilder();
-        prompt.append(request.prompt()).append("\n\n");
+        return KubernetesAgentResponse.empty()
+            .withAnalysis("The LLM provider is failing, no analysis was performed")
+            .withRootCause("Analysis unavailable: LLM provider circuit breaker is open")
+            .withRemediation("Retry the analysis once the LLM provider has recovered.")
+            .withPromote(true) // Default to promote on error
+            .withConfidence(0);
+    }
+    
+    /**
+     * Log a failed analysis and build the error response returned for it
+     */
+    private Response errorResponse(KubernetesAgentRequest request, Throwable e) {
+        return Response.status(Status.INTERNAL_SERVER_ERROR)
+            .entity(errorBody(request, e))
+            .build();
+    }
+    
+    private KubernetesAgentResponse errorBody(KubernetesAgentRequest request, Throwable e) {
+        Log.error(MessageFormat.format("Error processing request from user: {0}", request.userId()), e);
+        Log.error(MessageFormat.format("Request details - Prompt: {0}", request.prompt()));
+        Log.error(MessageFormat.format("Request details - Context: {0}", request.context()));
         
-        if (context != null) {
-            prompt.append("Context:\n");
-            context.forEach((key, value) -> {
-                if (value != null) {
-                    prompt.append("- ").append(key).append(": ").append(value).append("\n");
-                }
-            });
+        // Log additional details for debugging
+        if (e instanceof NullPointerException) {
+            Log.error("NullPointerException detected - this may be a Gemini API response issue");
+            Log.error(MessageFormat.format("Stack trace: {0}", getStackTraceAsString(e)));
         }
-
-        prompt.append("\nCRITICAL INSTRUCTIONS:\n");
-        prompt.append("1. Gather each piece of data ONCE (max 5-7 tool calls total)\n");
-        prompt.append("2. Do NOT call the same tool multiple times with the same parameters\n");
-        prompt.append("3. After gathering data, STOP and analyze what you have\n");
-        prompt.append("4. Make a decision based on the data collected\n");
-        prompt.append("\nProvide a structured response with:\n");
-        prompt.append("- analysis: Detailed analysis text\n");
-        prompt.append("- rootCause: Identified root cause\n");
-        prompt.append("- remediation: Suggested remediation steps\n");
-        prompt.append("- prLink: GitHub PR link if applicable (can be null)\n");
-        prompt.append("- promote: true to promote canary, false to abort\n");
-        prompt.append("- confidence: Confidence level 0-100\n");
         
-        return prompt.toString();
+        return KubernetesAgentResponse.empty()
+            .withAnalysis(MessageFormat.format("Error: {0}", e.getMessage()))
+            .withRootCause("Analysis failed: " + e.getClass().getSimpleName())
+            .withRemediation("Unable to provide remediation due to API error. Please try again.")
+            .withPromote(true) // Default to promote on error
+            .withConfidence(0);
+    }
+    
+    /**
+     * Convert exception stack trace to string for logging
+     */
+    private String getStackTraceAsString(Throwable e) {
+        StringBuilder sb = new StringBuilder();
+        for (StackTraceElement element : e.getStackTrace()) {
+            sb.append("\n  at ").append(element.toString());
+        }
+        return sb.toString();
     }
-}
\ No newline at end of file
+}
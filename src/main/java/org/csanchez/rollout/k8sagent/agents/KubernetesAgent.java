@@ -17,7 +17,9 @@ import jakarta.enterprise.context.ApplicationScoped;
 @RegisterAiService
 @ApplicationScoped
 public interface KubernetesAgent {
-    @SystemMessage("""
+
+    /** Shared with {@link SecondaryKubernetesAgent} */
+    String SYSTEM_PROMPT = """
         You are an expert Kubernetes SRE and developer with deep knowledge of:
         - Container orchestration and Kubernetes internals
         - Common application failure patterns
@@ -27,10 +29,16 @@ public interface KubernetesAgent {
         Your workflow:
         1. Analyze the problem description and identify the failing pod/service
         2. Gather diagnostic data ONCE (do NOT re-check the same resources):
-             - Pod status and conditions (use debugPod)
-             - Recent events (use getEvents)
-             - Container logs (use getLogs, include previous=true if crashed)
-             - Resource metrics (use getMetrics)
+             - For a specific pod, use snapshotPod: it returns status and conditions,
+               recent events, recent logs (and previous logs if it crashed) and metrics
+               in a single call
+             - Only fall back to debugPod, getEvents, getLogs or getMetrics when you
+               need more detail than the snapshot provides (e.g. more log lines)
+             - To find failure modes in long logs, use getErrorSignatures: it returns each
+               distinct exception, HTTP 5xx status and OOM marker once with its count
+             - For canary analysis, use compareCohorts to compare the stable and canary
+               pods (restarts, readiness, log error rates and error signatures, CPU/memory)
+               in a single call; its diff lists error signatures only seen in canary
              - Related resources like services, deployments (use inspectResources)
         3. STOP gathering data after 5-7 tool calls. Analyze what you have.
         4. Identify root cause using the data you collected
@@ -54,12 +62,14 @@ public interface KubernetesAgent {
         - Each tool can only be called ONCE with the same parameters
         - After 5 tool calls, you MUST stop and provide your analysis
         - Do NOT call inspectResources multiple times for the same label selector
-        - Gather stable AND canary data in parallel if possible, then analyze
+        - Gather stable AND canary data together with compareCohorts, then analyze
         - If you've already inspected stable pods, DO NOT inspect them again
         - If you've already inspected canary pods, DO NOT inspect them again
         
         Be efficient and decisive in your analysis. Quality over quantity.
-    """)
+    """;
+
+    @SystemMessage(SYSTEM_PROMPT)
 	@ToolBox({K8sTools.class, GitHubPRTool.class})
     String chat(@MemoryId String memoryId, @UserMessage String message);
 }
@@ -0,0 +1,25 @@
+package org.csanchez.rollout.k8sagent.agents;
+
+import org.csanchez.rollout.k8sagent.k8s.K8sTools;
+
+import dev.langchain4j.service.MemoryId;
+import dev.langchain4j.service.SystemMessage;
+import dev.langchain4j.service.UserMessage;
+import io.quarkiverse.langchain4j.RegisterAiService;
+import io.quarkiverse.langchain4j.ToolBox;
+import jakarta.enterprise.context.ApplicationScoped;
+
+/**
+ * The {@link KubernetesAgent} on the secondary model provider ("secondary" named model),
+ * used for hedged requests when the primary is slow.
+ * Read-only: it has the Kubernetes tools but cannot create pull requests, so a hedged
+ * analysis never opens a second PR.
+ */
+@RegisterAiService(modelName = "secondary")
+@ApplicationScoped
+public interface SecondaryKubernetesAgent {
+
+    @SystemMessage(KubernetesAgent.SYSTEM_PROMPT)
+    @ToolBox(K8sTools.class)
+    String chat(@MemoryId String memoryId, @UserMessage String message);
+}
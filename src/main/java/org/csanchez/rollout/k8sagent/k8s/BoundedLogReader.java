@@ -0,0 +1,121 @@
+package org.csanchez.rollout.k8sagent.k8s;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.function.Consumer;
+
+/**
+ * Reads the tail of a container log stream line by line under a byte budget.
+ * Lines longer than the per-line cap are cut and the rest of the line is skipped
+ * without being buffered. Lines are kept in a ring that drops the oldest ones once
+ * the budget is spent, so the newest lines of the tail are the ones returned and the
+ * heap used per call is bounded by the budget plus the line cap, no matter how chatty
+ * the container is.
+ */
+public final class BoundedLogReader {
+
+    private static final int CHUNK_SIZE = 8192;
+
+    private BoundedLogReader() {
+    }
+
+    /**
+     * Outcome of reading a log stream
+     * @param lines Number of lines passed to the sink
+     * @param bytesRead Number of bytes consumed from the stream
+     * @param truncatedLines Number of lines cut at the per-line cap
+     * @param droppedLines Number of oldest lines dropped to stay within the byte budget
+     */
+    public record Result(int lines, long bytesRead, int truncatedLines, int droppedLines) {
+
+        /**
+         * @return true if lines had to be dropped because the byte budget was reached
+         */
+        public boolean budgetExhausted() {
+            return droppedLines > 0;
+        }
+    }
+
+    /**
+     * Newest lines fitting in the byte budget, oldest first
+     */
+    private static final class TailRing {
+        final long maxBytes;
+        final ArrayDeque<String> lines = new ArrayDeque<>();
+        final ArrayDeque<Integer> sizes = new ArrayDeque<>();
+        long bytes;
+        int dropped;
+
+        TailRing(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        /**
+         * @param size Bytes the line counts against the budget, including its terminator
+         */
+        void add(String line, int size) {
+            lines.addLast(line);
+            sizes.addLast(size);
+            bytes += size;
+            // Always keep the newest line, which the line cap already bounds
+            while (bytes > maxBytes && lines.size() > 1) {
+                lines.removeFirst();
+                bytes -= sizes.removeFirst();
+                dropped++;
+            }
+        }
+    }
+
+    /**
+     * Read lines until the stream ends and pass the newest ones fitting in maxBytes to the sink, oldest first
+     * @param in The log stream, bounded by the caller (e.g., with tailLines); the caller is responsible for closing it
+     * @param maxBytes Budget of line bytes kept; older lines are dropped once it is spent
+     * @param maxLineBytes Lines longer than this are truncated
+     * @param sink Receives every kept (possibly truncated) line, without the line terminator
+     */
+    public static Result read(InputStream in, long maxBytes, int maxLineBytes, Consumer<String> sink) throws IOException {
+        byte[] chunk = new byte[CHUNK_SIZE];
+        byte[] line = new byte[maxLineBytes];
+        int lineLength = 0;
+        boolean skippingRest = false;
+
+        TailRing tail = new TailRing(maxBytes);
+        int truncatedLines = 0;
+        long bytesRead = 0;
+
+        int n;
+        while ((n = in.read(chunk)) != -1) {
+            bytesRead += n;
+
+            for (int i = 0; i < n; i++) {
+                byte b = chunk[i];
+                if (b == '\n') {
+                    tail.add(decode(line, lineLength, skippingRest), lineLength + 1);
+                    lineLength = 0;
+                    skippingRest = false;
+                } else if (lineLength < maxLineBytes) {
+                    line[lineLength++] = b;
+                } else if (!skippingRest) {
+                    skippingRest = true;
+                    truncatedLines++;
+                }
+            }
+        }
+
+        // Last line without a terminator
+        if (lineLength > 0) {
+            tail.add(decode(line, lineLength, skippingRest), lineLength);
+        }
+
+        tail.lines.forEach(sink);
+        return new Result(tail.lines.size(), bytesRead, truncatedLines, tail.dropped);
+    }
+
+    private static String decode(byte[] line, int length, boolean truncated) {
+        int end = length > 0 && line[length - 1] == '\r' ? length - 1 : length;
+        String text = new String(line, 0, end, StandardCharsets.UTF_8);
+        return truncated ? text + " ...(line truncated)" : text;
+    }
+}
@@ -0,0 +1,18 @@
+package org.csanchez.rollout.k8sagent.k8s;
+
+import jakarta.interceptor.InterceptorBinding;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Serves repeated {@code @Tool} calls of a bean from the shared {@link ToolResultCache}.
+ * Only for read-only tools: a cached call is not executed again.
+ */
+@InterceptorBinding
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface CacheToolResults {
+}
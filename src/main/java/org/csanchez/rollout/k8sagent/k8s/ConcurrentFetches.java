@@ -0,0 +1,60 @@
+package org.csanchez.rollout.k8sagent.k8s;
+
+import io.quarkus.logging.Log;
+
+import java.text.MessageFormat;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Fan-out helper for the composite {@link K8sTools}: runs independent fetches concurrently
+ * under one deadline and merges their results, reporting failed or late fetches per section.
+ */
+public final class ConcurrentFetches {
+
+    private ConcurrentFetches() {
+    }
+
+    /**
+     * Run independent fetches concurrently under one deadline.
+     * Each fetch returns the entries it contributes to the result. A fetch that fails or
+     * does not finish before the deadline is cancelled and reported as "{name}Error",
+     * so the caller still gets partial results.
+     * @param executor Executor the fetches are submitted to (virtual threads in K8sTools)
+     * @param fetches Fetches by section name
+     * @param deadline Absolute {@link System#nanoTime()} deadline shared by all fetches
+     */
+    public static Map<String, Object> fetchAll(ExecutorService executor, Map<String, Callable<Map<String, Object>>> fetches, long deadline) {
+        Map<String, Future<Map<String, Object>>> futures = new LinkedHashMap<>();
+        fetches.forEach((name, fetch) -> futures.put(name, executor.submit(fetch)));
+        
+        Map<String, Object> result = new HashMap<>();
+        for (Map.Entry<String, Future<Map<String, Object>>> entry : futures.entrySet()) {
+            String name = entry.getKey();
+            Future<Map<String, Object>> future = entry.getValue();
+            try {
+                result.putAll(future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                Log.warn(MessageFormat.format("Fetching {0} timed out", name));
+                result.put(name + "Error", "Timed out before the tool deadline");
+            } catch (ExecutionException e) {
+                Log.error(MessageFormat.format("Error fetching {0}", name), e.getCause());
+                result.put(name + "Error", String.valueOf(e.getCause().getMessage()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.values().forEach(f -> f.cancel(true));
+                result.put(name + "Error", "Interrupted");
+                break;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,440 @@
+package org.csanchez.rollout.k8sagent.k8s;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Single-pass index of the error signatures found in container logs.
+ * Recognizes exceptions (class name plus the top stack frames that follow it),
+ * HTTP 5xx responses and out-of-memory markers, and counts each distinct signature.
+ * Lines are scanned with plain character checks instead of regular expressions. Lines
+ * without an error marker, and stack frames past the top ones, are scanned without
+ * allocating; an occurrence only allocates its signature text (constant for HTTP and
+ * most OOM markers) for the lookup, so the index can sit behind every log read.
+ * It is not thread safe; use one index per stream and {@link #merge} them.
+ */
+public final class ErrorSignatureIndex implements Consumer<String> {
+
+    /** Kinds of error signatures */
+    public enum Kind { EXCEPTION, HTTP_5XX, OOM }
+
+    /** Number of stack frames kept in an exception signature */
+    static final int TOP_FRAMES = 3;
+
+    private static final int MAX_SAMPLE_LENGTH = 300;
+
+    /** Lower-case words after which an HTTP status code is expected */
+    private static final String[] HTTP_STATUS_ANCHORS = { "http/", "http ", "status" };
+
+    /** Punctuation and spaces tolerated between an anchor and the status code (e.g. '" ' or '": ') */
+    private static final int STATUS_SKIP_CHARS = 4;
+
+    private static final String[] OOM_MARKERS = {
+        "OutOfMemoryError", "OOMKilled", "Out of memory", "out of memory", "oom-kill", "OOM killer"
+    };
+
+    /** Signatures of HTTP 500 to 599, so status lines look up a constant */
+    private static final String[] HTTP_5XX_SIGNATURES = new String[100];
+
+    static {
+        for (int i = 0; i < HTTP_5XX_SIGNATURES.length; i++) {
+            HTTP_5XX_SIGNATURES[i] = "HTTP " + (500 + i);
+        }
+    }
+
+    private final int maxSignatures;
+    /** Signatures by kind and signature text, so lookups need no composite key */
+    private final Map<Kind, Map<String, Signature>> signatures = new EnumMap<>(Kind.class);
+    /** The same signatures in order of first occurrence */
+    private final List<Signature> ordered = new ArrayList<>();
+    private int lines;
+    private int omitted;
+
+    // Exception whose stack frames are still being read
+    private String pendingException;
+    private String pendingSample;
+    private int pendingLine;
+    private final StringBuilder pendingFrames = new StringBuilder();
+    private int pendingFrameCount;
+
+    /**
+     * @param maxSignatures Maximum number of distinct signatures kept; further ones are only counted as omitted
+     */
+    public ErrorSignatureIndex(int maxSignatures) {
+        this.maxSignatures = maxSignatures;
+        for (Kind kind : Kind.values()) {
+            signatures.put(kind, new HashMap<>());
+        }
+    }
+
+    @Override
+    public void accept(String line) {
+        lines++;
+
+        if (pendingException != null) {
+            int frame = frameStart(line);
+            if (frame >= 0) {
+                if (pendingFrameCount < TOP_FRAMES) {
+                    pendingFrames.append(" < ").append(line, frame, frameEnd(line, frame));
+                    pendingFrameCount++;
+                }
+                return;
+            }
+            if (isFrameContinuation(line)) {
+                return;
+            }
+            flushPending();
+        }
+
+        String oom = oomMarker(line);
+        if (oom != null) {
+            record(Kind.OOM, oom, line, lines);
+            return;
+        }
+
+        String exception = exceptionClass(line);
+        if (exception != null) {
+            pendingException = exception;
+            pendingSample = line;
+            pendingLine = lines;
+            return;
+        }
+
+        int status = http5xx(line);
+        if (status > 0) {
+            record(Kind.HTTP_5XX, HTTP_5XX_SIGNATURES[status - 500], line, lines);
+        }
+    }
+
+    /**
+     * Add the counts of another index to this one
+     */
+    public void merge(ErrorSignatureIndex other) {
+        flushPending();
+        other.flushPending();
+        for (Signature s : other.ordered) {
+            Signature existing = signatures.get(s.kind).get(s.signature);
+            if (existing == null) {
+                if (ordered.size() >= maxSignatures) {
+                    omitted += s.count;
+                    continue;
+                }
+                existing = add(new Signature(s.kind, s.signature, s.sample, s.firstLine));
+            }
+            existing.count += s.count;
+        }
+        omitted += other.omitted;
+        lines += other.lines;
+    }
+
+    /**
+     * @return Number of lines scanned
+     */
+    public int lines() {
+        return lines;
+    }
+
+    /**
+     * @return The keys ("KIND: signature") of all signatures seen
+     */
+    public Set<String> keys() {
+        flushPending();
+        Set<String> keys = new LinkedHashSet<>();
+        for (Signature s : ordered) {
+            keys.add(s.key());
+        }
+        return Collections.unmodifiableSet(keys);
+    }
+
+    /**
+     * @return The count of one signature key, 0 if it was not seen
+     */
+    public int count(String key) {
+        flushPending();
+        int separator = key.indexOf(": ");
+        if (separator < 0) {
+            return 0;
+        }
+        for (Kind kind : Kind.values()) {
+            if (key.startsWith(kind.name()) && kind.name().length() == separator) {
+                Signature s = signatures.get(kind).get(key.substring(separator + 2));
+                return s != null ? s.count : 0;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Signatures ordered by decreasing count, each with its kind, count, first line and a sample line
+     */
+    public List<Map<String, Object>> toList() {
+        flushPending();
+        return toList(ordered);
+    }
+
+    /**
+     * Signatures of this index that the baseline index never saw, ordered by decreasing count
+     * (e.g. failure modes of canary pods that stable pods do not show)
+     */
+    public List<Map<String, Object>> absentFrom(ErrorSignatureIndex baseline) {
+        flushPending();
+        baseline.flushPending();
+        List<Signature> absent = new ArrayList<>();
+        for (Signature s : ordered) {
+            if (!baseline.signatures.get(s.kind).containsKey(s.signature)) {
+                absent.add(s);
+            }
+        }
+        return toList(absent);
+    }
+
+    /**
+     * @return Number of occurrences dropped because maxSignatures distinct signatures were already kept
+     */
+    public int omitted() {
+        return omitted;
+    }
+
+    private static List<Map<String, Object>> toList(Collection<Signature> signatures) {
+        List<Signature> sorted = new ArrayList<>(signatures);
+        sorted.sort(Comparator.comparingInt((Signature s) -> s.count).reversed());
+        List<Map<String, Object>> list = new ArrayList<>(sorted.size());
+        for (Signature s : sorted) {
+            list.add(s.toMap());
+        }
+        return list;
+    }
+
+    private void flushPending() {
+        if (pendingException == null) {
+            return;
+        }
+        String signature = pendingFrames.isEmpty() ? pendingException : pendingException + pendingFrames;
+        record(Kind.EXCEPTION, signature, pendingSample, pendingLine);
+        pendingException = null;
+        pendingSample = null;
+        pendingFrames.setLength(0);
+        pendingFrameCount = 0;
+    }
+
+    private void record(Kind kind, String signature, String sample, int line) {
+        Signature s = signatures.get(kind).get(signature);
+        if (s == null) {
+            if (ordered.size() >= maxSignatures) {
+                omitted++;
+                return;
+            }
+            s = add(new Signature(kind, signature,
+                sample.length() > MAX_SAMPLE_LENGTH ? sample.substring(0, MAX_SAMPLE_LENGTH) + "..." : sample, line));
+        }
+        s.count++;
+    }
+
+    private Signature add(Signature s) {
+        signatures.get(s.kind).put(s.signature, s);
+        ordered.add(s);
+        return s;
+    }
+
+    /**
+     * The first fully qualified or simple class name ending in Exception or Error (e.g. 'java.io.IOException'),
+     * ignoring the bare words "Exception" and "Error"
+     */
+    static String exceptionClass(String line) {
+        int from = 0;
+        while (true) {
+            int exception = line.indexOf("Exception", from);
+            int error = line.indexOf("Error", from);
+            int end;
+            if (exception < 0 && error < 0) {
+                return null;
+            } else if (error < 0 || (exception >= 0 && exception < error)) {
+                end = exception + "Exception".length();
+            } else {
+                end = error + "Error".length();
+            }
+            from = end;
+            if (end < line.length() && isIdentifierPart(line.charAt(end))) {
+                continue;
+            }
+
+            int start = end;
+            while (start > 0 && (isIdentifierPart(line.charAt(start - 1)) || line.charAt(start - 1) == '.')) {
+                start--;
+            }
+            while (start < end && !Character.isJavaIdentifierStart(line.charAt(start))) {
+                start++;
+            }
+            int simpleName = line.lastIndexOf('.', end - 1) + 1;
+            simpleName = Math.max(simpleName, start);
+            boolean bareWord = end - simpleName <= "Exception".length()
+                && (line.startsWith("Exception", simpleName) || line.startsWith("Error", simpleName));
+            if (!bareWord && Character.isUpperCase(line.charAt(simpleName))) {
+                return line.substring(start, end);
+            }
+        }
+    }
+
+    /**
+     * The method of a Java stack frame line ('\tat com.acme.Foo.bar(Foo.java:42)' gives 'com.acme.Foo.bar'),
+     * or null if the line is not a frame
+     */
+    static String stackFrame(String line) {
+        int start = frameStart(line);
+        return start >= 0 ? line.substring(start, frameEnd(line, start)) : null;
+    }
+
+    /**
+     * Start of the method of a stack frame line (after the indentation and 'at '), or -1 if the line is not a frame
+     */
+    private static int frameStart(String line) {
+        int i = leadingWhitespace(line);
+        if (i == 0 || !line.startsWith("at ", i)) {
+            return -1;
+        }
+        i += 3;
+        while (i < line.length() && Character.isWhitespace(line.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * End of the method of a stack frame line: before its '(' and any trailing whitespace
+     */
+    private static int frameEnd(String line, int start) {
+        int end = line.indexOf('(', start);
+        end = end > 0 ? end : line.length();
+        while (end > start && Character.isWhitespace(line.charAt(end - 1))) {
+            end--;
+        }
+        return end;
+    }
+
+    /**
+     * Lines inside a stack trace that are not frames: '... 12 more' and framework markers
+     */
+    private static boolean isFrameContinuation(String line) {
+        int i = leadingWhitespace(line);
+        return line.startsWith("...", i) || line.startsWith("Suppressed:", i);
+    }
+
+    private static int leadingWhitespace(String line) {
+        int i = 0;
+        while (i < line.length() && Character.isWhitespace(line.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * A 500-599 status code following an HTTP status anchor: the request line of an access log
+     * ('"GET /api HTTP/1.1" 503 12'), 'HTTP 502', 'status=500' or 'status code: 504'; otherwise 0
+     */
+    static int http5xx(String line) {
+        for (String anchor : HTTP_STATUS_ANCHORS) {
+            int from = 0;
+            int index;
+            while ((index = indexOfIgnoreCase(line, anchor, from)) >= 0) {
+                from = index + anchor.length();
+                int i = from;
+                if (anchor.equals("http/")) {
+                    while (i < line.length() && (Character.isDigit(line.charAt(i)) || line.charAt(i) == '.')) {
+                        i++;
+                    }
+                }
+                int skipLimit = i + STATUS_SKIP_CHARS;
+                while (i < line.length() && i < skipLimit && !Character.isLetterOrDigit(line.charAt(i))) {
+                    i++;
+                }
+                if (line.regionMatches(true, i, "code", 0, 4)) {
+                    i += 4;
+                    while (i < line.length() && i < skipLimit + 4 && !Character.isLetterOrDigit(line.charAt(i))) {
+                        i++;
+                    }
+                }
+                if (i + 3 <= line.length() && line.charAt(i) == '5' && isDigit(line, i + 1) && isDigit(line, i + 2)
+                        && (i + 3 == line.length() || !Character.isLetterOrDigit(line.charAt(i + 3)) && line.charAt(i + 3) != '.')) {
+                    return 500 + (line.charAt(i + 1) - '0') * 10 + (line.charAt(i + 2) - '0');
+                }
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * The out-of-memory marker on a line; for OutOfMemoryError the reason (e.g. 'Java heap space') is kept
+     */
+    static String oomMarker(String line) {
+        for (String marker : OOM_MARKERS) {
+            int index = line.indexOf(marker);
+            if (index < 0) {
+                continue;
+            }
+            if (marker.equals("OutOfMemoryError")) {
+                int colon = index + marker.length();
+                if (colon < line.length() && line.charAt(colon) == ':') {
+                    return marker + ":" + line.substring(colon + 1).strip();
+                }
+            }
+            return marker;
+        }
+        return null;
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
+
+    private static boolean isDigit(String line, int i) {
+        return i >= 0 && i < line.length() && Character.isDigit(line.charAt(i));
+    }
+
+    private static int indexOfIgnoreCase(String line, String word, int from) {
+        int max = line.length() - word.length();
+        for (int i = from; i <= max; i++) {
+            if (line.regionMatches(true, i, word, 0, word.length())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static final class Signature {
+        final Kind kind;
+        final String signature;
+        final String sample;
+        final int firstLine;
+        int count;
+
+        Signature(Kind kind, String signature, String sample, int firstLine) {
+            this.kind = kind;
+            this.signature = signature;
+            this.sample = sample;
+            this.firstLine = firstLine;
+        }
+
+        String key() {
+            return kind + ": " + signature;
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new HashMap<>();
+            map.put("kind", kind.name());
+            map.put("signature", signature);
+            map.put("count", count);
+            map.put("firstLine", firstLine);
+            map.put("sample", sample);
+            return map;
+        }
+    }
+}
@@ -0,0 +1,385 @@
+package org.csanchez.rollout.k8sagent.k8s;
+
+import io.fabric8.kubernetes.api.model.ConfigMap;
+import io.fabric8.kubernetes.api.model.Event;
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.Service;
+import io.fabric8.kubernetes.api.model.apps.Deployment;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.informers.ResourceEventHandler;
+import io.fabric8.kubernetes.client.informers.SharedIndexInformer;
+import io.fabric8.kubernetes.client.informers.cache.Cache;
+import io.quarkus.logging.Log;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.text.MessageFormat;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Opt-in, informer-backed cache of the resources read by {@link K8sTools}.
+ * When enabled, pods, deployments, services, configmaps and events are watched
+ * once per configured namespace (the client's namespace by default, or cluster-wide
+ * with "*") and tool calls are answered from the local index instead of issuing a
+ * LIST/GET against the API server.
+ * Callers must check {@link #covers(String)} first and fall back to the live API
+ * when the namespace is not watched or the informers have not synced yet.
+ */
+@ApplicationScoped
+public class K8sInformerCache {
+
+    /** Index of "namespace/key=value" for every label on an object */
+    static final String LABEL_INDEX = "labels";
+
+    /** Index of "namespace/name" of the object an event refers to */
+    static final String INVOLVED_OBJECT_INDEX = "involvedObject";
+
+    static final String ALL_NAMESPACES = "*";
+
+    @Inject
+    KubernetesClient k8sClient;
+
+    @Inject
+    @ConfigProperty(name = "k8s.cache.enabled", defaultValue = "false")
+    boolean enabled;
+
+    @Inject
+    @ConfigProperty(name = "k8s.cache.resync-period", defaultValue = "PT10M")
+    Duration resyncPeriod;
+
+    @Inject
+    @ConfigProperty(name = "k8s.cache.namespaces")
+    Optional<List<String>> namespaces;
+
+    @Inject
+    @ConfigProperty(name = "k8s.cache.sync-timeout", defaultValue = "PT2M")
+    Duration syncTimeout;
+
+    private long startedAt;
+
+    private final Map<String, NamespaceInformers> informers = new ConcurrentHashMap<>();
+
+    /** Per-namespace count of observed changes (resourceVersion bumps) to pods, deployments, services and configmaps */
+    private final Map<String, AtomicLong> generations = new ConcurrentHashMap<>();
+
+    /**
+     * Start the informers for every watched namespace scope
+     */
+    void onStart(@Observes StartupEvent ev) {
+        if (!enabled) {
+            Log.debug("Informer cache disabled, K8sTools will query the API server directly");
+            return;
+        }
+
+        List<String> scopes = namespaces.filter(list -> !list.isEmpty()).orElseGet(this::defaultScopes);
+        startedAt = System.nanoTime();
+        for (String scope : scopes) {
+            informers.put(scope, new NamespaceInformers(scope));
+        }
+        Log.info(MessageFormat.format("Started informer cache for namespaces {0} (resync every {1}s)",
+            scopes, resyncPeriod.getSeconds()));
+    }
+
+    /**
+     * Watch the namespace the client is configured for (kubeconfig context or service
+     * account namespace); watching the whole cluster has to be asked for with "*"
+     */
+    private List<String> defaultScopes() {
+        String namespace = k8sClient.getNamespace();
+        return List.of(namespace != null && !namespace.isEmpty() ? namespace : "default");
+    }
+
+    /**
+     * Stop all informers
+     */
+    void onStop(@Observes ShutdownEvent ev) {
+        informers.values().forEach(NamespaceInformers::stop);
+        informers.clear();
+    }
+
+    /**
+     * @return true if caching is enabled in configuration
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Readiness gate: true when every started informer has completed its initial list,
+     * or once the sync timeout has passed. A scope that failed to start or has not synced
+     * by then (e.g. missing RBAC) is left out: {@link #covers(String)} already sends its
+     * reads to the API server, so it must not keep the agent unready forever.
+     */
+    public boolean isReady() {
+        return unsyncedScopes().isEmpty() || System.nanoTime() - startedAt >= syncTimeout.toNanos();
+    }
+
+    /**
+     * @return The watched scopes whose informers have not synced (yet)
+     */
+    public List<String> unsyncedScopes() {
+        List<String> unsynced = new ArrayList<>();
+        informers.forEach((scope, scopeInformers) -> {
+            if (!scopeInformers.hasSynced() && !scopeInformers.failed) {
+                unsynced.add(scope);
+            }
+        });
+        return unsynced;
+    }
+
+    /**
+     * @return true if reads for the namespace can be served from the cache
+     */
+    public boolean covers(String namespace) {
+        NamespaceInformers scope = scopeFor(namespace);
+        return scope != null && scope.hasSynced();
+    }
+
+    /**
+     * Change generation of a namespace: increases whenever a watched pod, deployment,
+     * service or configmap in it is added, deleted or gets a new resourceVersion.
+     * Events are not counted, they churn constantly and only ever append.
+     * @return the generation, or -1 if the namespace is not covered by the cache
+     */
+    public long generation(String namespace) {
+        if (!covers(namespace)) {
+            return -1;
+        }
+        AtomicLong generation = generations.get(namespace);
+        return generation != null ? generation.get() : 0;
+    }
+
+    private void changed(HasMetadata obj) {
+        String namespace = obj.getMetadata().getNamespace();
+        if (namespace != null) {
+            generations.computeIfAbsent(namespace, ns -> new AtomicLong()).incrementAndGet();
+        }
+    }
+
+    /**
+     * @return the cached pod, or null if it does not exist
+     */
+    public Pod getPod(String namespace, String name) {
+        return scopeFor(namespace).pods.getStore().getByKey(Cache.namespaceKeyFunc(namespace, name));
+    }
+
+    /**
+     * List cached pods, optionally restricted to those carrying all the given labels
+     */
+    public List<Pod> listPods(String namespace, Map<String, String> labels) {
+        SharedIndexInformer<Pod> pods = scopeFor(namespace).pods;
+        if (labels == null || labels.isEmpty()) {
+            return pods.getIndexer().byIndex(Cache.NAMESPACE_INDEX, namespace);
+        }
+
+        // Narrow with the index on the first label, then check the remaining ones
+        Map.Entry<String, String> first = labels.entrySet().iterator().next();
+        List<Pod> result = new ArrayList<>();
+        for (Pod pod : pods.getIndexer().byIndex(LABEL_INDEX, labelKey(namespace, first.getKey(), first.getValue()))) {
+            Map<String, String> podLabels = pod.getMetadata().getLabels();
+            if (podLabels != null && podLabels.entrySet().containsAll(labels.entrySet())) {
+                result.add(pod);
+            }
+        }
+        return result;
+    }
+
+    public List<Deployment> listDeployments(String namespace) {
+        return scopeFor(namespace).deployments.getIndexer().byIndex(Cache.NAMESPACE_INDEX, namespace);
+    }
+
+    public List<Service> listServices(String namespace) {
+        return scopeFor(namespace).services.getIndexer().byIndex(Cache.NAMESPACE_INDEX, namespace);
+    }
+
+    public List<ConfigMap> listConfigMaps(String namespace) {
+        return scopeFor(namespace).configMaps.getIndexer().byIndex(Cache.NAMESPACE_INDEX, namespace);
+    }
+
+    /**
+     * List cached events in a namespace, optionally only those about the named object
+     */
+    public List<Event> listEvents(String namespace, String involvedObjectName) {
+        SharedIndexInformer<Event> events = scopeFor(namespace).events;
+        if (involvedObjectName == null || involvedObjectName.isEmpty()) {
+            return events.getIndexer().byIndex(Cache.NAMESPACE_INDEX, namespace);
+        }
+        return events.getIndexer().byIndex(INVOLVED_OBJECT_INDEX, namespace + "/" + involvedObjectName);
+    }
+
+    /**
+     * @return A view of the namespace served from the cache, or null if it is not covered
+     */
+    public NamespaceView view(String namespace) {
+        return covers(namespace) ? new InformerView(namespace) : null;
+    }
+
+    private final class InformerView implements NamespaceView {
+        private final String namespace;
+
+        InformerView(String namespace) {
+            this.namespace = namespace;
+        }
+
+        @Override
+        public Pod getPod(String name) {
+            return K8sInformerCache.this.getPod(namespace, name);
+        }
+
+        @Override
+        public List<Pod> listPods(Map<String, String> labels) {
+            return K8sInformerCache.this.listPods(namespace, labels);
+        }
+
+        @Override
+        public List<Deployment> listDeployments() {
+            return K8sInformerCache.this.listDeployments(namespace);
+        }
+
+        @Override
+        public List<Service> listServices() {
+            return K8sInformerCache.this.listServices(namespace);
+        }
+
+        @Override
+        public List<ConfigMap> listConfigMaps() {
+            return K8sInformerCache.this.listConfigMaps(namespace);
+        }
+
+        @Override
+        public List<Event> listEvents(String involvedObjectName) {
+            return K8sInformerCache.this.listEvents(namespace, involvedObjectName);
+        }
+    }
+
+    private NamespaceInformers scopeFor(String namespace) {
+        NamespaceInformers scope = informers.get(namespace);
+        return scope != null ? scope : informers.get(ALL_NAMESPACES);
+    }
+
+    private static String labelKey(String namespace, String key, String value) {
+        return namespace + "/" + key + "=" + value;
+    }
+
+    private static <T extends HasMetadata> List<String> labelIndex(T obj) {
+        Map<String, String> labels = obj.getMetadata().getLabels();
+        if (labels == null || labels.isEmpty()) {
+            return List.of();
+        }
+        String namespace = obj.getMetadata().getNamespace();
+        List<String> keys = new ArrayList<>(labels.size());
+        labels.forEach((key, value) -> keys.add(labelKey(namespace, key, value)));
+        return keys;
+    }
+
+    private static List<String> involvedObjectIndex(Event event) {
+        if (event.getInvolvedObject() == null || event.getInvolvedObject().getName() == null) {
+            return List.of();
+        }
+        return List.of(event.getMetadata().getNamespace() + "/" + event.getInvolvedObject().getName());
+    }
+
+    /**
+     * The set of informers watching one namespace, or all namespaces for the "*" scope
+     */
+    private class NamespaceInformers {
+        final SharedIndexInformer<Pod> pods;
+        final SharedIndexInformer<Deployment> deployments;
+        final SharedIndexInformer<Service> services;
+        final SharedIndexInformer<ConfigMap> configMaps;
+        final SharedIndexInformer<Event> events;
+        /** An informer of the scope failed to start; it is not waited for */
+        volatile boolean failed;
+
+        NamespaceInformers(String scope) {
+            long resync = resyncPeriod.toMillis();
+            boolean all = ALL_NAMESPACES.equals(scope);
+
+            pods = start(scope, "pods", all
+                ? k8sClient.pods().inAnyNamespace().runnableInformer(resync)
+                : k8sClient.pods().inNamespace(scope).runnableInformer(resync),
+                Map.of(LABEL_INDEX, K8sInformerCache::labelIndex), true);
+            deployments = start(scope, "deployments", all
+                ? k8sClient.apps().deployments().inAnyNamespace().runnableInformer(resync)
+                : k8sClient.apps().deployments().inNamespace(scope).runnableInformer(resync),
+                Map.of(), true);
+            services = start(scope, "services", all
+                ? k8sClient.services().inAnyNamespace().runnableInformer(resync)
+                : k8sClient.services().inNamespace(scope).runnableInformer(resync),
+                Map.of(), true);
+            configMaps = start(scope, "configmaps", all
+                ? k8sClient.configMaps().inAnyNamespace().runnableInformer(resync)
+                : k8sClient.configMaps().inNamespace(scope).runnableInformer(resync),
+                Map.of(), true);
+            events = start(scope, "events", all
+                ? k8sClient.v1().events().inAnyNamespace().runnableInformer(resync)
+                : k8sClient.v1().events().inNamespace(scope).runnableInformer(resync),
+                Map.of(INVOLVED_OBJECT_INDEX, K8sInformerCache::involvedObjectIndex), false);
+        }
+
+        private <T extends HasMetadata> SharedIndexInformer<T> start(String scope, String kind,
+                SharedIndexInformer<T> informer, Map<String, Function<T, List<String>>> indexers,
+                boolean trackChanges) {
+            if (!indexers.isEmpty()) {
+                informer.addIndexers(indexers);
+            }
+            if (trackChanges) {
+                informer.addEventHandler(new ResourceEventHandler<T>() {
+                    @Override
+                    public void onAdd(T obj) {
+                        changed(obj);
+                    }
+
+                    @Override
+                    public void onUpdate(T oldObj, T newObj) {
+                        // Resyncs replay updates with an unchanged resourceVersion
+                        if (!Objects.equals(oldObj.getMetadata().getResourceVersion(),
+                                newObj.getMetadata().getResourceVersion())) {
+                            changed(newObj);
+                        }
+                    }
+
+                    @Override
+                    public void onDelete(T obj, boolean deletedFinalStateUnknown) {
+                        changed(obj);
+                    }
+                });
+            }
+            informer.start().whenComplete((ignored, error) -> {
+                if (error != null) {
+                    failed = true;
+                    Log.error(MessageFormat.format("Informer for {0} in scope {1} failed to start", kind, scope), error);
+                } else {
+                    Log.info(MessageFormat.format("Informer for {0} in scope {1} synced", kind, scope));
+                }
+            });
+            return informer;
+        }
+
+        boolean hasSynced() {
+            return pods.hasSynced() && deployments.hasSynced() && services.hasSynced()
+                && configMaps.hasSynced() && events.hasSynced();
+        }
+
+        void stop() {
+            pods.stop();
+            deployments.stop();
+            services.stop();
+            configMaps.stop();
+            events.stop();
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package org.csanchez.rollout.k8sagent.k8s;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.health.HealthCheck;
+import org.eclipse.microprofile.health.HealthCheckResponse;
+import org.eclipse.microprofile.health.Readiness;
+
+/**
+ * Readiness gate for the informer cache: the agent is not ready until the
+ * informers have completed their initial list, so the first analyses after a
+ * restart do not all fall back to the API server at once. Informers that have
+ * not synced after k8s.cache.sync-timeout no longer hold readiness back.
+ */
+@Readiness
+@ApplicationScoped
+public class K8sInformerCacheHealthCheck implements HealthCheck {
+
+    @Inject
+    K8sInformerCache informerCache;
+
+    @Override
+    public HealthCheckResponse call() {
+        if (!informerCache.isEnabled()) {
+            return HealthCheckResponse.named("k8s-informer-cache").up().withData("enabled", false).build();
+        }
+        return HealthCheckResponse.named("k8s-informer-cache")
+            .status(informerCache.isReady())
+            .withData("enabled", true)
+            .withData("unsynced", String.join(",", informerCache.unsyncedScopes()))
+            .build();
+    }
+}
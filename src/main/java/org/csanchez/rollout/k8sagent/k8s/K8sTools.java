@@ -1,34 +1,115 @@
 package org.csanchez.rollout.k8sagent.k8s;
 
 import dev.langchain4j.agent.tool.Tool;
+import dev.langchain4j.agent.tool.ToolMemoryId;
 import io.fabric8.kubernetes.api.model.*;
 import io.fabric8.kubernetes.api.model.apps.Deployment;
 import io.fabric8.kubernetes.api.model.metrics.v1beta1.PodMetrics;
 import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.dsl.ContainerResource;
+import io.fabric8.kubernetes.client.dsl.FilterWatchListDeletable;
+import io.fabric8.kubernetes.client.dsl.Resource;
+import io.fabric8.kubernetes.client.dsl.TailPrettyLoggable;
+import io.fabric8.kubernetes.client.dsl.TimeTailPrettyLoggable;
 import io.quarkus.logging.Log;
+import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
+import org.csanchez.rollout.k8sagent.utils.LimitToolCalls;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.text.MessageFormat;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 /**
  * Kubernetes tools for LangChain4j
  */
 @ApplicationScoped
+@LimitToolCalls
+@CacheToolResults
 public class K8sTools {
     
     @Inject
     KubernetesClient k8sClient;
     
+    @Inject
+    K8sInformerCache informerCache;
+    
+    @Inject
+    NamespaceSnapshots snapshots;
+    
+    @Inject
+    PodMetricsSampler metricsSampler;
+    
+    @Inject
+    @ConfigProperty(name = "k8s.tools.inspect-timeout", defaultValue = "PT10S")
+    Duration inspectTimeout;
+    
+    @Inject
+    @ConfigProperty(name = "k8s.logs.max-bytes", defaultValue = "65536")
+    long logMaxBytes;
+    
+    @Inject
+    @ConfigProperty(name = "k8s.logs.max-line-length", defaultValue = "2048")
+    int logMaxLineBytes;
+    
+    @Inject
+    @ConfigProperty(name = "k8s.logs.compaction.enabled", defaultValue = "true")
+    boolean logCompaction;
+    
+    private final ExecutorService toolExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    
+    /** Bounds on the payload returned by snapshotPod */
+    private static final int SNAPSHOT_EVENTS = 20;
+    private static final int SNAPSHOT_LOG_LINES = 50;
+    private static final int SNAPSHOT_LOG_BYTES = 8_192;
+    
+    /** Maximum number of templates (ordinary and error lines) kept when compacting logs */
+    private static final int LOG_COMPACTION_ENTRIES = 300;
+    
+    /** Maximum number of distinct error signatures indexed per log read or cohort */
+    private static final int MAX_ERROR_SIGNATURES = 50;
+    
+    /** Bounds on the work done by compareCohorts */
+    private static final int MAX_COHORT_SAMPLE = 10;
+    private static final int COHORT_LOG_LINES = 200;
+    private static final Duration COHORT_COLLECT_SLACK = Duration.ofSeconds(1);
+    private static final int COHORT_SIGNATURES = 10;
+    
+    /** Log lines counted as errors when comparing cohorts */
+    private static final Pattern ERROR_LINE = Pattern.compile("(?i)\\b(error|fatal|panic)\\b|exception");
+    
+    /** One term of an equality-based label selector: key=value or key==value */
+    private static final Pattern LABEL_EQUALITY = Pattern.compile("([A-Za-z0-9][-A-Za-z0-9_./]*)\\s*==?\\s*([-A-Za-z0-9_.]*)");
+    
+    /** Maximum number of items listed per inspectResources section */
+    private static final int MAX_LISTED_ITEMS = 500;
+    
+    /** Orders events oldest first by their last (or creation) timestamp */
+    private static final Comparator<Event> EVENT_RECENCY = Comparator.comparing(K8sTools::eventTimestamp);
+    
+    @PreDestroy
+    void shutdown() {
+        toolExecutor.shutdownNow();
+    }
+    
     /**
      * Debug a Kubernetes pod to get detailed information about its status and conditions
+     * @param memoryId The analysis session, supplied by the framework (not by the LLM)
      * @param namespace The Kubernetes namespace where the pod is located (e.g., 'default', 'kube-system')
      * @param podName The exact name of the pod to debug (e.g., 'my-app-7d8f9c5b6-xyz12')
      */
     @Tool("Debug a Kubernetes pod to get detailed information about its status and conditions")
-    public Map<String, Object> debugPod(String namespace, String podName) {
+    public Map<String, Object> debugPod(@ToolMemoryId String memoryId, String namespace, String podName) {
         Log.info("=== Executing Tool: debugPod ===");
         
         if (namespace == null || namespace.isEmpty() || podName == null || podName.isEmpty()) {
@@ -38,89 +119,13 @@ public class K8sTools {
         
         
         try {
-            Pod pod = k8sClient.pods()
-                .inNamespace(namespace)
-                .withName(podName)
-                .get();
+            Pod pod = fetchPod(view(memoryId, namespace), namespace, podName);
             
             if (pod == null) {
                 return Map.of("error", MessageFormat.format("Pod not found: {0}/{1}", namespace, podName));
             }
             
-            PodStatus status = pod.getStatus();
-            
-            Map<String, Object> debugInfo = new HashMap<>();
-            debugInfo.put("podName", podName);
-            debugInfo.put("namespace", namespace);
-            debugInfo.put("phase", status.getPhase());
-            debugInfo.put("reason", status.getReason());
-            debugInfo.put("message", status.getMessage());
-            debugInfo.put("hostIP", status.getHostIP());
-            debugInfo.put("podIP", status.getPodIP());
-            debugInfo.put("startTime", status.getStartTime());
-            
-            // Pod conditions
-            List<Map<String, Object>> conditions = status.getConditions().stream()
-                .map(c -> {
-                    Map<String, Object> condition = new HashMap<>();
-                    condition.put("type", c.getType());
-                    condition.put("status", c.getStatus());
-                    condition.put("reason", c.getReason() != null ? c.getReason() : "");
-                    condition.put("message", c.getMessage() != null ? c.getMessage() : "");
-                    condition.put("lastTransitionTime", c.getLastTransitionTime() != null ? c.getLastTransitionTime() : "");
-                    return condition;
-                })
-                .collect(Collectors.toList());
-            debugInfo.put("conditions", conditions);
-            
-            // Container statuses
-            List<Map<String, Object>> containerStatuses = new ArrayList<>();
-            if (status.getContainerStatuses() != null) {
-                for (ContainerStatus cs : status.getContainerStatuses()) {
-                    Map<String, Object> containerInfo = new HashMap<>();
-                    containerInfo.put("name", cs.getName());
-                    containerInfo.put("ready", cs.getReady());
-                    containerInfo.put("restartCount", cs.getRestartCount());
-                    containerInfo.put("image", cs.getImage());
-                    
-                    ContainerState state = cs.getState();
-                    if (state.getRunning() != null) {
-                        containerInfo.put("state", "Running");
-                        containerInfo.put("startedAt", state.getRunning().getStartedAt());
-                    } else if (state.getWaiting() != null) {
-                        containerInfo.put("state", "Waiting");
-                        containerInfo.put("reason", state.getWaiting().getReason());
-                        containerInfo.put("message", state.getWaiting().getMessage());
-                    } else if (state.getTerminated() != null) {
-                        containerInfo.put("state", "Terminated");
-                        containerInfo.put("reason", state.getTerminated().getReason());
-                        containerInfo.put("message", state.getTerminated().getMessage());
-                        containerInfo.put("exitCode", state.getTerminated().getExitCode());
-                    }
-                    
-                    if (cs.getLastState() != null && cs.getLastState().getTerminated() != null) {
-                        ContainerStateTerminated last = cs.getLastState().getTerminated();
-                        containerInfo.put("lastTerminated", Map.of(
-                            "reason", last.getReason() != null ? last.getReason() : "",
-                            "exitCode", last.getExitCode(),
-                            "message", last.getMessage() != null ? last.getMessage() : ""
-                        ));
-                    }
-                    
-                    containerStatuses.add(containerInfo);
-                }
-            }
-            debugInfo.put("containerStatuses", containerStatuses);
-            debugInfo.put("labels", pod.getMetadata().getLabels());
-            
-            List<OwnerReference> owners = pod.getMetadata().getOwnerReferences();
-            if (owners != null && !owners.isEmpty()) {
-                List<Map<String, String>> ownerInfo = owners.stream()
-                    .map(o -> Map.of("kind", o.getKind(), "name", o.getName()))
-                    .collect(Collectors.toList());
-                debugInfo.put("owners", ownerInfo);
-            }
-            
+            Map<String, Object> debugInfo = describePod(pod);
             Log.info(MessageFormat.format("Successfully retrieved debug info for pod: {0}/{1}", namespace, podName));
             return debugInfo;
             
@@ -132,12 +137,13 @@ public class K8sTools {
     
     /**
      * Get Kubernetes events for a namespace or specific pod
+     * @param memoryId The analysis session, supplied by the framework (not by the LLM)
      * @param namespace The Kubernetes namespace to get events from (e.g., 'default', 'kube-system')
      * @param podName Optional: The exact name of a specific pod to filter events for
      * @param limit Optional: Maximum number of events to return (default: 50)
      */
     @Tool("Get Kubernetes events for a namespace or specific pod")
-    public Map<String, Object> getEvents(String namespace, String podName, Integer limit) {
+    public Map<String, Object> getEvents(@ToolMemoryId String memoryId, String namespace, String podName, Integer limit) {
         Log.info("=== Executing Tool: getEvents ===");
         
         if (namespace == null || namespace.isEmpty()) {
@@ -148,41 +154,8 @@ public class K8sTools {
         Log.info(MessageFormat.format("Getting events for namespace: {0}, pod: {1}, limit: {2}", namespace, podName, eventLimit));
         
         try {
-            List<Event> events = k8sClient.v1().events()
-                .inNamespace(namespace)
-                .list()
-                .getItems();
-            
-            if (podName != null && !podName.isEmpty()) {
-                events = events.stream()
-                    .filter(e -> e.getInvolvedObject() != null && 
-                                podName.equals(e.getInvolvedObject().getName()))
-                    .collect(Collectors.toList());
-            }
-            
-            events.sort((e1, e2) -> {
-                String t1 = e1.getLastTimestamp() != null ? e1.getLastTimestamp() : 
-                            e1.getMetadata().getCreationTimestamp();
-                String t2 = e2.getLastTimestamp() != null ? e2.getLastTimestamp() : 
-                            e2.getMetadata().getCreationTimestamp();
-                return t2.compareTo(t1);
-            });
-            
-            events = events.stream().limit(eventLimit).collect(Collectors.toList());
-            
-            List<Map<String, Object>> eventList = events.stream()
-                .map(e -> Map.of(
-                    "type", e.getType() != null ? e.getType() : "Normal",
-                    "reason", e.getReason() != null ? e.getReason() : "",
-                    "message", e.getMessage() != null ? e.getMessage() : "",
-                    "count", e.getCount() != null ? e.getCount() : 1,
-                    "firstTimestamp", e.getFirstTimestamp() != null ? e.getFirstTimestamp() : "",
-                    "lastTimestamp", e.getLastTimestamp() != null ? e.getLastTimestamp() : "",
-                    "involvedObject", e.getInvolvedObject() != null ? Map.of(
-                        "kind", e.getInvolvedObject().getKind(),
-                        "name", e.getInvolvedObject().getName()
-                    ) : Map.of()
-                ))
+            List<Map<String, Object>> eventList = recentEvents(view(memoryId, namespace), namespace, podName, eventLimit).stream()
+                .map(this::toEventInfo)
                 .collect(Collectors.toList());
             Log.info(MessageFormat.format("Retrieved {0} events", eventList.size()));
             
@@ -199,19 +172,20 @@ public class K8sTools {
         }
     }
     
-    /**
-     * Get pod logs
-     */
     /**
      * Get logs from a Kubernetes pod
+     * @param memoryId The analysis session, supplied by the framework (not by the LLM)
      * @param namespace The Kubernetes namespace where the pod is located (e.g., 'default', 'kube-system')
      * @param podName The exact name of the pod to get logs from (e.g., 'my-app-7d8f9c5b6-xyz12')
      * @param containerName Optional: The name of the container within the pod (if pod has multiple containers)
      * @param previous Optional: Set to true to get logs from the previous terminated container instance
      * @param tailLines Optional: Number of lines to tail from the end of the logs (default: 100)
+     * @param sinceSeconds Optional: Only return logs newer than this many seconds
+     * @param sinceTime Optional: Only return logs newer than this RFC3339 timestamp (e.g., '2024-01-01T10:00:00Z')
      */
     @Tool("Get logs from a Kubernetes pod")
-    public Map<String, Object> getLogs(String namespace, String podName, String containerName, Boolean previous, Integer tailLines) {
+    public Map<String, Object> getLogs(@ToolMemoryId String memoryId, String namespace, String podName, String containerName, Boolean previous, Integer tailLines,
+            Integer sinceSeconds, String sinceTime) {
         Log.info("=== Executing Tool: getLogs ===");
         
         if (namespace == null || namespace.isEmpty() || podName == null || podName.isEmpty()) {
@@ -220,16 +194,13 @@ public class K8sTools {
         
         boolean getPrevious = previous != null && previous;
         int lines = (tailLines != null && tailLines > 0) ? tailLines : 100;
-        Log.info(MessageFormat.format("Getting logs for pod: {0}/{1}, container: {2}, previous: {3}, lines: {4}",
-                namespace, podName, containerName, getPrevious, lines));
+        Log.info(MessageFormat.format("Getting logs for pod: {0}/{1}, container: {2}, previous: {3}, lines: {4}, sinceSeconds: {5}, sinceTime: {6}",
+                namespace, podName, containerName, getPrevious, lines, sinceSeconds, sinceTime));
         
         
         try {
             // First, check if the pod exists
-            Pod pod = k8sClient.pods()
-                .inNamespace(namespace)
-                .withName(podName)
-                .get();
+            Pod pod = fetchPod(view(memoryId, namespace), namespace, podName);
             
             if (pod == null) {
                 String errorMsg = MessageFormat.format("Pod not found: {0}/{1}", namespace, podName);
@@ -237,50 +208,32 @@ public class K8sTools {
                 return Map.of("error", errorMsg);
             }
             
-            // If no container name specified, check if pod has multiple containers
-            String targetContainer = containerName;
-            if (targetContainer == null || targetContainer.isEmpty()) {
-                List<Container> containers = pod.getSpec().getContainers();
-                if (containers != null && containers.size() > 1) {
-                    // Multi-container pod - default to the first non-sidecar container
-                    // Typically istio-proxy, envoy, etc. are sidecars
-                    targetContainer = containers.stream()
-                        .filter(c -> !c.getName().contains("proxy") &&
-                                   !c.getName().contains("envoy") &&
-                                   !c.getName().contains("sidecar"))
-                        .findFirst()
-                        .map(Container::getName)
-                        .orElse(containers.get(0).getName());
-                    
-                    Log.info(MessageFormat.format("Multi-container pod detected. Using container: {0}", targetContainer));
-                } else if (containers != null && !containers.isEmpty()) {
-                    targetContainer = containers.get(0).getName();
-                }
-            }
-            
-            var podResource = k8sClient.pods()
-                .inNamespace(namespace)
-                .withName(podName);
+            String targetContainer = resolveContainer(pod, containerName);
+            LogText logs = newLogText();
+            BoundedLogReader.Result read = streamLogs(namespace, podName, targetContainer, getPrevious, lines,
+                sinceSeconds, sinceTime, logMaxBytes, logs);
+            Log.info(MessageFormat.format("Retrieved {0} lines ({1} bytes) of logs", read.lines(), read.bytesRead()));
             
-            String logs;
-            if (targetContainer != null && !targetContainer.isEmpty()) {
-                logs = podResource.inContainer(targetContainer).tailingLines(lines).getLog(getPrevious);
-            } else {
-                logs = podResource.tailingLines(lines).getLog(getPrevious);
+            Map<String, Object> result = new HashMap<>();
+            result.put("namespace", namespace);
+            result.put("podName", podName);
+            result.put("container", targetContainer != null ? targetContainer : "default");
+            result.put("previous", getPrevious);
+            result.put("logs", logs.text());
+            if (logs.compacted()) {
+                result.put("compaction", MessageFormat.format(
+                    "{0} lines compacted into {1} entries; repeated lines are shown once as [×count, lines first-last] with numbers, ids and timestamps masked",
+                    read.lines(), logs.entries()));
             }
-            
-            if (logs == null) {
-                logs = "(no logs available)";
+            if (read.budgetExhausted()) {
+                result.put("note", MessageFormat.format(
+                    "The {0} oldest lines were dropped to stay within the {1} byte budget; use sinceTime or fewer tailLines to see them",
+                    read.droppedLines(), logMaxBytes));
             }
-            Log.info(MessageFormat.format("Retrieved {0} characters of logs", logs.length()));
-            
-            return Map.of(
-                "namespace", namespace,
-                "podName", podName,
-                "container", targetContainer != null ? targetContainer : "default",
-                "previous", getPrevious,
-                "logs", logs
-            );
+            if (read.truncatedLines() > 0) {
+                result.put("truncatedLines", read.truncatedLines());
+            }
+            return result;
             
         } catch (Exception e) {
             Log.error("Error getting logs", e);
@@ -289,15 +242,69 @@ public class K8sTools {
     }
     
     /**
-     * Get pod metrics
+     * Index the error signatures in a container's logs instead of returning the raw lines.
+     * Each signature (exception class with its top stack frames, HTTP 5xx status, OOM marker)
+     * is returned once with its number of occurrences and a sample line.
+     * @param memoryId The analysis session, supplied by the framework (not by the LLM)
+     * @param namespace The Kubernetes namespace where the pod is located (e.g., 'default', 'kube-system')
+     * @param podName The exact name of the pod (e.g., 'my-app-7d8f9c5b6-xyz12')
+     * @param containerName Optional: The name of the container within the pod (if pod has multiple containers)
+     * @param previous Optional: Set to true to index the logs of the previous terminated container instance
+     * @param tailLines Optional: Number of lines to scan from the end of the logs (default: 1000)
      */
+    @Tool("Get the distinct error signatures (exception class and top stack frames, HTTP 5xx statuses, out-of-memory markers) in a pod's logs with their counts. Much more compact than getLogs for finding failure modes.")
+    public Map<String, Object> getErrorSignatures(@ToolMemoryId String memoryId, String namespace, String podName, String containerName, Boolean previous,
+            Integer tailLines) {
+        Log.info("=== Executing Tool: getErrorSignatures ===");
+        
+        if (namespace == null || namespace.isEmpty() || podName == null || podName.isEmpty()) {
+            return Map.of("error", "namespace and podName are required and cannot be empty");
+        }
+        
+        boolean getPrevious = previous != null && previous;
+        int lines = (tailLines != null && tailLines > 0) ? tailLines : 1000;
+        Log.info(MessageFormat.format("Indexing error signatures for pod: {0}/{1}, container: {2}, previous: {3}, lines: {4}",
+                namespace, podName, containerName, getPrevious, lines));
+        
+        try {
+            Pod pod = fetchPod(view(memoryId, namespace), namespace, podName);
+            
+            if (pod == null) {
+                return Map.of("error", MessageFormat.format("Pod not found: {0}/{1}", namespace, podName));
+            }
+            
+            String targetContainer = resolveContainer(pod, containerName);
+            ErrorSignatureIndex index = new ErrorSignatureIndex(MAX_ERROR_SIGNATURES);
+            BoundedLogReader.Result read = streamLogs(namespace, podName, targetContainer, getPrevious, lines,
+                null, null, logMaxBytes, index);
+            
+            Map<String, Object> result = new HashMap<>();
+            result.put("namespace", namespace);
+            result.put("podName", podName);
+            result.put("container", targetContainer != null ? targetContainer : "default");
+            result.put("previous", getPrevious);
+            result.put("linesScanned", read.lines());
+            result.put("signatures", index.toList());
+            if (index.omitted() > 0) {
+                result.put("omittedOccurrences", index.omitted());
+            }
+            Log.info(MessageFormat.format("Found {0} error signatures in {1} lines", index.keys().size(), read.lines()));
+            return result;
+            
+        } catch (Exception e) {
+            Log.error("Error indexing error signatures", e);
+            return Map.of("error", e.getMessage());
+        }
+    }
+    
     /**
      * Get resource metrics (CPU and memory usage) for a Kubernetes pod. IMPORTANT: You must provide both the namespace and the exact pod name.
+     * @param memoryId The analysis session, supplied by the framework (not by the LLM)
      * @param namespace The Kubernetes namespace where the pod is located (e.g., 'default', 'kube-system'). REQUIRED.
      * @param podName The exact name of the pod to get metrics for (e.g., 'my-app-7d8f9c5b6-xyz12'). REQUIRED. Do NOT leave this empty.
      */
-    @Tool("Get resource metrics (CPU and memory usage) for a Kubernetes pod. IMPORTANT: You must provide both the namespace and the exact pod name.")
-    public Map<String, Object> getMetrics(String namespace, String podName) {
+    @Tool("Get resource metrics (CPU and memory usage) for a Kubernetes pod. Once the pod has been sampled for a while, returns current/min/max/p50/p95 and trend per minute over the sampling window. IMPORTANT: You must provide both the namespace and the exact pod name.")
+    public Map<String, Object> getMetrics(@ToolMemoryId String memoryId, String namespace, String podName) {
         Log.info("=== Executing Tool: getMetrics ===");
         
         if (namespace == null || namespace.isEmpty() || podName == null || podName.isEmpty()) {
@@ -307,103 +314,135 @@ public class K8sTools {
         
         
         try {
-            // Try to get actual metrics from metrics-server
-            try {
-                PodMetrics metrics = k8sClient.top().pods()
-                    .inNamespace(namespace)
-                    .withName(podName)
-                    .metric();
-                
-                if (metrics != null) {
-                    List<Map<String, Object>> containerMetrics = metrics.getContainers().stream()
-                        .map(c -> {
-                            Map<String, Object> m = new HashMap<>();
-                            m.put("name", c.getName());
-                            m.put("cpu", c.getUsage().get("cpu").toString());
-                            m.put("memory", c.getUsage().get("memory").toString());
-                            return m;
-                        })
-                        .collect(Collectors.toList());
-                    Log.info(MessageFormat.format("Retrieved actual metrics for {0} containers", containerMetrics.size()));
-                    
-                    return Map.of(
-                        "namespace", namespace,
-                        "podName", podName,
-                        "timestamp", metrics.getTimestamp(),
-                        "containers", containerMetrics
-                    );
-                }
-            } catch (Exception metricsException) {
-                Log.warn("Metrics-server not available, falling back to resource requests/limits");
-            }
-            
-            // Fallback: Get resource requests and limits from pod spec
-            Pod pod = k8sClient.pods()
-                .inNamespace(namespace)
-                .withName(podName)
-                .get();
+            return podMetrics(view(memoryId, namespace), namespace, podName, null);
+        } catch (Exception e) {
+            Log.error("Error getting metrics", e);
+            return Map.of("error", e.getMessage());
+        }
+    }
+    
+    /**
+     * Take a snapshot of a pod in one call: status, recent events, log tail and metrics.
+     * The pod is read once and events, logs and metrics are fetched concurrently,
+     * replacing separate debugPod, getEvents, getLogs and getMetrics calls.
+     * @param memoryId The analysis session, supplied by the framework (not by the LLM)
+     * @param namespace The Kubernetes namespace where the pod is located (e.g., 'default', 'kube-system')
+     * @param podName The exact name of the pod to snapshot (e.g., 'my-app-7d8f9c5b6-xyz12')
+     * @param containerName Optional: The container to get logs from (defaults to the main application container)
+     */
+    @Tool("Take a snapshot of a Kubernetes pod in ONE call: status and conditions, recent events, recent logs (and previous logs if it restarted) and CPU/memory metrics. Prefer this over calling debugPod, getEvents, getLogs and getMetrics separately.")
+    public Map<String, Object> snapshotPod(@ToolMemoryId String memoryId, String namespace, String podName, String containerName) {
+        Log.info("=== Executing Tool: snapshotPod ===");
+        
+        if (namespace == null || namespace.isEmpty() || podName == null || podName.isEmpty()) {
+            return Map.of("error", "namespace and podName are required and cannot be empty");
+        }
+        Log.info(MessageFormat.format("Taking snapshot of pod: {0}/{1}", namespace, podName));
+        
+        try {
+            NamespaceView view = view(memoryId, namespace);
+            Pod pod = fetchPod(view, namespace, podName);
             
             if (pod == null) {
-                return Map.of("error", "Pod not found: " + namespace + "/" + podName);
+                return Map.of("error", MessageFormat.format("Pod not found: {0}/{1}", namespace, podName));
             }
             
-            Map<String, Object> metricsInfo = new HashMap<>();
-            metricsInfo.put("podName", podName);
-            metricsInfo.put("namespace", namespace);
-            metricsInfo.put("note", "Showing resource requests/limits (metrics-server not available for actual usage)");
+            String targetContainer = resolveContainer(pod, containerName);
+            boolean restarted = hasTerminatedBefore(pod, targetContainer);
             
-            List<Map<String, Object>> containerResources = new ArrayList<>();
-            if (pod.getSpec().getContainers() != null) {
-                for (var container : pod.getSpec().getContainers()) {
-                    ResourceRequirements resources = container.getResources();
-                    
-                    if (resources != null) {
-                        Map<String, Object> containerInfo = new HashMap<>();
-                        containerInfo.put("containerName", container.getName());
-                        
-                        // Requests
-                        if (resources.getRequests() != null) {
-                            Map<String, String> requests = new HashMap<>();
-                            resources.getRequests().forEach((key, value) ->
-                                requests.put(key, value.toString())
-                            );
-                            containerInfo.put("requests", requests);
-                        }
-                        
-                        // Limits
-                        if (resources.getLimits() != null) {
-                            Map<String, String> limits = new HashMap<>();
-                            resources.getLimits().forEach((key, value) ->
-                                limits.put(key, value.toString())
-                            );
-                            containerInfo.put("limits", limits);
-                        }
-                        
-                        containerResources.add(containerInfo);
-                    }
-                }
+            Map<String, Callable<Map<String, Object>>> fetches = new LinkedHashMap<>();
+            fetches.put("events", () -> Map.of("events", recentEvents(view, namespace, podName, SNAPSHOT_EVENTS).stream()
+                .map(this::toEventInfo)
+                .collect(Collectors.toList())));
+            fetches.put("logs", () -> Map.of("logs",
+                readLogs(namespace, podName, targetContainer, false, SNAPSHOT_LOG_LINES, SNAPSHOT_LOG_BYTES)));
+            if (restarted) {
+                fetches.put("previousLogs", () -> Map.of("previousLogs",
+                    readLogs(namespace, podName, targetContainer, true, SNAPSHOT_LOG_LINES, SNAPSHOT_LOG_BYTES)));
             }
+            fetches.put("metrics", () -> Map.of("metrics", podMetrics(view, namespace, podName, pod)));
             
-            metricsInfo.put("containers", containerResources);
-            Log.info(MessageFormat.format("Retrieved resource requests/limits for pod: {0}/{1}", namespace, podName));
+            Map<String, Object> snapshot = new HashMap<>();
+            snapshot.put("status", describePod(pod));
+            snapshot.put("container", targetContainer != null ? targetContainer : "default");
+            snapshot.putAll(fetchConcurrently(fetches, inspectTimeout));
             
-            return metricsInfo;
+            Log.info(MessageFormat.format("Successfully took snapshot of pod: {0}/{1}", namespace, podName));
+            return snapshot;
             
         } catch (Exception e) {
-            Log.error("Error getting metrics", e);
+            Log.error("Error taking pod snapshot", e);
+            return Map.of("error", e.getMessage());
+        }
+    }
+    
+    /**
+     * Compare the stable and canary pods of a rollout in one call.
+     * Both label selectors are resolved concurrently, then logs and metrics are fetched
+     * concurrently for up to podsPerCohort pods of each cohort and aggregated into a diff.
+     * @param memoryId The analysis session, supplied by the framework (not by the LLM)
+     * @param namespace The Kubernetes namespace of the rollout (e.g., 'default')
+     * @param stableSelector Optional: Label selector of the stable pods (default: 'role=stable'); equality terms only
+     * @param canarySelector Optional: Label selector of the canary pods (default: 'role=canary'); equality terms only
+     * @param podsPerCohort Optional: Number of pods sampled per cohort for logs and metrics (default: 3, max: 10)
+     */
+    @Tool("Compare stable vs canary pods in ONE call: restart counts, readiness, error-line rates and error signatures in recent logs and CPU/memory usage for each cohort, plus the canary-minus-stable differences including error signatures only seen in canary. Use this instead of inspecting each cohort and pod separately.")
+    public Map<String, Object> compareCohorts(@ToolMemoryId String memoryId, String namespace, String stableSelector, String canarySelector, Integer podsPerCohort) {
+        Log.info("=== Executing Tool: compareCohorts ===");
+        
+        if (namespace == null || namespace.isEmpty()) {
+            return Map.of("error", "namespace is required and cannot be empty");
+        }
+        String stable = (stableSelector != null && !stableSelector.isEmpty()) ? stableSelector : "role=stable";
+        String canary = (canarySelector != null && !canarySelector.isEmpty()) ? canarySelector : "role=canary";
+        int sampleSize = (podsPerCohort != null && podsPerCohort > 0) ? Math.min(podsPerCohort, MAX_COHORT_SAMPLE) : 3;
+        Log.info(MessageFormat.format("Comparing cohorts in namespace: {0}, stable: {1}, canary: {2}, pods per cohort: {3}",
+            namespace, stable, canary, sampleSize));
+        
+        try {
+            parseLabelSelector(stable);
+            parseLabelSelector(canary);
+        } catch (IllegalArgumentException e) {
+            Log.warn(e.getMessage());
+            return Map.of("error", e.getMessage());
+        }
+        
+        try {
+            // Inner per-pod fetches share the deadline; the cohorts get a little slack to collect them
+            long deadline = System.nanoTime() + inspectTimeout.toNanos();
+            NamespaceView view = view(memoryId, namespace);
+            Map<String, Callable<Map<String, Object>>> cohorts = new LinkedHashMap<>();
+            cohorts.put("stable", () -> Map.of("stable", summarizeCohort(view, namespace, stable, sampleSize, deadline)));
+            cohorts.put("canary", () -> Map.of("canary", summarizeCohort(view, namespace, canary, sampleSize, deadline)));
+            Map<String, Object> result = new HashMap<>(
+                fetchConcurrently(cohorts, deadline + COHORT_COLLECT_SLACK.toNanos()));
+            result.put("namespace", namespace);
+            
+            if (result.get("stable") instanceof CohortSummary s && result.get("canary") instanceof CohortSummary c) {
+                result.put("stable", s.toMap());
+                result.put("canary", c.toMap());
+                result.put("diff", c.diff(s));
+            }
+            
+            Log.info("Successfully compared cohorts");
+            return result;
+            
+        } catch (Exception e) {
+            Log.error("Error comparing cohorts", e);
             return Map.of("error", e.getMessage());
         }
     }
     
     /**
      * Inspect Kubernetes resources in a namespace. Use labelSelector to filter pods by labels (e.g., 'role=stable' or 'role=canary')
+     * @param memoryId The analysis session, supplied by the framework (not by the LLM)
      * @param namespace The Kubernetes namespace to inspect (e.g., 'default', 'kube-system')
      * @param resourceType Optional: Type of resource to inspect ('deployment', 'pods', 'service', 'configmap'). Leave null to inspect all types.
      * @param resourceName Optional: Specific resource name to filter by
-     * @param labelSelector Optional: Label selector to filter pods (e.g., 'role=stable', 'app=myapp')
+     * @param labelSelector Optional: Label selector to filter pods (e.g., 'role=stable', 'app=myapp,env=prod'); equality terms only
      */
     @Tool("Inspect Kubernetes resources in a namespace. Use labelSelector to filter pods by labels (e.g., 'role=stable' or 'role=canary')")
-    public Map<String, Object> inspectResources(String namespace, String resourceType, String resourceName, String labelSelector) {
+    public Map<String, Object> inspectResources(@ToolMemoryId String memoryId, String namespace, String resourceType, String resourceName, String labelSelector) {
         Log.info("=== Executing Tool: inspectResources ===");
         
         if (namespace == null || namespace.isEmpty()) {
@@ -413,169 +452,825 @@ public class K8sTools {
             namespace, resourceType, resourceName, labelSelector));
         
         
+        try {
+            parseLabelSelector(labelSelector);
+        } catch (IllegalArgumentException e) {
+            Log.warn(e.getMessage());
+            return Map.of("error", e.getMessage());
+        }
+        
         try {
             Map<String, Object> result = new HashMap<>();
             result.put("namespace", namespace);
+            NamespaceView view = view(memoryId, namespace);
             
+            // Fetch the requested sections concurrently, each on its own virtual thread
+            Map<String, Callable<Map<String, Object>>> sections = new LinkedHashMap<>();
             if (resourceType == null || "deployment".equalsIgnoreCase(resourceType)) {
-                List<Deployment> deployments = k8sClient.apps().deployments()
-                    .inNamespace(namespace)
-                    .list()
-                    .getItems();
-                
-                if (resourceName != null && !resourceName.isEmpty()) {
-                    deployments = deployments.stream()
-                        .filter(d -> resourceName.equals(d.getMetadata().getName()))
-                        .collect(Collectors.toList());
-                }
-                
-                List<Map<String, Object>> deploymentInfo = deployments.stream()
-                    .map(d -> {
-                        Map<String, Object> info = new HashMap<>();
-                        info.put("name", d.getMetadata().getName());
-                        info.put("replicas", d.getStatus().getReplicas() != null ? d.getStatus().getReplicas() : 0);
-                        info.put("availableReplicas", d.getStatus().getAvailableReplicas() != null ? d.getStatus().getAvailableReplicas() : 0);
-                        info.put("readyReplicas", d.getStatus().getReadyReplicas() != null ? d.getStatus().getReadyReplicas() : 0);
-                        info.put("labels", d.getMetadata().getLabels() != null ? d.getMetadata().getLabels() : Map.of());
-                        return info;
-                    })
-                    .collect(Collectors.toList());
-                
-                result.put("deployments", deploymentInfo);
+                sections.put("deployments", () -> inspectDeployments(view, namespace, resourceName));
             }
-            
             if (resourceType == null || "pods".equalsIgnoreCase(resourceType)) {
-                List<Pod> pods;
+                sections.put("pods", () -> inspectPods(view, namespace, resourceName, labelSelector));
+            }
+            if (resourceType == null || "service".equalsIgnoreCase(resourceType)) {
+                sections.put("services", () -> inspectServices(view, namespace, resourceName));
+            }
+            if (resourceType == null || "configmap".equalsIgnoreCase(resourceType)) {
+                sections.put("configMaps", () -> inspectConfigMaps(view, namespace, resourceName));
+            }
+            result.putAll(fetchConcurrently(sections, inspectTimeout));
+            
+            Log.info("Successfully inspected resources");
+            return result;
+            
+        } catch (Exception e) {
+            Log.error("Error inspecting resources", e);
+            return Map.of("error", e.getMessage());
+        }
+    }
+    
+    /**
+     * Status, conditions, container states, labels and owners of a pod
+     */
+    private Map<String, Object> describePod(Pod pod) {
+        PodStatus status = pod.getStatus();
+        
+        Map<String, Object> debugInfo = new HashMap<>();
+        debugInfo.put("podName", pod.getMetadata().getName());
+        debugInfo.put("namespace", pod.getMetadata().getNamespace());
+        debugInfo.put("phase", status.getPhase());
+        debugInfo.put("reason", status.getReason());
+        debugInfo.put("message", status.getMessage());
+        debugInfo.put("hostIP", status.getHostIP());
+        debugInfo.put("podIP", status.getPodIP());
+        debugInfo.put("startTime", status.getStartTime());
+        
+        // Pod conditions
+        List<Map<String, Object>> conditions = status.getConditions().stream()
+            .map(c -> {
+                Map<String, Object> condition = new HashMap<>();
+                condition.put("type", c.getType());
+                condition.put("status", c.getStatus());
+                condition.put("reason", c.getReason() != null ? c.getReason() : "");
+                condition.put("message", c.getMessage() != null ? c.getMessage() : "");
+                condition.put("lastTransitionTime", c.getLastTransitionTime() != null ? c.getLastTransitionTime() : "");
+                return condition;
+            })
+            .collect(Collectors.toList());
+        debugInfo.put("conditions", conditions);
+        
+        // Container statuses
+        List<Map<String, Object>> containerStatuses = new ArrayList<>();
+        if (status.getContainerStatuses() != null) {
+            for (ContainerStatus cs : status.getContainerStatuses()) {
+                Map<String, Object> containerInfo = new HashMap<>();
+                containerInfo.put("name", cs.getName());
+                containerInfo.put("ready", cs.getReady());
+                containerInfo.put("restartCount", cs.getRestartCount());
+                containerInfo.put("image", cs.getImage());
                 
-                // Apply label selector if provided
-                if (labelSelector != null && !labelSelector.isEmpty()) {
-                    Log.info(MessageFormat.format("Applying label selector: {0}", labelSelector));
-                    pods = k8sClient.pods()
-                        .inNamespace(namespace)
-                        .withLabels(parseLabelSelector(labelSelector))
-                        .list()
-                        .getItems();
-                    Log.info(MessageFormat.format("Found {0} pods matching label selector", pods.size()));
-                } else {
-                    pods = k8sClient.pods()
-                        .inNamespace(namespace)
-                        .list()
-                        .getItems();
+                ContainerState state = cs.getState();
+                if (state.getRunning() != null) {
+                    containerInfo.put("state", "Running");
+                    containerInfo.put("startedAt", state.getRunning().getStartedAt());
+                } else if (state.getWaiting() != null) {
+                    containerInfo.put("state", "Waiting");
+                    containerInfo.put("reason", state.getWaiting().getReason());
+                    containerInfo.put("message", state.getWaiting().getMessage());
+                } else if (state.getTerminated() != null) {
+                    containerInfo.put("state", "Terminated");
+                    containerInfo.put("reason", state.getTerminated().getReason());
+                    containerInfo.put("message", state.getTerminated().getMessage());
+                    containerInfo.put("exitCode", state.getTerminated().getExitCode());
                 }
                 
-                if (resourceName != null && !resourceName.isEmpty()) {
-                    pods = pods.stream()
-                        .filter(p -> resourceName.equals(p.getMetadata().getName()))
-                        .collect(Collectors.toList());
+                if (cs.getLastState() != null && cs.getLastState().getTerminated() != null) {
+                    ContainerStateTerminated last = cs.getLastState().getTerminated();
+                    containerInfo.put("lastTerminated", Map.of(
+                        "reason", last.getReason() != null ? last.getReason() : "",
+                        "exitCode", last.getExitCode(),
+                        "message", last.getMessage() != null ? last.getMessage() : ""
+                    ));
                 }
                 
-                List<Map<String, Object>> podInfo = pods.stream()
-                    .map(p -> {
-                        Map<String, Object> info = new HashMap<>();
-                        info.put("name", p.getMetadata().getName());
-                        info.put("phase", p.getStatus().getPhase());
-                        info.put("podIP", p.getStatus().getPodIP() != null ? p.getStatus().getPodIP() : "");
-                        info.put("labels", p.getMetadata().getLabels() != null ? p.getMetadata().getLabels() : Map.of());
-                        
-                        // Container readiness
-                        if (p.getStatus().getContainerStatuses() != null) {
-                            long readyCount = p.getStatus().getContainerStatuses().stream()
-                                .filter(ContainerStatus::getReady)
-                                .count();
-                            info.put("readyContainers", readyCount + "/" + p.getStatus().getContainerStatuses().size());
-                        }
-                        
-                        return info;
+                containerStatuses.add(containerInfo);
+            }
+        }
+        debugInfo.put("containerStatuses", containerStatuses);
+        debugInfo.put("labels", pod.getMetadata().getLabels());
+        
+        List<OwnerReference> owners = pod.getMetadata().getOwnerReferences();
+        if (owners != null && !owners.isEmpty()) {
+            List<Map<String, String>> ownerInfo = owners.stream()
+                .map(o -> Map.of("kind", o.getKind(), "name", o.getName()))
+                .collect(Collectors.toList());
+            debugInfo.put("owners", ownerInfo);
+        }
+        
+        return debugInfo;
+    }
+    
+    /**
+     * Pick the container to read logs from: the requested one, otherwise the only container,
+     * otherwise the first container that does not look like a sidecar
+     */
+    private String resolveContainer(Pod pod, String containerName) {
+        if (containerName != null && !containerName.isEmpty()) {
+            return containerName;
+        }
+        
+        List<Container> containers = pod.getSpec().getContainers();
+        if (containers != null && containers.size() > 1) {
+            // Multi-container pod - default to the first non-sidecar container
+            // Typically istio-proxy, envoy, etc. are sidecars
+            String targetContainer = containers.stream()
+                .filter(c -> !c.getName().contains("proxy") &&
+                           !c.getName().contains("envoy") &&
+                           !c.getName().contains("sidecar"))
+                .findFirst()
+                .map(Container::getName)
+                .orElse(containers.get(0).getName());
+            
+            Log.info(MessageFormat.format("Multi-container pod detected. Using container: {0}", targetContainer));
+            return targetContainer;
+        } else if (containers != null && !containers.isEmpty()) {
+            return containers.get(0).getName();
+        }
+        return null;
+    }
+    
+    /**
+     * @return true if the container has a previous terminated instance whose logs can be read
+     */
+    private static boolean hasTerminatedBefore(Pod pod, String containerName) {
+        if (pod.getStatus() == null || pod.getStatus().getContainerStatuses() == null) {
+            return false;
+        }
+        return pod.getStatus().getContainerStatuses().stream()
+            .filter(cs -> containerName == null || containerName.equals(cs.getName()))
+            .anyMatch(cs -> cs.getLastState() != null && cs.getLastState().getTerminated() != null);
+    }
+    
+    /**
+     * Read the tail of a container's logs, or of its previous terminated instance, into a String
+     * bounded by maxBytes (compacted when log compaction is enabled)
+     */
+    private String readLogs(String namespace, String podName, String container, boolean previous, int lines, long maxBytes)
+            throws IOException {
+        LogText logs = newLogText();
+        streamLogs(namespace, podName, container, previous, lines, null, null, maxBytes, logs);
+        return logs.text();
+    }
+    
+    private LogText newLogText() {
+        return logCompaction ? new LogText(new LogCompactor(LOG_COMPACTION_ENTRIES), null) : new LogText(null, new StringBuilder());
+    }
+    
+    /**
+     * Line sink collecting logs either verbatim or through a {@link LogCompactor}
+     */
+    private record LogText(LogCompactor compactor, StringBuilder raw) implements Consumer<String> {
+        
+        @Override
+        public void accept(String line) {
+            if (compactor != null) {
+                compactor.accept(line);
+            } else {
+                raw.append(line).append('\n');
+            }
+        }
+        
+        boolean compacted() {
+            return compactor != null && compactor.lines() > compactor.entries();
+        }
+        
+        int entries() {
+            return compactor != null ? compactor.entries() : 0;
+        }
+        
+        String text() {
+            String text = compactor != null ? compactor.render() : raw.toString();
+            return text.isEmpty() ? "(no logs available)" : text;
+        }
+    }
+    
+    /**
+     * Stream the tail of a container's logs line by line, keeping the newest lines that fit in maxBytes.
+     * No server-side limitBytes is sent: it would cut the tail at its start and keep the oldest lines.
+     * @param sinceSeconds Optional: only logs newer than this many seconds
+     * @param sinceTime Optional: only logs newer than this RFC3339 timestamp (takes precedence over sinceSeconds)
+     */
+    private BoundedLogReader.Result streamLogs(String namespace, String podName, String container, boolean previous,
+            int lines, Integer sinceSeconds, String sinceTime, long maxBytes, Consumer<String> sink) throws IOException {
+        var podResource = k8sClient.pods()
+            .inNamespace(namespace)
+            .withName(podName);
+        
+        ContainerResource logSource = container != null && !container.isEmpty()
+            ? podResource.inContainer(container)
+            : podResource;
+        
+        TimeTailPrettyLoggable instance = previous ? logSource.terminated() : logSource;
+        TailPrettyLoggable window;
+        if (sinceTime != null && !sinceTime.isEmpty()) {
+            window = instance.sinceTime(sinceTime);
+        } else if (sinceSeconds != null && sinceSeconds > 0) {
+            window = instance.sinceSeconds(sinceSeconds);
+        } else {
+            window = instance;
+        }
+        
+        try (InputStream in = window.tailingLines(lines).getLogInputStream()) {
+            if (in == null) {
+                return new BoundedLogReader.Result(0, 0, 0, 0);
+            }
+            return BoundedLogReader.read(in, maxBytes, logMaxLineBytes, sink);
+        }
+    }
+    
+    /**
+     * Usage over the sampled window when the metrics sampler has readings for the pod, otherwise
+     * current usage from metrics-server, falling back to the requests/limits in the pod spec
+     * @param pod The pod if already fetched, otherwise null to fetch it only when needed
+     */
+    private Map<String, Object> podMetrics(NamespaceView view, String namespace, String podName, Pod pod) {
+        // Serve the sampled window from memory once the background sampler has readings for the pod
+        Map<String, Object> sampled = metricsSampler.track(namespace, podName);
+        if (sampled != null) {
+            Log.info(MessageFormat.format("Serving sampled metrics for pod: {0}/{1}", namespace, podName));
+            return sampled;
+        }
+        
+        // Try to get actual metrics from metrics-server
+        try {
+            PodMetrics metrics = k8sClient.top().pods()
+                .inNamespace(namespace)
+                .withName(podName)
+                .metric();
+            
+            if (metrics != null) {
+                metricsSampler.record(namespace, metrics);
+                List<Map<String, Object>> containerMetrics = metrics.getContainers().stream()
+                    .map(c -> {
+                        Map<String, Object> m = new HashMap<>();
+                        m.put("name", c.getName());
+                        m.put("cpu", c.getUsage().get("cpu").toString());
+                        m.put("memory", c.getUsage().get("memory").toString());
+                        return m;
                     })
                     .collect(Collectors.toList());
+                Log.info(MessageFormat.format("Retrieved actual metrics for {0} containers", containerMetrics.size()));
                 
-                result.put("pods", podInfo);
+                return Map.of(
+                    "namespace", namespace,
+                    "podName", podName,
+                    "timestamp", metrics.getTimestamp(),
+                    "containers", containerMetrics
+                );
             }
-            
-            if (resourceType == null || "service".equalsIgnoreCase(resourceType)) {
-                List<Service> services = k8sClient.services()
-                    .inNamespace(namespace)
-                    .list()
-                    .getItems();
+        } catch (Exception metricsException) {
+            Log.warn("Metrics-server not available, falling back to resource requests/limits");
+        }
+        
+        // Fallback: Get resource requests and limits from pod spec
+        if (pod == null) {
+            pod = fetchPod(view, namespace, podName);
+        }
+        
+        if (pod == null) {
+            return Map.of("error", "Pod not found: " + namespace + "/" + podName);
+        }
+        
+        Map<String, Object> metricsInfo = new HashMap<>();
+        metricsInfo.put("podName", podName);
+        metricsInfo.put("namespace", namespace);
+        metricsInfo.put("note", "Showing resource requests/limits (metrics-server not available for actual usage)");
+        
+        List<Map<String, Object>> containerResources = new ArrayList<>();
+        if (pod.getSpec().getContainers() != null) {
+            for (var container : pod.getSpec().getContainers()) {
+                ResourceRequirements resources = container.getResources();
                 
-                if (resourceName != null && !resourceName.isEmpty()) {
-                    services = services.stream()
-                        .filter(s -> resourceName.equals(s.getMetadata().getName()))
-                        .collect(Collectors.toList());
+                if (resources != null) {
+                    Map<String, Object> containerInfo = new HashMap<>();
+                    containerInfo.put("containerName", container.getName());
+                    
+                    // Requests
+                    if (resources.getRequests() != null) {
+                        Map<String, String> requests = new HashMap<>();
+                        resources.getRequests().forEach((key, value) ->
+                            requests.put(key, value.toString())
+                        );
+                        containerInfo.put("requests", requests);
+                    }
+                    
+                    // Limits
+                    if (resources.getLimits() != null) {
+                        Map<String, String> limits = new HashMap<>();
+                        resources.getLimits().forEach((key, value) ->
+                            limits.put(key, value.toString())
+                        );
+                        containerInfo.put("limits", limits);
+                    }
+                    
+                    containerResources.add(containerInfo);
                 }
-                
-                List<Map<String, Object>> serviceInfo = services.stream()
-                    .map(s -> {
-                        Map<String, Object> info = new HashMap<>();
-                        info.put("name", s.getMetadata().getName());
-                        info.put("type", s.getSpec().getType());
-                        info.put("clusterIP", s.getSpec().getClusterIP() != null ? s.getSpec().getClusterIP() : "");
-                        
-                        // Enhanced port information
-                        if (s.getSpec().getPorts() != null) {
-                            List<Map<String, Object>> ports = s.getSpec().getPorts().stream()
-                                .map(p -> {
-                                    Map<String, Object> port = new HashMap<>();
-                                    port.put("name", p.getName() != null ? p.getName() : "");
-                                    port.put("port", p.getPort());
-                                    port.put("targetPort", p.getTargetPort() != null ? p.getTargetPort().toString() : "");
-                                    port.put("protocol", p.getProtocol() != null ? p.getProtocol() : "TCP");
-                                    return port;
-                                })
-                                .collect(Collectors.toList());
-                            info.put("ports", ports);
-                        }
-                        
-                        info.put("selector", s.getSpec().getSelector() != null ?
-                            s.getSpec().getSelector() : Map.of());
-                        
-                        return info;
-                    })
-                    .collect(Collectors.toList());
-                
-                result.put("services", serviceInfo);
+            }
+        }
+        
+        metricsInfo.put("containers", containerResources);
+        Log.info(MessageFormat.format("Retrieved resource requests/limits for pod: {0}/{1}", namespace, podName));
+        
+        return metricsInfo;
+    }
+    
+    /**
+     * Resolve a cohort's pods and aggregate readiness, restarts, log error rates and usage
+     * over up to sampleSize of them, fetching each sampled pod's logs and metrics concurrently
+     */
+    private CohortSummary summarizeCohort(NamespaceView view, String namespace, String labelSelector, int sampleSize, long deadline) {
+        List<Pod> pods = selectPods(view, namespace, labelSelector);
+        CohortSummary summary = new CohortSummary(labelSelector);
+        pods.forEach(summary::addPod);
+        
+        Map<String, Callable<Map<String, Object>>> samples = new LinkedHashMap<>();
+        for (Pod pod : pods.subList(0, Math.min(sampleSize, pods.size()))) {
+            String podName = pod.getMetadata().getName();
+            samples.put(podName, () -> Map.of(podName, samplePod(namespace, pod)));
+        }
+        
+        fetchConcurrently(samples, deadline).forEach((key, value) -> {
+            if (value instanceof PodSample sample) {
+                summary.addSample(sample);
+            } else {
+                summary.errors.put(key, value);
+            }
+        });
+        return summary;
+    }
+    
+    /**
+     * Fetch the log tail and current usage of one pod
+     */
+    private PodSample samplePod(String namespace, Pod pod) throws IOException {
+        String podName = pod.getMetadata().getName();
+        
+        int[] counts = new int[2];
+        ErrorSignatureIndex signatures = new ErrorSignatureIndex(MAX_ERROR_SIGNATURES);
+        streamLogs(namespace, podName, resolveContainer(pod, null), false, COHORT_LOG_LINES, null, null, logMaxBytes, line -> {
+            signatures.accept(line);
+            if (!line.isBlank()) {
+                counts[0]++;
+                if (ERROR_LINE.matcher(line).find()) {
+                    counts[1]++;
+                }
+            }
+        });
+        int lines = counts[0];
+        int errorLines = counts[1];
+        
+        double cpuMillicores = -1;
+        double memoryBytes = -1;
+        PodMetricsSampler.Usage sampled = metricsSampler.latest(namespace, podName);
+        if (sampled != null) {
+            return new PodSample(podName, lines, errorLines, signatures, sampled.cpuMillicores(), sampled.memoryBytes());
+        }
+        try {
+            PodMetrics metrics = k8sClient.top().pods().inNamespace(namespace).withName(podName).metric();
+            if (metrics != null) {
+                metricsSampler.record(namespace, metrics);
+                cpuMillicores = 0;
+                memoryBytes = 0;
+                for (var container : metrics.getContainers()) {
+                    cpuMillicores += container.getUsage().get("cpu").getNumericalAmount().doubleValue() * 1000;
+                    memoryBytes += container.getUsage().get("memory").getNumericalAmount().doubleValue();
+                }
+            }
+        } catch (Exception metricsException) {
+            Log.debug(MessageFormat.format("No metrics for pod {0}/{1}", namespace, podName));
+        }
+        return new PodSample(podName, lines, errorLines, signatures, cpuMillicores, memoryBytes);
+    }
+    
+    /**
+     * Pods matching a label selector, from the namespace view when there is one
+     */
+    private List<Pod> selectPods(NamespaceView view, String namespace, String labelSelector) {
+        if (view != null) {
+            return view.listPods(parseLabelSelector(labelSelector));
+        }
+        return PagedLister.list(k8sClient.pods()
+            .inNamespace(namespace)
+            .withLabels(parseLabelSelector(labelSelector)), null, MAX_LISTED_ITEMS).items();
+    }
+    
+    /**
+     * Log, error signature and usage figures of one sampled pod; negative usage means metrics were unavailable
+     */
+    private record PodSample(String podName, int logLines, int errorLines, ErrorSignatureIndex signatures,
+            double cpuMillicores, double memoryBytes) {
+    }
+    
+    /**
+     * Aggregated figures of one cohort (stable or canary)
+     */
+    private static final class CohortSummary {
+        final String selector;
+        int pods;
+        int readyPods;
+        int restarts;
+        int logLines;
+        int errorLines;
+        int metricSamples;
+        double cpuMillicores;
+        double memoryBytes;
+        final ErrorSignatureIndex signatures = new ErrorSignatureIndex(MAX_ERROR_SIGNATURES);
+        final List<Map<String, Object>> samples = new ArrayList<>();
+        final Map<String, Object> errors = new HashMap<>();
+        
+        CohortSummary(String selector) {
+            this.selector = selector;
+        }
+        
+        void addPod(Pod pod) {
+            pods++;
+            List<ContainerStatus> statuses = pod.getStatus() != null ? pod.getStatus().getContainerStatuses() : null;
+            if (statuses != null) {
+                if (!statuses.isEmpty() && statuses.stream().allMatch(cs -> Boolean.TRUE.equals(cs.getReady()))) {
+                    readyPods++;
+                }
+                for (ContainerStatus cs : statuses) {
+                    restarts += cs.getRestartCount() != null ? cs.getRestartCount() : 0;
+                }
+            }
+        }
+        
+        void addSample(PodSample sample) {
+            logLines += sample.logLines();
+            errorLines += sample.errorLines();
+            signatures.merge(sample.signatures());
+            if (sample.cpuMillicores() >= 0) {
+                metricSamples++;
+                cpuMillicores += sample.cpuMillicores();
+                memoryBytes += sample.memoryBytes();
+            }
+            samples.add(Map.of(
+                "podName", sample.podName(),
+                "logLines", sample.logLines(),
+                "errorLines", sample.errorLines()
+            ));
+        }
+        
+        double restartsPerPod() {
+            return pods > 0 ? (double) restarts / pods : 0;
+        }
+        
+        double errorRate() {
+            return logLines > 0 ? (double) errorLines / logLines : 0;
+        }
+        
+        double avgCpuMillicores() {
+            return metricSamples > 0 ? cpuMillicores / metricSamples : -1;
+        }
+        
+        double avgMemoryBytes() {
+            return metricSamples > 0 ? memoryBytes / metricSamples : -1;
+        }
+        
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new HashMap<>();
+            map.put("selector", selector);
+            map.put("pods", pods);
+            map.put("readyPods", readyPods);
+            map.put("restarts", restarts);
+            map.put("sampledPods", samples);
+            map.put("errorLineRate", round(errorRate()));
+            List<Map<String, Object>> topSignatures = signatures.toList();
+            map.put("errorSignatures", topSignatures.subList(0, Math.min(COHORT_SIGNATURES, topSignatures.size())));
+            if (metricSamples > 0) {
+                map.put("avgCpuMillicores", Math.round(avgCpuMillicores()));
+                map.put("avgMemoryMiB", Math.round(avgMemoryBytes() / (1024 * 1024)));
+            }
+            if (!errors.isEmpty()) {
+                map.put("errors", errors);
+            }
+            return map;
+        }
+        
+        /**
+         * Canary-minus-stable differences, where this summary is the canary
+         */
+        Map<String, Object> diff(CohortSummary stable) {
+            Map<String, Object> diff = new HashMap<>();
+            diff.put("restartsPerPod", round(restartsPerPod() - stable.restartsPerPod()));
+            diff.put("errorLineRate", round(errorRate() - stable.errorRate()));
+            diff.put("readyRatio", round(readyRatio() - stable.readyRatio()));
+            if (metricSamples > 0 && stable.metricSamples > 0) {
+                diff.put("cpuMillicores", Math.round(avgCpuMillicores() - stable.avgCpuMillicores()));
+                diff.put("memoryMiB", Math.round((avgMemoryBytes() - stable.avgMemoryBytes()) / (1024 * 1024)));
             }
             
-            if (resourceType == null || "configmap".equalsIgnoreCase(resourceType)) {
-                List<ConfigMap> configMaps = k8sClient.configMaps()
-                    .inNamespace(namespace)
-                    .list()
-                    .getItems();
+            // Failure modes the stable pods do not show are the strongest signal against promotion
+            List<Map<String, Object>> newSignatures = signatures.absentFrom(stable.signatures);
+            diff.put("newErrorSignatures", newSignatures.subList(0, Math.min(COHORT_SIGNATURES, newSignatures.size())));
+            return diff;
+        }
+        
+        private double readyRatio() {
+            return pods > 0 ? (double) readyPods / pods : 0;
+        }
+        
+        private static double round(double value) {
+            return Math.round(value * 1000) / 1000.0;
+        }
+    }
+    
+    /**
+     * Run independent fetches concurrently on virtual threads under one deadline,
+     * see {@link ConcurrentFetches#fetchAll(ExecutorService, Map, long)}
+     */
+    private Map<String, Object> fetchConcurrently(Map<String, Callable<Map<String, Object>>> fetches, Duration timeout) {
+        return fetchConcurrently(fetches, System.nanoTime() + timeout.toNanos());
+    }
+    
+    /**
+     * Same as {@link #fetchConcurrently(Map, Duration)} with an absolute {@link System#nanoTime()} deadline
+     */
+    private Map<String, Object> fetchConcurrently(Map<String, Callable<Map<String, Object>>> fetches, long deadline) {
+        return ConcurrentFetches.fetchAll(toolExecutor, fetches, deadline);
+    }
+    
+    /**
+     * Deployment section of inspectResources
+     */
+    private Map<String, Object> inspectDeployments(NamespaceView view, String namespace, String resourceName) {
+        PagedLister.Page<Deployment> deployments = view != null
+            ? new PagedLister.Page<>(filterByName(view.listDeployments(), resourceName), false)
+            : PagedLister.list(k8sClient.apps().deployments().inNamespace(namespace), resourceName, MAX_LISTED_ITEMS);
+        
+        List<Map<String, Object>> deploymentInfo = deployments.items().stream()
+            .map(d -> {
+                Map<String, Object> info = new HashMap<>();
+                info.put("name", d.getMetadata().getName());
+                info.put("replicas", d.getStatus().getReplicas() != null ? d.getStatus().getReplicas() : 0);
+                info.put("availableReplicas", d.getStatus().getAvailableReplicas() != null ? d.getStatus().getAvailableReplicas() : 0);
+                info.put("readyReplicas", d.getStatus().getReadyReplicas() != null ? d.getStatus().getReadyReplicas() : 0);
+                info.put("labels", d.getMetadata().getLabels() != null ? d.getMetadata().getLabels() : Map.of());
+                return info;
+            })
+            .collect(Collectors.toList());
+        
+        return section("deployments", deploymentInfo, deployments.truncated());
+    }
+    
+    /**
+     * Pod section of inspectResources
+     */
+    private Map<String, Object> inspectPods(NamespaceView view, String namespace, String resourceName, String labelSelector) {
+        PagedLister.Page<Pod> pods;
+        
+        // Apply label selector if provided
+        if (view != null) {
+            pods = new PagedLister.Page<>(
+                filterByName(view.listPods(parseLabelSelector(labelSelector)), resourceName), false);
+        } else if (labelSelector != null && !labelSelector.isEmpty()) {
+            Log.info(MessageFormat.format("Applying label selector: {0}", labelSelector));
+            pods = PagedLister.list(k8sClient.pods()
+                .inNamespace(namespace)
+                .withLabels(parseLabelSelector(labelSelector)), resourceName, MAX_LISTED_ITEMS);
+            Log.info(MessageFormat.format("Found {0} pods matching label selector", pods.items().size()));
+        } else {
+            pods = PagedLister.list(k8sClient.pods().inNamespace(namespace), resourceName, MAX_LISTED_ITEMS);
+        }
+        
+        List<Map<String, Object>> podInfo = pods.items().stream()
+            .map(p -> {
+                Map<String, Object> info = new HashMap<>();
+                info.put("name", p.getMetadata().getName());
+                info.put("phase", p.getStatus().getPhase());
+                info.put("podIP", p.getStatus().getPodIP() != null ? p.getStatus().getPodIP() : "");
+                info.put("labels", p.getMetadata().getLabels() != null ? p.getMetadata().getLabels() : Map.of());
+                
+                // Container readiness
+                if (p.getStatus().getContainerStatuses() != null) {
+                    long readyCount = p.getStatus().getContainerStatuses().stream()
+                        .filter(ContainerStatus::getReady)
+                        .count();
+                    info.put("readyContainers", readyCount + "/" + p.getStatus().getContainerStatuses().size());
+                }
                 
-                if (resourceName != null && !resourceName.isEmpty()) {
-                    configMaps = configMaps.stream()
-                        .filter(cm -> resourceName.equals(cm.getMetadata().getName()))
+                return info;
+            })
+            .collect(Collectors.toList());
+        
+        return section("pods", podInfo, pods.truncated());
+    }
+    
+    /**
+     * Service section of inspectResources
+     */
+    private Map<String, Object> inspectServices(NamespaceView view, String namespace, String resourceName) {
+        PagedLister.Page<Service> services = view != null
+            ? new PagedLister.Page<>(filterByName(view.listServices(), resourceName), false)
+            : PagedLister.list(k8sClient.services().inNamespace(namespace), resourceName, MAX_LISTED_ITEMS);
+        
+        List<Map<String, Object>> serviceInfo = services.items().stream()
+            .map(s -> {
+                Map<String, Object> info = new HashMap<>();
+                info.put("name", s.getMetadata().getName());
+                info.put("type", s.getSpec().getType());
+                info.put("clusterIP", s.getSpec().getClusterIP() != null ? s.getSpec().getClusterIP() : "");
+                
+                // Enhanced port information
+                if (s.getSpec().getPorts() != null) {
+                    List<Map<String, Object>> ports = s.getSpec().getPorts().stream()
+                        .map(p -> {
+                            Map<String, Object> port = new HashMap<>();
+                            port.put("name", p.getName() != null ? p.getName() : "");
+                            port.put("port", p.getPort());
+                            port.put("targetPort", p.getTargetPort() != null ? p.getTargetPort().toString() : "");
+                            port.put("protocol", p.getProtocol() != null ? p.getProtocol() : "TCP");
+                            return port;
+                        })
                         .collect(Collectors.toList());
+                    info.put("ports", ports);
                 }
                 
-                List<Map<String, Object>> configMapInfo = configMaps.stream()
-                    .map(cm -> {
-                        Map<String, Object> info = new HashMap<>();
-                        info.put("name", cm.getMetadata().getName());
-                        
-                        // Only include data keys, not full content for security
-                        if (cm.getData() != null) {
-                            info.put("dataKeys", cm.getData().keySet());
-                        }
-                        
-                        return info;
-                    })
-                    .collect(Collectors.toList());
+                info.put("selector", s.getSpec().getSelector() != null ?
+                    s.getSpec().getSelector() : Map.of());
                 
-                result.put("configMaps", configMapInfo);
+                return info;
+            })
+            .collect(Collectors.toList());
+        
+        return section("services", serviceInfo, services.truncated());
+    }
+    
+    /**
+     * ConfigMap section of inspectResources.
+     * Listing a whole namespace only fetches metadata (names and labels); data keys are
+     * only reported when a single configmap is requested by name or already cached.
+     */
+    private Map<String, Object> inspectConfigMaps(NamespaceView view, String namespace, String resourceName) throws Exception {
+        List<Map<String, Object>> configMapInfo = new ArrayList<>();
+        boolean truncated = false;
+        
+        if (view != null || (resourceName != null && !resourceName.isEmpty())) {
+            List<ConfigMap> configMaps;
+            if (view != null) {
+                configMaps = filterByName(view.listConfigMaps(), resourceName);
+            } else {
+                ConfigMap configMap = k8sClient.configMaps().inNamespace(namespace).withName(resourceName).get();
+                configMaps = configMap != null ? List.of(configMap) : List.of();
             }
             
-            Log.info("Successfully inspected resources");
-            return result;
+            for (ConfigMap cm : configMaps) {
+                Map<String, Object> info = new HashMap<>();
+                info.put("name", cm.getMetadata().getName());
+                info.put("labels", cm.getMetadata().getLabels() != null ? cm.getMetadata().getLabels() : Map.of());
+                
+                // Only include data keys, not full content for security
+                if (cm.getData() != null) {
+                    info.put("dataKeys", cm.getData().keySet());
+                }
+                configMapInfo.add(info);
+            }
+        } else {
+            PagedLister.Page<PartialObjectMetadata> configMaps =
+                PagedLister.listMetadata(k8sClient, namespace, "configmaps", null, MAX_LISTED_ITEMS);
+            for (PartialObjectMetadata cm : configMaps.items()) {
+                Map<String, Object> info = new HashMap<>();
+                info.put("name", cm.getMetadata().getName());
+                info.put("labels", cm.getMetadata().getLabels() != null ? cm.getMetadata().getLabels() : Map.of());
+                configMapInfo.add(info);
+            }
+            truncated = configMaps.truncated();
+        }
+        
+        return section("configMaps", configMapInfo, truncated);
+    }
+    
+    /**
+     * Build one inspectResources section, flagging it when the listing was cut short
+     */
+    private static Map<String, Object> section(String name, List<Map<String, Object>> items, boolean truncated) {
+        Map<String, Object> section = new HashMap<>();
+        section.put(name, items);
+        if (truncated) {
+            section.put(name + "Truncated", true);
+        }
+        return section;
+    }
+    
+    private static <T extends HasMetadata> List<T> filterByName(List<T> items, String resourceName) {
+        if (resourceName == null || resourceName.isEmpty()) {
+            return items;
+        }
+        return items.stream()
+            .filter(item -> resourceName.equals(item.getMetadata().getName()))
+            .collect(Collectors.toList());
+    }
+    
+    /**
+     * Get the most recent events for a namespace, optionally only those about one pod.
+     * The pod filter is pushed down as a field selector and the namespace is read in pages,
+     * keeping only the newest {@code limit} events in a bounded heap, so memory depends on
+     * the limit rather than on how many events the namespace holds.
+     */
+    private List<Event> recentEvents(NamespaceView view, String namespace, String podName, int limit) {
+        boolean filterByPod = podName != null && !podName.isEmpty();
+        PriorityQueue<Event> newest = new PriorityQueue<>(limit + 1, EVENT_RECENCY);
+        
+        if (view != null) {
+            for (Event event : view.listEvents(podName)) {
+                offerBounded(newest, event, limit);
+            }
+        } else {
+            FilterWatchListDeletable<Event, EventList, Resource<Event>> query = k8sClient.v1().events()
+                .inNamespace(namespace);
+            if (filterByPod) {
+                query = query.withField("involvedObject.name", podName);
+            }
             
-        } catch (Exception e) {
-            Log.error("Error inspecting resources", e);
-            return Map.of("error", e.getMessage());
+            String continueToken = null;
+            do {
+                EventList page = query.list(new ListOptionsBuilder()
+                    .withLimit(PagedLister.PAGE_SIZE)
+                    .withContinue(continueToken)
+                    .build());
+                for (Event event : page.getItems()) {
+                    offerBounded(newest, event, limit);
+                }
+                continueToken = page.getMetadata() != null ? page.getMetadata().getContinue() : null;
+            } while (continueToken != null && !continueToken.isEmpty());
+        }
+        
+        List<Event> events = new ArrayList<>(newest);
+        events.sort(EVENT_RECENCY.reversed());
+        return events;
+    }
+    
+    /**
+     * Keep at most {@code limit} events in a min-heap ordered by recency
+     */
+    private static void offerBounded(PriorityQueue<Event> heap, Event event, int limit) {
+        if (heap.size() < limit) {
+            heap.add(event);
+        } else if (EVENT_RECENCY.compare(event, heap.peek()) > 0) {
+            heap.poll();
+            heap.add(event);
+        }
+    }
+    
+    private static String eventTimestamp(Event e) {
+        if (e.getLastTimestamp() != null) {
+            return e.getLastTimestamp();
         }
+        String created = e.getMetadata() != null ? e.getMetadata().getCreationTimestamp() : null;
+        return created != null ? created : "";
+    }
+    
+    private Map<String, Object> toEventInfo(Event e) {
+        return Map.of(
+            "type", e.getType() != null ? e.getType() : "Normal",
+            "reason", e.getReason() != null ? e.getReason() : "",
+            "message", e.getMessage() != null ? e.getMessage() : "",
+            "count", e.getCount() != null ? e.getCount() : 1,
+            "firstTimestamp", e.getFirstTimestamp() != null ? e.getFirstTimestamp() : "",
+            "lastTimestamp", e.getLastTimestamp() != null ? e.getLastTimestamp() : "",
+            "involvedObject", e.getInvolvedObject() != null ? Map.of(
+                "kind", e.getInvolvedObject().getKind(),
+                "name", e.getInvolvedObject().getName()
+            ) : Map.of()
+        );
+    }
+    
+    /**
+     * Where reads of a namespace are served from: the batch snapshot attached to the
+     * session, the informer cache when it covers the namespace, or null for the API server
+     */
+    private NamespaceView view(String memoryId, String namespace) {
+        NamespaceView snapshot = snapshots.forSession(memoryId, namespace);
+        return snapshot != null ? snapshot : informerCache.view(namespace);
     }
     
     /**
-     * Parse label selector string (e.g., "role=canary" or "app=myapp,env=prod") into a Map
+     * Get a pod from the namespace view when there is one, otherwise from the API server
+     */
+    private Pod fetchPod(NamespaceView view, String namespace, String podName) {
+        if (view != null) {
+            return view.getPod(podName);
+        }
+        return k8sClient.pods()
+            .inNamespace(namespace)
+            .withName(podName)
+            .get();
+    }
+    
+    /**
+     * Parse an equality-based label selector (e.g., "role=canary" or "app=myapp,env=prod") into a Map
+     * @throws IllegalArgumentException for set-based or inequality terms (e.g., "env in (a,b)", "role!=canary"),
+     *     which a label Map cannot express and would otherwise silently select every pod
      */
     private Map<String, String> parseLabelSelector(String labelSelector) {
         if (labelSelector == null || labelSelector.trim().isEmpty()) {
@@ -583,13 +1278,14 @@ public class K8sTools {
         }
         
         Map<String, String> labels = new HashMap<>();
-        String[] pairs = labelSelector.split(",");
-        
-        for (String pair : pairs) {
-            String[] keyValue = pair.trim().split("=", 2);
-            if (keyValue.length == 2) {
-                labels.put(keyValue[0].trim(), keyValue[1].trim());
+        for (String term : labelSelector.split(",")) {
+            var matcher = LABEL_EQUALITY.matcher(term.trim());
+            if (!matcher.matches()) {
+                throw new IllegalArgumentException(MessageFormat.format(
+                    "Unsupported label selector \"{0}\": only equality terms such as \"role=canary\" joined by commas are supported",
+                    labelSelector));
             }
+            labels.put(matcher.group(1), matcher.group(2));
         }
         
         return labels;
@@ -0,0 +1,165 @@
+package org.csanchez.rollout.k8sagent.k8s;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compacts log lines in a single streaming pass before they are handed to the LLM.
+ * Lines are clustered into templates by masking timestamps, UUIDs, hex values and numbers,
+ * and repeats of a template collapse into one "[×count]" entry with the line numbers of its
+ * first and last occurrence and the first line verbatim. Error and exception lines are
+ * templated the same way but never share an entry with ordinary lines, and once maxEntries
+ * is reached a new error evicts the least repeated ordinary template rather than being
+ * dropped. Memory is bounded by maxEntries.
+ */
+public final class LogCompactor implements Consumer<String> {
+
+    private static final Pattern VARIABLE_TOKENS = Pattern.compile(
+        "(?<ts>\\d{4}-\\d{2}-\\d{2}[T ]\\d{2}:\\d{2}:\\d{2}(?:[.,]\\d+)?(?:Z|[+-]\\d{2}:?\\d{2})?)"
+        + "|(?<uuid>\\b[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}\\b)"
+        + "|(?<hex>\\b0x[0-9a-fA-F]+\\b|\\b[0-9a-f]{16,}\\b)"
+        + "|(?<num>\\d+(?:\\.\\d+)?)");
+
+    private static final Pattern ERROR_LINE = Pattern.compile(
+        "(?i)\\b(error|fatal|panic|severe)\\b|exception|caused by:|\\btraceback\\b");
+
+    private final int maxEntries;
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+    private int lines;
+    private int omittedLines;
+    private int errorEntries;
+
+    /**
+     * @param maxEntries Maximum number of distinct templates kept
+     */
+    public LogCompactor(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    @Override
+    public void accept(String line) {
+        lines++;
+        if (line.isBlank()) {
+            return;
+        }
+
+        boolean error = ERROR_LINE.matcher(line).find();
+        String text = template(line);
+        String key = (error ? "E:" : "T:") + text;
+
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            if (entries.size() >= maxEntries && !(error && evictTemplate())) {
+                omittedLines++;
+                return;
+            }
+            entry = new Entry(error, text, line, lines);
+            entries.put(key, entry);
+            if (error) {
+                errorEntries++;
+            }
+        }
+        entry.count++;
+        entry.lastLine = lines;
+    }
+
+    /**
+     * Make room for a new error by dropping the least repeated ordinary template (the oldest on ties)
+     * @return false if every entry is an error
+     */
+    private boolean evictTemplate() {
+        if (errorEntries == entries.size()) {
+            return false;
+        }
+        Map.Entry<String, Entry> victim = null;
+        for (Map.Entry<String, Entry> candidate : entries.entrySet()) {
+            if (!candidate.getValue().error && (victim == null || candidate.getValue().count < victim.getValue().count)) {
+                victim = candidate;
+            }
+        }
+        entries.remove(victim.getKey());
+        omittedLines += victim.getValue().count;
+        return true;
+    }
+
+    /**
+     * Replace the variable parts of a line (timestamps, UUIDs, hex values, numbers) with placeholders
+     */
+    public static String template(String line) {
+        Matcher matcher = VARIABLE_TOKENS.matcher(line);
+        if (!matcher.find()) {
+            return line;
+        }
+        StringBuilder sb = new StringBuilder(line.length());
+        int last = 0;
+        do {
+            sb.append(line, last, matcher.start());
+            if (matcher.group("ts") != null) {
+                sb.append("<TS>");
+            } else if (matcher.group("uuid") != null) {
+                sb.append("<UUID>");
+            } else if (matcher.group("hex") != null) {
+                sb.append("<HEX>");
+            } else {
+                sb.append("<N>");
+            }
+            last = matcher.end();
+        } while (matcher.find());
+        return sb.append(line, last, line.length()).toString();
+    }
+
+    /**
+     * @return Number of lines seen
+     */
+    public int lines() {
+        return lines;
+    }
+
+    /**
+     * @return Number of entries (templates of ordinary and error lines) in the compacted output
+     */
+    public int entries() {
+        return entries.size();
+    }
+
+    /**
+     * Render the compacted log in order of first occurrence
+     */
+    public String render() {
+        StringBuilder sb = new StringBuilder();
+        for (Entry entry : entries.values()) {
+            if (entry.count == 1) {
+                sb.append(entry.sample);
+            } else {
+                sb.append("[×").append(entry.count).append(", lines ")
+                    .append(entry.firstLine).append('-').append(entry.lastLine).append("] ")
+                    .append(entry.text)
+                    .append("\n    first: ").append(entry.sample);
+            }
+            sb.append('\n');
+        }
+        if (omittedLines > 0) {
+            sb.append("...(").append(omittedLines).append(" lines with further distinct patterns omitted)\n");
+        }
+        return sb.toString();
+    }
+
+    private static final class Entry {
+        final boolean error;
+        final String text;
+        final String sample;
+        final int firstLine;
+        int lastLine;
+        int count;
+
+        Entry(boolean error, String text, String sample, int firstLine) {
+            this.error = error;
+            this.text = text;
+            this.sample = sample;
+            this.firstLine = firstLine;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package org.csanchez.rollout.k8sagent.k8s;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size ring buffer of timestamped long samples (e.g. CPU millicores or memory bytes)
+ * backed by primitive arrays, with summary statistics over the samples it holds.
+ * Once full, each new sample overwrites the oldest one.
+ */
+public final class MetricsRingBuffer {
+
+    private final long[] timestamps;
+    private final long[] values;
+    private int next;
+    private int size;
+
+    /**
+     * Summary of the samples in the window
+     * @param samples Number of samples
+     * @param latest Most recent value
+     * @param min Smallest value
+     * @param max Largest value
+     * @param p50 Median value
+     * @param p95 95th percentile value
+     * @param trendPerMinute Least-squares slope of the values, in units per minute
+     * @param windowMillis Time between the oldest and the newest sample
+     */
+    public record Stats(int samples, long latest, long min, long max, long p50, long p95, double trendPerMinute,
+            long windowMillis) {
+    }
+
+    /**
+     * @param capacity Number of samples kept
+     */
+    public MetricsRingBuffer(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be at least 1");
+        }
+        this.timestamps = new long[capacity];
+        this.values = new long[capacity];
+    }
+
+    /**
+     * Add a sample; samples with the same timestamp as the latest one are ignored
+     * @param timestampMillis Sample time in epoch milliseconds
+     */
+    public synchronized void add(long timestampMillis, long value) {
+        if (size > 0 && timestamps[index(size - 1)] == timestampMillis) {
+            return;
+        }
+        timestamps[next] = timestampMillis;
+        values[next] = value;
+        next = (next + 1) % values.length;
+        size = Math.min(size + 1, values.length);
+    }
+
+    /**
+     * @return Number of samples held
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return Statistics over the samples held, or null if there are none
+     */
+    public synchronized Stats stats() {
+        if (size == 0) {
+            return null;
+        }
+
+        long[] sorted = new long[size];
+        long t0 = timestamps[index(0)];
+        double sumX = 0;
+        double sumY = 0;
+        double sumXY = 0;
+        double sumXX = 0;
+        for (int i = 0; i < size; i++) {
+            int idx = index(i);
+            sorted[i] = values[idx];
+            // Minutes since the oldest sample keeps the regression well conditioned
+            double x = (timestamps[idx] - t0) / 60_000.0;
+            double y = values[idx];
+            sumX += x;
+            sumY += y;
+            sumXY += x * y;
+            sumXX += x * x;
+        }
+        Arrays.sort(sorted);
+
+        double denominator = size * sumXX - sumX * sumX;
+        double slope = size > 1 && denominator != 0 ? (size * sumXY - sumX * sumY) / denominator : 0;
+
+        return new Stats(size, values[index(size - 1)], sorted[0], sorted[size - 1],
+            percentile(sorted, 50), percentile(sorted, 95), slope, timestamps[index(size - 1)] - t0);
+    }
+
+    /**
+     * Nearest-rank percentile of sorted values
+     */
+    static long percentile(long[] sorted, int percentile) {
+        int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+
+    /**
+     * Array index of the i-th oldest sample
+     */
+    private int index(int i) {
+        int oldest = size < values.length ? 0 : next;
+        return (oldest + i) % values.length;
+    }
+}
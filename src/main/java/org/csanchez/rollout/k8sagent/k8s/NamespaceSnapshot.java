@@ -0,0 +1,113 @@
+package org.csanchez.rollout.k8sagent.k8s;
+
+import io.fabric8.kubernetes.api.model.ConfigMap;
+import io.fabric8.kubernetes.api.model.Event;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.Service;
+import io.fabric8.kubernetes.api.model.apps.Deployment;
+import io.fabric8.kubernetes.client.KubernetesClient;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * The pods, deployments, services, configmaps and events of one namespace, listed once
+ * and then read by every analysis of a batch instead of each listing them again.
+ * Only complete listings are kept: a namespace too large to list within the item limit
+ * gets no snapshot and its reads go to the API server as usual.
+ */
+public final class NamespaceSnapshot implements NamespaceView {
+
+    private final String namespace;
+    private final Instant takenAt;
+    private final List<Pod> pods;
+    private final Map<String, Pod> podsByName;
+    private final List<Deployment> deployments;
+    private final List<Service> services;
+    private final List<ConfigMap> configMaps;
+    private final List<Event> events;
+
+    private NamespaceSnapshot(String namespace, List<Pod> pods, List<Deployment> deployments, List<Service> services,
+            List<ConfigMap> configMaps, List<Event> events) {
+        this.namespace = namespace;
+        this.takenAt = Instant.now();
+        this.pods = List.copyOf(pods);
+        this.podsByName = new HashMap<>();
+        pods.forEach(pod -> podsByName.put(pod.getMetadata().getName(), pod));
+        this.deployments = List.copyOf(deployments);
+        this.services = List.copyOf(services);
+        this.configMaps = List.copyOf(configMaps);
+        this.events = List.copyOf(events);
+    }
+
+    /**
+     * List the namespace, one paged LIST per resource type
+     * @param maxItems Maximum number of items of each type
+     * @return The snapshot, or null if any listing had more than maxItems items
+     */
+    static NamespaceSnapshot take(KubernetesClient client, String namespace, int maxItems) {
+        PagedLister.Page<Pod> pods = PagedLister.list(client.pods().inNamespace(namespace), null, maxItems);
+        PagedLister.Page<Deployment> deployments = PagedLister.list(client.apps().deployments().inNamespace(namespace), null, maxItems);
+        PagedLister.Page<Service> services = PagedLister.list(client.services().inNamespace(namespace), null, maxItems);
+        PagedLister.Page<ConfigMap> configMaps = PagedLister.list(client.configMaps().inNamespace(namespace), null, maxItems);
+        PagedLister.Page<Event> events = PagedLister.list(client.v1().events().inNamespace(namespace), null, maxItems);
+        if (pods.truncated() || deployments.truncated() || services.truncated() || configMaps.truncated() || events.truncated()) {
+            return null;
+        }
+        return new NamespaceSnapshot(namespace, pods.items(), deployments.items(), services.items(),
+            configMaps.items(), events.items());
+    }
+
+    public String namespace() {
+        return namespace;
+    }
+
+    public Instant takenAt() {
+        return takenAt;
+    }
+
+    @Override
+    public Pod getPod(String name) {
+        return podsByName.get(name);
+    }
+
+    @Override
+    public List<Pod> listPods(Map<String, String> labels) {
+        if (labels == null || labels.isEmpty()) {
+            return pods;
+        }
+        return pods.stream()
+            .filter(pod -> pod.getMetadata().getLabels() != null
+                && pod.getMetadata().getLabels().entrySet().containsAll(labels.entrySet()))
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Deployment> listDeployments() {
+        return deployments;
+    }
+
+    @Override
+    public List<Service> listServices() {
+        return services;
+    }
+
+    @Override
+    public List<ConfigMap> listConfigMaps() {
+        return configMaps;
+    }
+
+    @Override
+    public List<Event> listEvents(String involvedObjectName) {
+        if (involvedObjectName == null || involvedObjectName.isEmpty()) {
+            return events;
+        }
+        return events.stream()
+            .filter(event -> event.getInvolvedObject() != null
+                && involvedObjectName.equals(event.getInvolvedObject().getName()))
+            .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,105 @@
+package org.csanchez.rollout.k8sagent.k8s;
+
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.logging.Log;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.text.MessageFormat;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link NamespaceSnapshot}s shared by the analyses of a batch. The batch takes one
+ * snapshot per namespace and attaches them to the memory IDs of its analyses;
+ * {@link K8sTools} then serves those sessions' reads of the namespace from the snapshot.
+ * Other sessions are not affected, and snapshots are dropped when the batch detaches them.
+ * A snapshot older than agent.batch.snapshot-max-age is no longer served, so the analyses
+ * late in a long batch read the namespace live instead of reasoning over stale pods and events.
+ */
+@ApplicationScoped
+public class NamespaceSnapshots {
+
+    @Inject
+    KubernetesClient k8sClient;
+
+    @Inject
+    K8sInformerCache informerCache;
+
+    @Inject
+    MeterRegistry registry;
+
+    @Inject
+    @ConfigProperty(name = "agent.batch.snapshot-max-items", defaultValue = "500")
+    int maxItems;
+
+    @Inject
+    @ConfigProperty(name = "agent.batch.snapshot-max-age", defaultValue = "PT5M")
+    Duration maxAge;
+
+    private final Map<String, Map<String, NamespaceSnapshot>> bySession = new ConcurrentHashMap<>();
+
+    /**
+     * List a namespace once for a batch
+     * @return The snapshot, or null if the informer cache already covers the namespace,
+     *         it is too large to snapshot or it could not be listed
+     */
+    public NamespaceSnapshot take(String namespace) {
+        if (informerCache.covers(namespace)) {
+            count("skipped");
+            return null;
+        }
+        try {
+            NamespaceSnapshot snapshot = NamespaceSnapshot.take(k8sClient, namespace, maxItems);
+            if (snapshot == null) {
+                Log.info(MessageFormat.format("Namespace {0} has more than {1} items of a type, not taking a snapshot", namespace, maxItems));
+                count("too-large");
+                return null;
+            }
+            count("taken");
+            return snapshot;
+        } catch (Exception e) {
+            Log.warn(MessageFormat.format("Could not take a snapshot of namespace {0}: {1}", namespace, e.getMessage()));
+            count("failed");
+            return null;
+        }
+    }
+
+    /**
+     * Serve the session's reads of these namespaces from their snapshots
+     */
+    public void attach(String memoryId, Collection<NamespaceSnapshot> snapshots) {
+        Map<String, NamespaceSnapshot> byNamespace = new ConcurrentHashMap<>();
+        snapshots.forEach(snapshot -> byNamespace.put(snapshot.namespace(), snapshot));
+        bySession.put(memoryId, byNamespace);
+    }
+
+    public void detach(String memoryId) {
+        bySession.remove(memoryId);
+    }
+
+    /**
+     * @return The snapshot of the namespace attached to the session, or null if there is none
+     *         or it is older than the maximum age
+     */
+    public NamespaceView forSession(String memoryId, String namespace) {
+        if (memoryId == null || namespace == null || bySession.isEmpty()) {
+            return null;
+        }
+        Map<String, NamespaceSnapshot> byNamespace = bySession.get(memoryId);
+        NamespaceSnapshot snapshot = byNamespace != null ? byNamespace.get(namespace.trim()) : null;
+        if (snapshot == null || snapshot.takenAt().plus(maxAge).isBefore(Instant.now())) {
+            return null;
+        }
+        return snapshot;
+    }
+
+    private void count(String result) {
+        registry.counter("agent.batch.snapshots", "result", result).increment();
+    }
+}
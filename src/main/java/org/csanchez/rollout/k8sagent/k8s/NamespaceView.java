@@ -0,0 +1,39 @@
+package org.csanchez.rollout.k8sagent.k8s;
+
+import io.fabric8.kubernetes.api.model.ConfigMap;
+import io.fabric8.kubernetes.api.model.Event;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.Service;
+import io.fabric8.kubernetes.api.model.apps.Deployment;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Local, read-only view of the resources of one namespace that {@link K8sTools} reads
+ * instead of issuing a LIST/GET against the API server: the {@link K8sInformerCache}
+ * or a {@link NamespaceSnapshot} shared by a batch of analyses.
+ */
+public interface NamespaceView {
+
+    /**
+     * @return the pod, or null if it does not exist
+     */
+    Pod getPod(String name);
+
+    /**
+     * List pods, optionally restricted to those carrying all the given labels
+     */
+    List<Pod> listPods(Map<String, String> labels);
+
+    List<Deployment> listDeployments();
+
+    List<Service> listServices();
+
+    List<ConfigMap> listConfigMaps();
+
+    /**
+     * List events, optionally only those about the named object
+     */
+    List<Event> listEvents(String involvedObjectName);
+}
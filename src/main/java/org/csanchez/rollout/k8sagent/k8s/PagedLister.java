@@ -0,0 +1,143 @@
+package org.csanchez.rollout.k8sagent.k8s;
+
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.fabric8.kubernetes.api.model.KubernetesResourceList;
+import io.fabric8.kubernetes.api.model.ListOptionsBuilder;
+import io.fabric8.kubernetes.api.model.PartialObjectMetadata;
+import io.fabric8.kubernetes.api.model.PartialObjectMetadataList;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.kubernetes.client.dsl.FilterWatchListDeletable;
+import io.fabric8.kubernetes.client.dsl.Resource;
+import io.fabric8.kubernetes.client.http.HttpClient;
+import io.fabric8.kubernetes.client.http.HttpRequest;
+import io.fabric8.kubernetes.client.http.HttpResponse;
+import io.fabric8.kubernetes.client.utils.URLUtils;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Chunked LIST helpers for {@link K8sTools}.
+ * Reads resources in pages using limit/continue tokens, pushes name filters down as
+ * field selectors, and can fetch metadata only (PartialObjectMetadata) when a caller
+ * does not need spec, status or data.
+ */
+public final class PagedLister {
+
+    /** Page size used for chunked LIST requests */
+    public static final long PAGE_SIZE = 250L;
+
+    /** Timeout of a metadata page request when the client has no request timeout configured */
+    private static final long DEFAULT_REQUEST_TIMEOUT_MILLIS = 10_000L;
+
+    private static final String PARTIAL_METADATA_LIST =
+        "application/json;as=PartialObjectMetadataList;g=meta.k8s.io;v=v1";
+
+    private PagedLister() {
+    }
+
+    /**
+     * Result of a chunked LIST
+     * @param items The items read, at most maxItems
+     * @param truncated true if more items were available on the server
+     */
+    public record Page<T>(List<T> items, boolean truncated) {
+    }
+
+    /**
+     * List resources page by page, optionally restricted to one name
+     * @param query The (namespaced, optionally label-filtered) query
+     * @param resourceName Optional: exact name, sent as a metadata.name field selector
+     * @param maxItems Stop reading once this many items have been collected
+     */
+    public static <T extends HasMetadata, L extends KubernetesResourceList<T>, R extends Resource<T>> Page<T> list(
+            FilterWatchListDeletable<T, L, R> query, String resourceName, int maxItems) {
+        if (resourceName != null && !resourceName.isEmpty()) {
+            query = query.withField("metadata.name", resourceName);
+        }
+
+        List<T> items = new ArrayList<>();
+        String continueToken = null;
+        do {
+            L page = query.list(new ListOptionsBuilder()
+                .withLimit(Math.min(PAGE_SIZE, maxItems - items.size()))
+                .withContinue(continueToken)
+                .build());
+            items.addAll(page.getItems());
+            continueToken = page.getMetadata() != null ? page.getMetadata().getContinue() : null;
+        } while (hasMore(continueToken) && items.size() < maxItems);
+
+        return new Page<>(items, hasMore(continueToken));
+    }
+
+    /**
+     * List only the metadata (name, labels, annotations...) of namespaced core/v1 resources,
+     * so the API server does not send and the client does not deserialize spec or data
+     * Each page request is bounded by the client's request timeout, like the typed client's
+     * @param resource Plural core/v1 resource name (e.g. 'configmaps')
+     */
+    public static Page<PartialObjectMetadata> listMetadata(KubernetesClient client, String namespace, String resource,
+            String resourceName, int maxItems) throws Exception {
+        HttpClient http = client.getHttpClient();
+        long timeoutMillis = requestTimeoutMillis(client);
+        String baseUrl = URLUtils.join(client.getMasterUrl().toString(), "api", "v1", "namespaces", namespace, resource);
+
+        List<PartialObjectMetadata> items = new ArrayList<>();
+        String continueToken = null;
+        do {
+            StringBuilder url = new StringBuilder(baseUrl)
+                .append("?limit=").append(Math.min(PAGE_SIZE, maxItems - items.size()));
+            if (resourceName != null && !resourceName.isEmpty()) {
+                url.append("&fieldSelector=").append(encode("metadata.name=" + resourceName));
+            }
+            if (continueToken != null) {
+                url.append("&continue=").append(encode(continueToken));
+            }
+
+            HttpRequest request = http.newHttpRequestBuilder()
+                .uri(url.toString())
+                .header("Accept", PARTIAL_METADATA_LIST)
+                .build();
+            CompletableFuture<HttpResponse<String>> pending = http.sendAsync(request, String.class);
+            HttpResponse<String> response;
+            try {
+                response = pending.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                pending.cancel(true);
+                throw new KubernetesClientException(MessageFormat.format(
+                    "Timed out after {0} ms listing {1} metadata in {2}", timeoutMillis, resource, namespace));
+            }
+            if (!response.isSuccessful()) {
+                throw new KubernetesClientException(MessageFormat.format(
+                    "Failed to list {0} metadata in {1}: HTTP {2}", resource, namespace, response.code()));
+            }
+
+            PartialObjectMetadataList page = client.getKubernetesSerialization()
+                .unmarshal(response.body(), PartialObjectMetadataList.class);
+            items.addAll(page.getItems());
+            continueToken = page.getMetadata() != null ? page.getMetadata().getContinue() : null;
+        } while (hasMore(continueToken) && items.size() < maxItems);
+
+        return new Page<>(items, hasMore(continueToken));
+    }
+
+    private static long requestTimeoutMillis(KubernetesClient client) {
+        Integer configured = client.getConfiguration() != null ? client.getConfiguration().getRequestTimeout() : null;
+        return configured != null && configured > 0 ? configured : DEFAULT_REQUEST_TIMEOUT_MILLIS;
+    }
+
+    private static boolean hasMore(String continueToken) {
+        return continueToken != null && !continueToken.isEmpty();
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+}
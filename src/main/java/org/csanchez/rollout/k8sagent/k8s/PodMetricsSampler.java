@@ -0,0 +1,296 @@
+package org.csanchez.rollout.k8sagent.k8s;
+
+import io.fabric8.kubernetes.api.model.Quantity;
+import io.fabric8.kubernetes.api.model.metrics.v1beta1.ContainerMetrics;
+import io.fabric8.kubernetes.api.model.metrics.v1beta1.PodMetrics;
+import io.fabric8.kubernetes.api.model.metrics.v1beta1.PodMetricsList;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.quarkus.logging.Log;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.text.MessageFormat;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background sampler of metrics-server usage for the pods under analysis.
+ * A pod is tracked from the first time a tool asks for its metrics; every interval
+ * the sampler issues one pod metrics LIST per namespace with tracked pods and appends
+ * each container's CPU and memory usage to fixed-size {@link MetricsRingBuffer}s.
+ * Tools then answer from memory with min/max/p50/p95/trend over the window, as long as
+ * the pod's last reading is at most two intervals old; otherwise (polls failing, pod
+ * gone from metrics-server) they get null and query metrics-server directly.
+ * Pods that nobody asked about for the idle TTL are dropped.
+ */
+@ApplicationScoped
+public class PodMetricsSampler {
+
+    @Inject
+    KubernetesClient k8sClient;
+
+    @Inject
+    @ConfigProperty(name = "k8s.metrics.sampler.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @Inject
+    @ConfigProperty(name = "k8s.metrics.sampler.interval", defaultValue = "PT15S")
+    Duration interval;
+
+    @Inject
+    @ConfigProperty(name = "k8s.metrics.sampler.window-size", defaultValue = "40")
+    int windowSize;
+
+    @Inject
+    @ConfigProperty(name = "k8s.metrics.sampler.idle-ttl", defaultValue = "PT15M")
+    Duration idleTtl;
+
+    /**
+     * Latest usage of a pod, summed over its containers
+     */
+    public record Usage(long cpuMillicores, long memoryBytes) {
+    }
+
+    private final Map<String, PodSeries> tracked = new ConcurrentHashMap<>();
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Start polling
+     */
+    void onStart(@Observes StartupEvent ev) {
+        if (!enabled) {
+            Log.debug("Metrics sampler disabled, getMetrics will query metrics-server on every call");
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "pod-metrics-sampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::poll, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+        Log.info(MessageFormat.format("Started metrics sampler (every {0}s, window of {1} samples)",
+            interval.getSeconds(), windowSize));
+    }
+
+    /**
+     * Stop polling
+     */
+    void onStop(@Observes ShutdownEvent ev) {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        tracked.clear();
+    }
+
+    /**
+     * @return true if sampling is enabled in configuration
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Start (or keep) tracking a pod and return its usage statistics over the window
+     * @return The statistics, or null if no fresh sample has been collected for the pod
+     */
+    public Map<String, Object> track(String namespace, String podName) {
+        if (!enabled) {
+            return null;
+        }
+        PodSeries series = touch(namespace, podName);
+        return series.isFresh() ? series.toMap() : null;
+    }
+
+    /**
+     * Start (or keep) tracking a pod and return its latest sampled usage
+     * @return The usage, or null if no fresh sample has been collected for the pod
+     */
+    public Usage latest(String namespace, String podName) {
+        if (!enabled) {
+            return null;
+        }
+        PodSeries series = touch(namespace, podName);
+        return series.isFresh() ? series.latest() : null;
+    }
+
+    /**
+     * Record a reading fetched directly by a tool, so the window starts before the next poll
+     */
+    public void record(String namespace, PodMetrics metrics) {
+        if (!enabled || metrics == null) {
+            return;
+        }
+        PodSeries series = tracked.get(key(namespace, metrics.getMetadata().getName()));
+        if (series != null) {
+            series.add(metrics);
+        }
+    }
+
+    /**
+     * One LIST of pod metrics per namespace with tracked pods
+     */
+    void poll() {
+        long idleBefore = System.nanoTime() - idleTtl.toNanos();
+        tracked.values().removeIf(series -> series.lastAccess - idleBefore < 0);
+
+        Set<String> namespaces = new HashSet<>();
+        tracked.values().forEach(series -> namespaces.add(series.namespace));
+        for (String namespace : namespaces) {
+            try {
+                PodMetricsList list = k8sClient.top().pods().inNamespace(namespace).metrics();
+                for (PodMetrics metrics : list.getItems()) {
+                    PodSeries series = tracked.get(key(namespace, metrics.getMetadata().getName()));
+                    if (series != null) {
+                        series.add(metrics);
+                    }
+                }
+            } catch (Exception e) {
+                Log.debug(MessageFormat.format("Could not sample metrics in namespace {0}: {1}", namespace, e.getMessage()));
+            }
+        }
+    }
+
+    private PodSeries touch(String namespace, String podName) {
+        PodSeries series = tracked.computeIfAbsent(key(namespace, podName), k -> new PodSeries(namespace, podName));
+        series.lastAccess = System.nanoTime();
+        return series;
+    }
+
+    private static String key(String namespace, String podName) {
+        return namespace + "/" + podName;
+    }
+
+    private static long millicores(Quantity quantity) {
+        return quantity != null ? Math.round(quantity.getNumericalAmount().doubleValue() * 1000) : 0;
+    }
+
+    private static long bytes(Quantity quantity) {
+        return quantity != null ? quantity.getNumericalAmount().longValue() : 0;
+    }
+
+    private static long timestamp(PodMetrics metrics) {
+        try {
+            return metrics.getTimestamp() != null ? Instant.parse(metrics.getTimestamp()).toEpochMilli() : System.currentTimeMillis();
+        } catch (DateTimeParseException e) {
+            return System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Usage windows of the containers of one tracked pod
+     */
+    private class PodSeries {
+        final String namespace;
+        final String podName;
+        final Map<String, MetricsRingBuffer> cpu = new ConcurrentHashMap<>();
+        final Map<String, MetricsRingBuffer> memory = new ConcurrentHashMap<>();
+        volatile long lastAccess;
+        /** {@link System#nanoTime()} of the last reading received for the pod, 0 before the first one */
+        volatile long lastReading;
+
+        PodSeries(String namespace, String podName) {
+            this.namespace = namespace;
+            this.podName = podName;
+        }
+
+        void add(PodMetrics metrics) {
+            lastReading = System.nanoTime();
+            long timestamp = timestamp(metrics);
+            for (ContainerMetrics container : metrics.getContainers()) {
+                cpu.computeIfAbsent(container.getName(), n -> new MetricsRingBuffer(windowSize))
+                    .add(timestamp, millicores(container.getUsage().get("cpu")));
+                memory.computeIfAbsent(container.getName(), n -> new MetricsRingBuffer(windowSize))
+                    .add(timestamp, bytes(container.getUsage().get("memory")));
+            }
+        }
+
+        /**
+         * @return true if a reading was received within the last two sampling intervals
+         */
+        boolean isFresh() {
+            long last = lastReading;
+            return last != 0 && System.nanoTime() - last <= interval.toNanos() * 2;
+        }
+
+        long readingAgeMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastReading);
+        }
+
+        Usage latest() {
+            long cpuMillicores = 0;
+            long memoryBytes = 0;
+            for (Map.Entry<String, MetricsRingBuffer> entry : cpu.entrySet()) {
+                MetricsRingBuffer.Stats cpuStats = entry.getValue().stats();
+                MetricsRingBuffer memoryBuffer = memory.get(entry.getKey());
+                MetricsRingBuffer.Stats memoryStats = memoryBuffer != null ? memoryBuffer.stats() : null;
+                if (cpuStats == null || memoryStats == null) {
+                    return null;
+                }
+                cpuMillicores += cpuStats.latest();
+                memoryBytes += memoryStats.latest();
+            }
+            return cpu.isEmpty() ? null : new Usage(cpuMillicores, memoryBytes);
+        }
+
+        Map<String, Object> toMap() {
+            List<Map<String, Object>> containers = new ArrayList<>();
+            int samples = 0;
+            long windowMillis = 0;
+            for (Map.Entry<String, MetricsRingBuffer> entry : cpu.entrySet()) {
+                MetricsRingBuffer.Stats cpuStats = entry.getValue().stats();
+                MetricsRingBuffer memoryBuffer = memory.get(entry.getKey());
+                MetricsRingBuffer.Stats memoryStats = memoryBuffer != null ? memoryBuffer.stats() : null;
+                if (cpuStats == null || memoryStats == null) {
+                    continue;
+                }
+                samples = Math.max(samples, cpuStats.samples());
+                windowMillis = Math.max(windowMillis, cpuStats.windowMillis());
+
+                Map<String, Object> container = new HashMap<>();
+                container.put("name", entry.getKey());
+                container.put("cpuMillicores", statsMap(cpuStats, 1));
+                container.put("memoryMiB", statsMap(memoryStats, 1024 * 1024));
+                containers.add(container);
+            }
+            if (containers.isEmpty()) {
+                return null;
+            }
+
+            Map<String, Object> result = new HashMap<>();
+            result.put("namespace", namespace);
+            result.put("podName", podName);
+            result.put("source", "sampler");
+            result.put("samples", samples);
+            result.put("windowSeconds", windowMillis / 1000);
+            result.put("ageSeconds", readingAgeMillis() / 1000);
+            result.put("containers", containers);
+            return result;
+        }
+
+        private Map<String, Object> statsMap(MetricsRingBuffer.Stats stats, long unit) {
+            Map<String, Object> map = new HashMap<>();
+            map.put("current", stats.latest() / unit);
+            map.put("min", stats.min() / unit);
+            map.put("max", stats.max() / unit);
+            map.put("p50", stats.p50() / unit);
+            map.put("p95", stats.p95() / unit);
+            map.put("trendPerMinute", Math.round(stats.trendPerMinute() / unit * 10) / 10.0);
+            return map;
+        }
+    }
+}
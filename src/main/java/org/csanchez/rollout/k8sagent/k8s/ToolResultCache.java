@@ -0,0 +1,120 @@
+package org.csanchez.rollout.k8sagent.k8s;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.csanchez.rollout.k8sagent.utils.BoundedTtlCache;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Short-lived results of read-only tool calls, shared by all analyses, so a model
+ * repeating a call or parallel analyses of the same rollout do not hit the API server
+ * again. Entries are keyed by the {@link org.csanchez.rollout.k8sagent.utils.ToolCallFingerprint}
+ * of the call and expire a TTL after they were stored. When the namespace is watched
+ * by the {@link K8sInformerCache}, an entry is also dropped as soon as any pod,
+ * deployment, service or configmap in the namespace changes resourceVersion.
+ * Applied by {@link ToolResultCacheInterceptor}; hits and misses are exposed as metrics.
+ */
+@ApplicationScoped
+public class ToolResultCache {
+
+    @Inject
+    MeterRegistry registry;
+
+    @Inject
+    K8sInformerCache informerCache;
+
+    @Inject
+    @ConfigProperty(name = "k8s.tools.result-cache.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @Inject
+    @ConfigProperty(name = "k8s.tools.result-cache.ttl", defaultValue = "PT15S")
+    Duration ttl;
+
+    @Inject
+    @ConfigProperty(name = "k8s.tools.result-cache.max-entries", defaultValue = "500")
+    int maxEntries;
+
+    private BoundedTtlCache<Long, Cached> results;
+
+    /**
+     * A tool result and the namespace generation it was read at (-1 if not tracked)
+     */
+    private record Cached(Object result, long generation) {
+    }
+
+    @PostConstruct
+    void init() {
+        results = new BoundedTtlCache<>(maxEntries, ttl, true);
+
+        Gauge.builder("agent.tool.cache.entries", results, BoundedTtlCache::size)
+            .description("Tool results held in the tool result cache")
+            .register(registry);
+        FunctionCounter.builder("agent.tool.cache.evictions", results, BoundedTtlCache::sizeEvictions)
+            .description("Tool results evicted from the tool result cache")
+            .tag("cause", "size")
+            .register(registry);
+        FunctionCounter.builder("agent.tool.cache.evictions", results, BoundedTtlCache::expiredEvictions)
+            .description("Tool results evicted from the tool result cache")
+            .tag("cause", "expired")
+            .register(registry);
+    }
+
+    /**
+     * @return true if caching is enabled in configuration
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Read before running the tool, so a change made while it runs invalidates its result
+     * @return The current change generation of the namespace, or -1 if it is not tracked
+     */
+    public long generation(String namespace) {
+        return namespace == null || namespace.isBlank() ? -1 : informerCache.generation(namespace.trim());
+    }
+
+    /**
+     * @param key Fingerprint of the tool call
+     * @param namespace Namespace the call reads from, null if none
+     * @return The cached result, or null if there is none or the namespace changed since it was stored
+     */
+    public Object get(String toolName, long key, String namespace) {
+        Cached cached = results.get(key);
+        if (cached == null) {
+            count(toolName, "miss");
+            return null;
+        }
+        if (cached.generation() != -1 && cached.generation() != generation(namespace)) {
+            results.remove(key);
+            count(toolName, "stale");
+            return null;
+        }
+        count(toolName, "hit");
+        return cached.result();
+    }
+
+    /**
+     * Store a successful result; results reporting an error are never cached
+     * @param generation Namespace generation read before the tool ran
+     */
+    public void put(long key, long generation, Object result) {
+        if (result == null || result instanceof Map<?, ?> map && map.containsKey("error")) {
+            return;
+        }
+        results.evictExpired();
+        results.put(key, new Cached(result, generation));
+    }
+
+    private void count(String toolName, String result) {
+        registry.counter("agent.tool.cache.requests", "tool", toolName, "result", result).increment();
+    }
+}
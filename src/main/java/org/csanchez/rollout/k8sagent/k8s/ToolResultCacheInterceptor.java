@@ -0,0 +1,105 @@
+package org.csanchez.rollout.k8sagent.k8s;
+
+import dev.langchain4j.agent.tool.Tool;
+import dev.langchain4j.agent.tool.ToolMemoryId;
+import jakarta.annotation.Priority;
+import jakarta.inject.Inject;
+import jakarta.interceptor.AroundInvoke;
+import jakarta.interceptor.Interceptor;
+import jakarta.interceptor.InvocationContext;
+import org.csanchez.rollout.k8sagent.utils.ToolCallFingerprint;
+import org.csanchez.rollout.k8sagent.utils.ToolCallLimiter;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Answers {@code @Tool} calls of a {@link CacheToolResults} bean from the
+ * {@link ToolResultCache} when the same call was made recently, by this or another session.
+ * Runs outside the tool call limiter and counts a cached answer against the session's tool
+ * call budget itself, so cache hits cannot get around the limit. A repeat of a call the
+ * session already made gets the earlier result without taking a new slot; once that result
+ * has expired the limiter rejects the repeat as a duplicate.
+ * Calls of a session served from a batch's {@link NamespaceSnapshot} bypass the cache.
+ * The namespace is taken from the parameter named {@code namespace}.
+ */
+@CacheToolResults
+@Interceptor
+@Priority(Interceptor.Priority.APPLICATION - 10)
+public class ToolResultCacheInterceptor {
+
+    private static final String NAMESPACE_PARAMETER = "namespace";
+
+    @Inject
+    ToolResultCache cache;
+
+    @Inject
+    ToolCallLimiter limiter;
+
+    @Inject
+    NamespaceSnapshots snapshots;
+
+    @AroundInvoke
+    Object cache(InvocationContext ctx) throws Exception {
+        Method method = ctx.getMethod();
+        Tool tool = method.getAnnotation(Tool.class);
+        if (tool == null || !cache.isEnabled()) {
+            return ctx.proceed();
+        }
+
+        String toolName = tool.name().isEmpty() ? method.getName() : tool.name();
+        Parameter[] parameters = method.getParameters();
+        Object[] args = ctx.getParameters();
+        List<Object> callArgs = new ArrayList<>(args.length);
+        String namespace = null;
+        Object memoryId = null;
+        for (int i = 0; i < parameters.length; i++) {
+            if (parameters[i].isAnnotationPresent(ToolMemoryId.class)) {
+                memoryId = args[i];
+                continue;
+            }
+            callArgs.add(args[i]);
+            if (NAMESPACE_PARAMETER.equals(parameters[i].getName()) && args[i] instanceof String ns) {
+                namespace = ns;
+            }
+        }
+
+        // A batch session reads from its namespace snapshot, which may be minutes old: neither
+        // serve it live results nor share its snapshot results with live sessions
+        if (memoryId != null && snapshots.forSession(memoryId.toString(), namespace) != null) {
+            return ctx.proceed();
+        }
+
+        long key = ToolCallFingerprint.of(toolName, callArgs.toArray());
+        Object cached = cache.get(toolName, key, namespace);
+        if (cached != null) {
+            return memoryId != null ? answer(method, memoryId.toString(), toolName, args, cached) : cached;
+        }
+
+        long generation = cache.generation(namespace);
+        Object result = ctx.proceed();
+        cache.put(key, generation, result);
+        return result;
+    }
+
+    /**
+     * Count a cached answer like the tool call it replaces; a repeat takes no slot
+     */
+    private Object answer(Method method, String memoryId, String toolName, Object[] args, Object cached) {
+        if (limiter.isRepeat(memoryId, toolName, args)) {
+            return cached;
+        }
+        ToolCallLimiter.Decision decision = limiter.acquire(memoryId, toolName, args);
+        if (decision == ToolCallLimiter.Decision.ALLOWED || decision == ToolCallLimiter.Decision.DUPLICATE) {
+            return cached;
+        }
+        String error = limiter.rejectionMessage(decision, toolName);
+        if (method.getReturnType().isAssignableFrom(Map.class)) {
+            return Map.of("error", error);
+        }
+        throw new IllegalStateException(error);
+    }
+}
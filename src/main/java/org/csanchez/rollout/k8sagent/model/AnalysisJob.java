@@ -0,0 +1,34 @@
+package org.csanchez.rollout.k8sagent.model;
+
+import java.time.Instant;
+
+/**
+ * State of an analysis submitted to run in the background.
+ *
+ * @param id Job identifier, used to poll for the result
+ * @param status Current status of the job
+ * @param submittedAt When the job was accepted
+ * @param completedAt When the analysis finished (null until it does)
+ * @param result The analysis, once the job succeeded (nullable)
+ * @param error Why the analysis failed, once the job failed (nullable)
+ */
+public record AnalysisJob(
+    String id,
+    Status status,
+    Instant submittedAt,
+    Instant completedAt,
+    KubernetesAgentResponse result,
+    String error
+) {
+
+    public enum Status {
+        QUEUED,
+        RUNNING,
+        SUCCEEDED,
+        FAILED;
+
+        public boolean isDone() {
+            return this == SUCCEEDED || this == FAILED;
+        }
+    }
+}
@@ -1,8 +1,10 @@
 package org.csanchez.rollout.k8sagent.remediation;
 
 import dev.langchain4j.agent.tool.Tool;
+import dev.langchain4j.agent.tool.ToolMemoryId;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
+import org.csanchez.rollout.k8sagent.utils.LimitToolCalls;
 import org.eclipse.microprofile.rest.client.inject.RestClient;
 
 import io.quarkus.logging.Log;
@@ -16,6 +18,7 @@ import java.util.Map;
  * Git operations are deterministic, only the fix content comes from AI.
  */
 @ApplicationScoped
+@LimitToolCalls
 public class GitHubPRTool {
     
     private final GitOperations gitOps;
@@ -38,6 +41,7 @@ public class GitHubPRTool {
     /**
      * Create a GitHub pull request with code fixes
      * 
+     * @param memoryId The analysis session, supplied by the framework (not by the LLM)
      * @param repoUrl URL of the GitHub repository
      * @param fileChanges Map of file paths to their new content
      * @param fixDescription Description of the fix
@@ -49,6 +53,7 @@ public class GitHubPRTool {
      */
     @Tool("Create a GitHub pull request with code fixes")
     public Map<String, Object> createGitHubPR(
+            @ToolMemoryId String memoryId,
             String repoUrl,
             Map<String, String> fileChanges,
             String fixDescription,
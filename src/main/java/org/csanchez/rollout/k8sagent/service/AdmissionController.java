@@ -0,0 +1,297 @@
+package org.csanchez.rollout.k8sagent.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.quarkus.logging.Log;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import io.smallrye.mutiny.subscription.UniEmitter;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.text.MessageFormat;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Admission control for agent conversations, in front of the REST endpoints and the A2A
+ * executor. At most agent.admission.max-in-flight analyses run at once; the others wait,
+ * without holding a thread, in a bounded queue ordered by {@link Priority} (then arrival),
+ * so production namespaces and abort checks run before dev ones during a burst.
+ * <ul>
+ * <li>When the queue is full, an analysis of higher priority than the lowest queued one
+ * takes its place; otherwise it is rejected right away.</li>
+ * <li>An analysis still queued after agent.admission.queue-timeout is rejected, as its
+ * caller is likely to have given up already.</li>
+ * </ul>
+ * Rejections fail with {@link AnalysisRejectedException}, answered with a 429.
+ */
+@ApplicationScoped
+public class AdmissionController {
+
+    /**
+     * Order in which queued analyses are admitted
+     */
+    public enum Priority {
+        HIGH, NORMAL, LOW;
+
+        String tag() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    @Inject
+    MeterRegistry registry;
+
+    @Inject
+    @ConfigProperty(name = "agent.admission.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @Inject
+    @ConfigProperty(name = "agent.admission.max-in-flight", defaultValue = "8")
+    int maxInFlight;
+
+    @Inject
+    @ConfigProperty(name = "agent.admission.max-queued", defaultValue = "100")
+    int maxQueued;
+
+    @Inject
+    @ConfigProperty(name = "agent.admission.queue-timeout", defaultValue = "PT60S")
+    Duration queueTimeout;
+
+    @Inject
+    @ConfigProperty(name = "agent.admission.high-priority-namespaces", defaultValue = "(prod|production)(-.*)?|.*-(prod|production)")
+    Pattern highPriorityNamespaces;
+
+    @Inject
+    @ConfigProperty(name = "agent.admission.low-priority-namespaces", defaultValue = "(dev|test|sandbox)(-.*)?|.*-(dev|test|sandbox)")
+    Pattern lowPriorityNamespaces;
+
+    private int inFlight;
+    private long arrivals;
+    private final PriorityQueue<Waiter> queue = new PriorityQueue<>(
+        Comparator.comparing((Waiter waiter) -> waiter.priority).thenComparingLong(waiter -> waiter.arrival));
+    private final Map<Priority, Timer> waitTimers = new EnumMap<>(Priority.class);
+    private Counter queueFull;
+    private Counter evicted;
+    private Counter timedOut;
+
+    /**
+     * An analysis waiting for, or holding, a slot
+     */
+    private static final class Waiter {
+        final Priority priority;
+        final long arrival;
+        final long enqueuedAt = System.nanoTime();
+        UniEmitter<? super Boolean> emitter;
+        Future<?> deadline;
+        boolean admitted;
+        boolean done;
+
+        Waiter(Priority priority, long arrival) {
+            this.priority = priority;
+            this.arrival = arrival;
+        }
+    }
+
+    @PostConstruct
+    void init() {
+        for (Priority priority : Priority.values()) {
+            waitTimers.put(priority, Timer.builder("agent.admission.wait")
+                .description("Time analyses waited in the admission queue")
+                .tag("priority", priority.tag())
+                .register(registry));
+        }
+        Gauge.builder("agent.admission.in-flight", this, AdmissionController::getInFlight)
+            .description("Analyses admitted and running")
+            .register(registry);
+        Gauge.builder("agent.admission.queued", this, AdmissionController::getQueued)
+            .description("Analyses waiting in the admission queue")
+            .register(registry);
+        queueFull = rejected("queue-full");
+        evicted = rejected("evicted");
+        timedOut = rejected("timeout");
+    }
+
+    private Counter rejected(String reason) {
+        return Counter.builder("agent.admission.rejected")
+            .description("Analyses rejected by admission control")
+            .tag("reason", reason)
+            .register(registry);
+    }
+
+    /**
+     * Classify an analysis from its request context (or A2A message metadata):
+     * an explicit "priority" (high, normal or low) wins, an "abortCheck" is high priority,
+     * and otherwise the "namespace" is matched against the high and low priority patterns
+     */
+    public Priority priorityOf(Map<String, ?> context) {
+        if (context == null) {
+            return Priority.NORMAL;
+        }
+        Object explicit = context.get("priority");
+        if (explicit != null) {
+            for (Priority priority : Priority.values()) {
+                if (priority.name().equalsIgnoreCase(explicit.toString().trim())) {
+                    return priority;
+                }
+            }
+        }
+        if (Boolean.parseBoolean(String.valueOf(context.get("abortCheck")))) {
+            return Priority.HIGH;
+        }
+        Object namespace = context.get("namespace");
+        if (namespace != null) {
+            if (highPriorityNamespaces.matcher(namespace.toString().trim()).matches()) {
+                return Priority.HIGH;
+            }
+            if (lowPriorityNamespaces.matcher(namespace.toString().trim()).matches()) {
+                return Priority.LOW;
+            }
+        }
+        return Priority.NORMAL;
+    }
+
+    /**
+     * Run the analysis once admitted; its slot is released when it terminates (or is cancelled)
+     * @return The analysis result; fails with {@link AnalysisRejectedException} if not admitted
+     */
+    public <T> Uni<T> admit(Priority priority, Supplier<Uni<T>> analysis) {
+        if (!enabled) {
+            return Uni.createFrom().deferred(analysis::get);
+        }
+        return Uni.createFrom().deferred(() -> {
+            Waiter waiter;
+            synchronized (this) {
+                waiter = new Waiter(priority, arrivals++);
+            }
+            return Uni.createFrom().<Boolean>emitter(emitter -> enqueue(waiter, emitter))
+                .onItem().transformToUni(admitted -> analysis.get())
+                .onTermination().invoke(() -> finish(waiter));
+        });
+    }
+
+    private void enqueue(Waiter waiter, UniEmitter<? super Boolean> emitter) {
+        Waiter rejected = null;
+        synchronized (this) {
+            waiter.emitter = emitter;
+            if (queue.size() >= maxQueued) {
+                Waiter lowest = lowestQueued();
+                if (lowest == null || lowest.priority.compareTo(waiter.priority) <= 0) {
+                    rejected = waiter;
+                    waiter.done = true;
+                } else {
+                    queue.remove(lowest);
+                    lowest.deadline.cancel(false);
+                    lowest.done = true;
+                    rejected = lowest;
+                }
+            }
+            if (rejected != waiter) {
+                queue.add(waiter);
+                waiter.deadline = Infrastructure.getDefaultWorkerPool()
+                    .schedule(() -> expire(waiter), queueTimeout.toNanos(), TimeUnit.NANOSECONDS);
+            }
+        }
+        if (rejected == waiter) {
+            queueFull.increment();
+            Log.warn(MessageFormat.format("Analysis rejected, admission queue is full ({0} queued, priority {1})",
+                maxQueued, waiter.priority.tag()));
+            emitter.fail(new AnalysisRejectedException("Too many analyses queued, retry later", queueTimeout));
+            return;
+        }
+        if (rejected != null) {
+            evicted.increment();
+            Log.warn(MessageFormat.format("Queued {0} priority analysis evicted by a {1} priority one",
+                rejected.priority.tag(), waiter.priority.tag()));
+            rejected.emitter.fail(new AnalysisRejectedException(
+                "Evicted from the admission queue by higher priority analyses, retry later", queueTimeout));
+        }
+        grant();
+    }
+
+    /**
+     * @return The queued waiter admitted last: lowest priority, latest arrival
+     */
+    private Waiter lowestQueued() {
+        Waiter lowest = null;
+        for (Waiter waiter : queue) {
+            if (lowest == null || queue.comparator().compare(waiter, lowest) > 0) {
+                lowest = waiter;
+            }
+        }
+        return lowest;
+    }
+
+    private void expire(Waiter waiter) {
+        synchronized (this) {
+            if (waiter.done || !queue.remove(waiter)) {
+                return;
+            }
+            waiter.done = true;
+        }
+        timedOut.increment();
+        Log.warn(MessageFormat.format("Analysis rejected after waiting {0} in the admission queue (priority {1})",
+            queueTimeout, waiter.priority.tag()));
+        waiter.emitter.fail(new AnalysisRejectedException("Analysis waited too long to be admitted, retry later", queueTimeout));
+    }
+
+    /**
+     * Release the waiter's slot, or leave the queue if it was not admitted yet
+     */
+    private void finish(Waiter waiter) {
+        synchronized (this) {
+            if (waiter.admitted) {
+                if (waiter.done) {
+                    return;
+                }
+                inFlight--;
+            } else if (queue.remove(waiter)) {
+                waiter.deadline.cancel(false);
+            }
+            waiter.done = true;
+        }
+        grant();
+    }
+
+    /**
+     * Admit queued analyses, highest priority first, while slots are free
+     */
+    private void grant() {
+        while (true) {
+            Waiter next;
+            synchronized (this) {
+                if (inFlight >= maxInFlight || queue.isEmpty()) {
+                    return;
+                }
+                next = queue.poll();
+                next.deadline.cancel(false);
+                next.admitted = true;
+                inFlight++;
+            }
+            waitTimers.get(next.priority).record(System.nanoTime() - next.enqueuedAt, TimeUnit.NANOSECONDS);
+            // Complete outside the lock, the analysis may start (and end) on this thread
+            next.emitter.complete(Boolean.TRUE);
+        }
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public synchronized int getQueued() {
+        return queue.size();
+    }
+}
@@ -0,0 +1,341 @@
+package org.csanchez.rollout.k8sagent.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.logging.Log;
+import io.quarkus.virtual.threads.VirtualThreads;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import io.smallrye.mutiny.subscription.UniEmitter;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Instance;
+import jakarta.inject.Inject;
+import org.csanchez.rollout.k8sagent.agents.KubernetesAgent;
+import org.csanchez.rollout.k8sagent.agents.SecondaryKubernetesAgent;
+import org.csanchez.rollout.k8sagent.utils.LatencyWindow;
+import org.csanchez.rollout.k8sagent.utils.RetryHelper;
+import org.csanchez.rollout.k8sagent.utils.ToolCallLimiter;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.text.MessageFormat;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Single entry point for calling the {@link KubernetesAgent}, shared by the REST and A2A
+ * endpoints. Every attempt goes through the {@link LlmCircuitBreaker}, failing fast with
+ * {@link LlmUnavailableException} while it is open, and the {@link RateLimitCoordinator};
+ * transient failures are retried with {@link RetryHelper}. No thread is held while waiting,
+ * and the blocking agent conversation itself runs on a virtual thread, so the number of
+ * concurrent analyses is not bounded by the worker pool. Cancelling an analysis interrupts
+ * its conversation thread, and the rate-limit permit is only given back once the call returns.
+ * With hedging enabled, an analysis the primary model has not answered within a
+ * percentile of its recent latencies is also sent to the {@link SecondaryKubernetesAgent};
+ * the first answer wins and the other call is cancelled.
+ */
+@ApplicationScoped
+public class AgentInvocationService {
+
+    private static final String HEDGE_MEMORY_SUFFIX = "/hedge";
+
+    private static final String HEDGE_NOTE = "\n\nNote: pull request creation is not available in this session;"
+        + " describe any code fix in the remediation instead.";
+
+    @Inject
+    KubernetesAgent kubernetesAgent;
+
+    @Inject
+    Instance<SecondaryKubernetesAgent> secondaryAgent;
+
+    @Inject
+    RateLimitCoordinator rateLimits;
+
+    @Inject
+    LlmCircuitBreaker circuitBreaker;
+
+    @Inject
+    ToolCallLimiter toolCallLimiter;
+
+    @Inject
+    MeterRegistry registry;
+
+    @Inject
+    @VirtualThreads
+    ExecutorService virtualThreads;
+
+    @Inject
+    @ConfigProperty(name = "agent.llm.virtual-threads", defaultValue = "true")
+    boolean useVirtualThreads;
+
+    @Inject
+    @ConfigProperty(name = "agent.llm.hedging.enabled", defaultValue = "false")
+    boolean hedgingEnabled;
+
+    @Inject
+    @ConfigProperty(name = "agent.llm.hedging.percentile", defaultValue = "0.95")
+    double hedgingPercentile;
+
+    @Inject
+    @ConfigProperty(name = "agent.llm.hedging.min-samples", defaultValue = "20")
+    int hedgingMinSamples;
+
+    @Inject
+    @ConfigProperty(name = "agent.llm.hedging.initial-delay", defaultValue = "PT45S")
+    Duration hedgingInitialDelay;
+
+    @Inject
+    @ConfigProperty(name = "agent.llm.hedging.min-delay", defaultValue = "PT10S")
+    Duration hedgingMinDelay;
+
+    @Inject
+    @ConfigProperty(name = "agent.llm.hedging.window-size", defaultValue = "200")
+    int hedgingWindowSize;
+
+    private LatencyWindow primaryLatency;
+    private ExecutorService conversationExecutor;
+
+    @PostConstruct
+    void init() {
+        primaryLatency = new LatencyWindow(hedgingWindowSize);
+        conversationExecutor = useVirtualThreads ? virtualThreads : Infrastructure.getDefaultWorkerPool();
+    }
+
+    /**
+     * Run an analysis; the agent call itself runs on a virtual (or worker) thread
+     */
+    public Uni<String> chat(String memoryId, String message) {
+        Uni<String> primary = primary(memoryId, message);
+        if (!hedgingEnabled) {
+            return primary;
+        }
+        return Uni.createFrom().emitter(emitter ->
+            new Hedge(emitter, memoryId, message).start(primary, hedgeDelay()));
+    }
+
+    private Uni<String> primary(String memoryId, String message) {
+        return Uni.createFrom().deferred(() -> {
+            long start = System.nanoTime();
+            return RetryHelper.executeWithRetryOnTransientErrorsAsync(() -> attempt(memoryId, message), "AI agent analysis")
+                .onTermination().invoke((result, failure, cancelled) -> {
+                    // A call cancelled by a winning hedge only bounds the latency from below,
+                    // and recording it would pull the hedge delay down
+                    if (!cancelled && failure == null) {
+                        primaryLatency.record(Duration.ofNanos(System.nanoTime() - start));
+                    }
+                });
+        });
+    }
+
+    private Uni<String> attempt(String memoryId, String message) {
+        return Uni.createFrom().deferred(() -> {
+            circuitBreaker.acquire();
+            return rateLimits.acquire().onItem().transformToUni(permit ->
+                    converse(() -> kubernetesAgent.chat(memoryId, message), permit))
+                .onTermination().invoke((result, failure, cancelled) -> {
+                    if (cancelled) {
+                        circuitBreaker.cancel();
+                    } else {
+                        circuitBreaker.record(failure);
+                    }
+                });
+        });
+    }
+
+    /**
+     * The same analysis on the secondary model, in its own memory and tool call session
+     */
+    private Uni<String> secondary(String memoryId, String message) {
+        String hedgeMemoryId = memoryId + HEDGE_MEMORY_SUFFIX;
+        return converse(() -> {
+            toolCallLimiter.resetSession(hedgeMemoryId);
+            return secondaryAgent.get().chat(hedgeMemoryId, message + HEDGE_NOTE);
+        }, null);
+    }
+
+    /**
+     * Run a blocking agent conversation on the conversation executor. Cancelling the returned
+     * Uni interrupts the conversation's thread instead of leaving it running unobserved, and
+     * the permit (if any) is released on that thread once the call has actually returned.
+     */
+    private Uni<String> converse(Supplier<String> conversation, RateLimitCoordinator.Permit permit) {
+        return Uni.createFrom().emitter(emitter -> {
+            AtomicBoolean started = new AtomicBoolean();
+            AtomicBoolean cancelled = new AtomicBoolean();
+            AtomicBoolean returned = new AtomicBoolean();
+            Future<?> running = conversationExecutor.submit(() -> {
+                if (!started.compareAndSet(false, true)) {
+                    return;
+                }
+                String result = null;
+                Throwable failure = null;
+                try {
+                    result = conversation.get();
+                } catch (Throwable t) {
+                    failure = t;
+                }
+                returned.set(true);
+                if (permit != null) {
+                    // A call that failed because it was interrupted says nothing about the provider
+                    if (failure != null && cancelled.get()) {
+                        rateLimits.cancel(permit);
+                    } else {
+                        rateLimits.release(permit, failure);
+                    }
+                }
+                if (failure == null) {
+                    emitter.complete(result);
+                } else {
+                    emitter.fail(failure);
+                }
+            });
+            emitter.onTermination(() -> {
+                if (started.compareAndSet(false, true)) {
+                    // Cancelled before the conversation started: it never will
+                    running.cancel(false);
+                    if (permit != null) {
+                        rateLimits.cancel(permit);
+                    }
+                } else if (!returned.get()) {
+                    cancelled.set(true);
+                    running.cancel(true);
+                }
+            });
+        });
+    }
+
+    /**
+     * The configured percentile of recent primary latencies, once there are enough of them
+     */
+    private Duration hedgeDelay() {
+        Duration delay = primaryLatency.size() >= hedgingMinSamples
+            ? primaryLatency.percentile(hedgingPercentile)
+            : hedgingInitialDelay;
+        return delay.compareTo(hedgingMinDelay) < 0 ? hedgingMinDelay : delay;
+    }
+
+    /**
+     * One hedged analysis: the primary call, and the secondary call started by a timer.
+     * The first answer completes the emitter; a failure only does once no call is left
+     * running, and then it is the primary's failure (for retries and fallbacks upstream).
+     */
+    private final class Hedge {
+        private final UniEmitter<? super String> emitter;
+        private final String memoryId;
+        private final String message;
+
+        private CompletableFuture<String> primary;
+        private CompletableFuture<String> secondary;
+        private ScheduledFuture<?> timer;
+        private Throwable primaryFailure;
+        private boolean secondaryFailed;
+        private boolean done;
+
+        Hedge(UniEmitter<? super String> emitter, String memoryId, String message) {
+            this.emitter = emitter;
+            this.memoryId = memoryId;
+            this.message = message;
+        }
+
+        void start(Uni<String> primaryCall, Duration delay) {
+            emitter.onTermination(this::cancel);
+            CompletableFuture<String> call = primaryCall.subscribeAsCompletionStage();
+            synchronized (this) {
+                primary = call;
+                if (!done) {
+                    timer = Infrastructure.getDefaultWorkerPool()
+                        .schedule(() -> startSecondary(delay), delay.toNanos(), TimeUnit.NANOSECONDS);
+                }
+            }
+            call.whenComplete((result, failure) -> onOutcome(true, result, failure));
+        }
+
+        private void startSecondary(Duration delay) {
+            synchronized (this) {
+                if (done) {
+                    return;
+                }
+            }
+            Log.info(MessageFormat.format("Primary model has not answered within {0} seconds, hedging to the secondary model",
+                delay.toMillis() / 1000.0));
+            registry.counter("agent.llm.hedges").increment();
+            CompletableFuture<String> call = secondary(memoryId, message).subscribeAsCompletionStage();
+            synchronized (this) {
+                secondary = call;
+                // Cancelled, or the primary answered, while the secondary call was starting
+                if (done) {
+                    call.cancel(false);
+                    return;
+                }
+            }
+            call.whenComplete((result, failure) -> onOutcome(false, result, failure));
+        }
+
+        private void onOutcome(boolean fromPrimary, String result, Throwable failure) {
+            CompletableFuture<String> loser = null;
+            boolean hedged;
+            synchronized (this) {
+                if (done) {
+                    return;
+                }
+                if (failure == null) {
+                    loser = fromPrimary ? secondary : primary;
+                } else {
+                    if (fromPrimary) {
+                        primaryFailure = failure;
+                    } else {
+                        secondaryFailed = true;
+                        Log.warn(MessageFormat.format("Hedged call to the secondary model failed: {0}", failure.getMessage()));
+                    }
+                    boolean primaryRunning = primaryFailure == null;
+                    boolean secondaryRunning = secondary != null && !secondaryFailed;
+                    if (primaryRunning || secondaryRunning) {
+                        return;
+                    }
+                }
+                done = true;
+                hedged = secondary != null;
+                if (timer != null) {
+                    timer.cancel(false);
+                }
+            }
+
+            if (loser != null) {
+                // Cancels the losing subscription, which interrupts its conversation
+                loser.cancel(false);
+            }
+            if (failure == null) {
+                if (hedged) {
+                    registry.counter("agent.llm.hedge.wins", "winner", fromPrimary ? "primary" : "secondary").increment();
+                }
+                emitter.complete(result);
+            } else {
+                emitter.fail(primaryFailure);
+            }
+        }
+
+        private void cancel() {
+            CompletableFuture<String> primaryCall;
+            CompletableFuture<String> secondaryCall;
+            synchronized (this) {
+                done = true;
+                if (timer != null) {
+                    timer.cancel(false);
+                }
+                primaryCall = primary;
+                secondaryCall = secondary;
+            }
+            if (primaryCall != null) {
+                primaryCall.cancel(false);
+            }
+            if (secondaryCall != null) {
+                secondaryCall.cancel(false);
+            }
+        }
+    }
+}
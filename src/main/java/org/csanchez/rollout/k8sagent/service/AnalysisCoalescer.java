@@ -0,0 +1,160 @@
+package org.csanchez.rollout.k8sagent.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.logging.Log;
+import io.smallrye.mutiny.Uni;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.csanchez.rollout.k8sagent.model.KubernetesAgentRequest;
+import org.csanchez.rollout.k8sagent.model.KubernetesAgentResponse;
+import org.csanchez.rollout.k8sagent.utils.BoundedTtlCache;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.MessageFormat;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight deduplication of analyses. Argo Rollouts retries and parallel
+ * AnalysisRuns often send the same prompt and context within seconds; concurrent
+ * duplicates share the one analysis in flight, and duplicates arriving shortly after
+ * it completed get its result from a short-lived cache. Only successful analyses are
+ * cached; a failure is returned to the requests waiting for it and the next duplicate
+ * runs a new analysis.
+ * Requests are keyed by the SHA-256 of their canonicalized prompt and context, so a
+ * different context value, such as another rollout or revision, is always a separate analysis.
+ */
+@ApplicationScoped
+public class AnalysisCoalescer {
+
+    @Inject
+    MeterRegistry registry;
+
+    @Inject
+    @ConfigProperty(name = "agent.analysis.coalescing.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @Inject
+    @ConfigProperty(name = "agent.analysis.coalescing.result-ttl", defaultValue = "PT30S")
+    Duration resultTtl;
+
+    @Inject
+    @ConfigProperty(name = "agent.analysis.coalescing.max-results", defaultValue = "200")
+    int maxResults;
+
+    private final Map<String, Uni<KubernetesAgentResponse>> inFlight = new ConcurrentHashMap<>();
+    private BoundedTtlCache<String, KubernetesAgentResponse> results;
+
+    @PostConstruct
+    void init() {
+        results = new BoundedTtlCache<>(maxResults, resultTtl, true);
+
+        Gauge.builder("agent.analysis.in-flight", inFlight, Map::size)
+            .description("Distinct analyses in flight")
+            .register(registry);
+        Gauge.builder("agent.analysis.results.cached", results, BoundedTtlCache::size)
+            .description("Analysis results held for late duplicates")
+            .register(registry);
+        FunctionCounter.builder("agent.analysis.results.evictions", results, BoundedTtlCache::sizeEvictions)
+            .description("Analysis results evicted before their TTL because the cache was full")
+            .register(registry);
+    }
+
+    /**
+     * Run the analysis, unless the same one is in flight or just completed
+     * @param key {@link #key(KubernetesAgentRequest)} of the request
+     * @param analysis Starts the analysis; only called when there is nothing to share
+     */
+    public Uni<KubernetesAgentResponse> analyze(String key, Supplier<Uni<KubernetesAgentResponse>> analysis) {
+        if (!enabled) {
+            return analysis.get();
+        }
+        return Uni.createFrom().deferred(() -> {
+            KubernetesAgentResponse cached = results.get(key);
+            if (cached != null) {
+                count("cached");
+                return Uni.createFrom().item(cached);
+            }
+            boolean[] started = new boolean[1];
+            Uni<KubernetesAgentResponse> shared = inFlight.computeIfAbsent(key, k -> {
+                started[0] = true;
+                // Cached before it leaves the in-flight map, so a duplicate always finds one or the other
+                return analysis.get()
+                    .onItem().invoke(response -> results.put(k, response))
+                    .onTermination().invoke(() -> inFlight.remove(k))
+                    .memoize().indefinitely();
+            });
+            if (started[0]) {
+                count("analyzed");
+            } else {
+                Log.info(MessageFormat.format("Joining the identical analysis already in flight ({0})", key.substring(0, 12)));
+                count("joined");
+            }
+            return shared;
+        });
+    }
+
+    private void count(String source) {
+        registry.counter("agent.analysis.requests", "source", source).increment();
+    }
+
+    /**
+     * Hex SHA-256 of the request prompt and context. Context keys are sorted and null
+     * values skipped (they are not part of the prompt either); the user and memory IDs
+     * are not part of the key.
+     */
+    public static String key(KubernetesAgentRequest request) {
+        StringBuilder canonical = new StringBuilder();
+        canonicalize(canonical, request.prompt() != null ? request.prompt().strip() : null);
+        canonicalize(canonical, request.context());
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(sha256.digest(canonical.toString().getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Type-tagged and length-prefixed, so different structures never produce the same text
+     */
+    private static void canonicalize(StringBuilder out, Object value) {
+        if (value == null) {
+            out.append('n');
+        } else if (value instanceof Map<?, ?> map) {
+            Map<String, Object> sorted = new TreeMap<>();
+            map.forEach((k, v) -> {
+                if (v != null) {
+                    sorted.put(String.valueOf(k), v);
+                }
+            });
+            out.append('{');
+            sorted.forEach((k, v) -> {
+                canonicalize(out, k);
+                canonicalize(out, v);
+            });
+            out.append('}');
+        } else if (value instanceof Collection<?> collection) {
+            out.append('[');
+            collection.forEach(element -> canonicalize(out, element));
+            out.append(']');
+        } else if (value instanceof Number || value instanceof Boolean) {
+            String s = value.toString();
+            out.append(value instanceof Number ? 'd' : 'b').append(s.length()).append(':').append(s);
+        } else {
+            String s = value.toString();
+            out.append('s').append(s.length()).append(':').append(s);
+        }
+    }
+}
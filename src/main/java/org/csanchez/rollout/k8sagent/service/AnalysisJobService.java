@@ -0,0 +1,190 @@
+package org.csanchez.rollout.k8sagent.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.logging.Log;
+import io.smallrye.mutiny.Uni;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.csanchez.rollout.k8sagent.model.AnalysisJob;
+import org.csanchez.rollout.k8sagent.model.AnalysisJob.Status;
+import org.csanchez.rollout.k8sagent.model.KubernetesAgentRequest;
+import org.csanchez.rollout.k8sagent.model.KubernetesAgentResponse;
+import org.csanchez.rollout.k8sagent.utils.BoundedTtlCache;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.text.MessageFormat;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Analyses submitted to run in the background, so a long analysis does not depend on
+ * the HTTP connection (or ingress timeout) of the request that asked for it.
+ * Jobs run on a bounded executor of virtual threads: max-running analyses at once and
+ * up to max-queued waiting, beyond which submissions are rejected. Jobs are kept in a
+ * bounded store for the retention period after they were submitted or completed, and
+ * can be polled or long-polled until done.
+ */
+@ApplicationScoped
+public class AnalysisJobService {
+
+    @Inject
+    AnalysisService analysisService;
+
+    @Inject
+    MeterRegistry registry;
+
+    @Inject
+    @ConfigProperty(name = "agent.jobs.max-running", defaultValue = "8")
+    int maxRunning;
+
+    @Inject
+    @ConfigProperty(name = "agent.jobs.max-queued", defaultValue = "100")
+    int maxQueued;
+
+    @Inject
+    @ConfigProperty(name = "agent.jobs.retention", defaultValue = "PT1H")
+    Duration retention;
+
+    @Inject
+    @ConfigProperty(name = "agent.jobs.max-retained", defaultValue = "1000")
+    int maxRetained;
+
+    @Inject
+    @ConfigProperty(name = "agent.jobs.max-wait", defaultValue = "PT60S")
+    Duration maxWait;
+
+    private ThreadPoolExecutor executor;
+    private BoundedTtlCache<String, Job> jobs;
+
+    @PostConstruct
+    void init() {
+        executor = new ThreadPoolExecutor(maxRunning, maxRunning, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(maxQueued), Thread.ofVirtual().name("analysis-job-", 0).factory());
+        jobs = new BoundedTtlCache<>(maxRetained, retention, true);
+
+        Gauge.builder("agent.jobs.running", executor, ThreadPoolExecutor::getActiveCount)
+            .description("Analysis jobs running")
+            .register(registry);
+        Gauge.builder("agent.jobs.queued", executor, e -> e.getQueue().size())
+            .description("Analysis jobs waiting for a free slot")
+            .register(registry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Queue an analysis
+     * @return The queued job
+     * @throws RejectedExecutionException if max-queued jobs are already waiting
+     */
+    public AnalysisJob submit(KubernetesAgentRequest request) {
+        Job job = new Job(UUID.randomUUID().toString(), request);
+        jobs.evictExpired();
+        jobs.put(job.id, job);
+        try {
+            executor.execute(() -> run(job));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            registry.counter("agent.jobs.rejected").increment();
+            throw e;
+        }
+        Log.info(MessageFormat.format("Queued analysis job {0} for user: {1}", job.id, request.userId()));
+        return job.snapshot();
+    }
+
+    private void run(Job job) {
+        job.start();
+        try {
+            // A virtual thread, so waiting on the analysis holds no platform thread
+            job.succeed(analysisService.analyze(job.request).await().indefinitely());
+        } catch (Exception e) {
+            Log.error(MessageFormat.format("Analysis job {0} failed", job.id), e);
+            job.fail(e);
+        }
+        // Keep the result for the retention period from now
+        jobs.put(job.id, job);
+        registry.counter("agent.jobs.completed", "status", job.snapshot().status().name().toLowerCase()).increment();
+    }
+
+    /**
+     * @return The job, or null if it is unknown or no longer retained
+     */
+    public AnalysisJob get(String id) {
+        Job job = jobs.get(id);
+        return job != null ? job.snapshot() : null;
+    }
+
+    /**
+     * Long-poll a job: wait until it is done, for at most the given time (capped at max-wait)
+     * @return The job as it is when done or when the wait is over, or a null item if it is unknown
+     */
+    public Uni<AnalysisJob> await(String id, Duration wait) {
+        Job job = jobs.get(id);
+        if (job == null) {
+            return Uni.createFrom().nullItem();
+        }
+        Duration bounded = wait.compareTo(maxWait) > 0 ? maxWait : wait;
+        if (!bounded.isPositive() || job.done.isDone()) {
+            return Uni.createFrom().item(job.snapshot());
+        }
+        // A copy, so a waiter timing out or going away does not cancel the job's own future
+        return Uni.createFrom().completionStage(job.done.copy())
+            .ifNoItem().after(bounded).recoverWithNull()
+            .map(ignored -> job.snapshot());
+    }
+
+    private static final class Job {
+        final String id;
+        final KubernetesAgentRequest request;
+        final Instant submittedAt = Instant.now();
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        private Status status = Status.QUEUED;
+        private Instant completedAt;
+        private KubernetesAgentResponse result;
+        private String error;
+
+        Job(String id, KubernetesAgentRequest request) {
+            this.id = id;
+            this.request = request;
+        }
+
+        synchronized void start() {
+            status = Status.RUNNING;
+        }
+
+        void succeed(KubernetesAgentResponse response) {
+            synchronized (this) {
+                status = Status.SUCCEEDED;
+                result = response;
+                completedAt = Instant.now();
+            }
+            done.complete(null);
+        }
+
+        void fail(Throwable e) {
+            synchronized (this) {
+                status = Status.FAILED;
+                error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+                completedAt = Instant.now();
+            }
+            done.complete(null);
+        }
+
+        synchronized AnalysisJob snapshot() {
+            return new AnalysisJob(id, status, submittedAt, completedAt, result, error);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package org.csanchez.rollout.k8sagent.service;
+
+import java.time.Duration;
+
+/**
+ * Thrown by the {@link AdmissionController} when an analysis is not admitted: the queue
+ * was full, it was evicted by a higher priority analysis, or it waited past the queue timeout
+ */
+public class AnalysisRejectedException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public AnalysisRejectedException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * @return How long the caller should wait before retrying
+     */
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
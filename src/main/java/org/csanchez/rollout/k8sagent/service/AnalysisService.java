@@ -0,0 +1,101 @@
+package org.csanchez.rollout.k8sagent.service;
+
+import io.quarkus.logging.Log;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+import java.text.MessageFormat;
+import java.util.Map;
+
+import org.csanchez.rollout.k8sagent.model.KubernetesAgentRequest;
+import org.csanchez.rollout.k8sagent.model.KubernetesAgentResponse;
+import org.csanchez.rollout.k8sagent.utils.ToolCallLimiter;
+
+/**
+ * Runs one analysis request end to end: builds the prompt, shares the analysis with
+ * identical requests through the {@link AnalysisCoalescer}, waits for admission by the
+ * {@link AdmissionController}, calls the agent and parses its response.
+ * Used by the synchronous endpoint, the analysis jobs and batches.
+ */
+@ApplicationScoped
+public class AnalysisService {
+
+    @Inject
+    AgentInvocationService agentInvocationService;
+
+    @Inject
+    AgentResponseParser responseParser;
+
+    @Inject
+    AnalysisCoalescer analysisCoalescer;
+
+    @Inject
+    AdmissionController admissionController;
+
+    @Inject
+    ToolCallLimiter toolCallLimiter;
+
+    /**
+     * @return The parsed analysis; fails with {@link AnalysisRejectedException} if it was not
+     *         admitted, with {@link LlmUnavailableException} while the LLM circuit breaker is
+     *         open, or with the error of the agent call
+     */
+    public Uni<KubernetesAgentResponse> analyze(KubernetesAgentRequest request) {
+        return Uni.createFrom().deferred(() -> {
+            // Build prompt with context
+            String prompt = buildPrompt(request);
+            Log.debug(MessageFormat.format("Built prompt: {0}", prompt));
+
+            // Get effective memory ID (uses memoryId if provided, otherwise falls back to userId)
+            String memoryId = request.getEffectiveMemoryId();
+            Log.debug(MessageFormat.format("Using memory ID: {0}", memoryId));
+
+            // Identical requests in flight or just analyzed share one analysis, which alone
+            // waits for admission
+            return analysisCoalescer.analyze(AnalysisCoalescer.key(request), () ->
+                admissionController.admit(admissionController.priorityOf(request.context()), () -> {
+                    // Reset tool call limiter for this new analysis session
+                    toolCallLimiter.resetSession(memoryId);
+                    Log.info(MessageFormat.format("Reset tool call limiter for session: {0}", memoryId));
+
+                    // Execute analysis with retry logic for transient errors, then parse the response
+                    return agentInvocationService.chat(memoryId, prompt).map(responseParser::parse);
+                }));
+        });
+    }
+
+    /**
+     * Build prompt from request
+     */
+    private String buildPrompt(KubernetesAgentRequest request) {
+        Map<String, Object> context = request.context();
+        
+        StringBuilder prompt = new StringBuilder();
+        prompt.append(request.prompt()).append("\n\n");
+        
+        if (context != null) {
+            prompt.append("Context:\n");
+            context.forEach((key, value) -> {
+                if (value != null) {
+                    prompt.append("- ").append(key).append(": ").append(value).append("\n");
+                }
+            });
+        }
+
+        prompt.append("\nCRITICAL INSTRUCTIONS:\n");
+        prompt.append("1. Gather each piece of data ONCE (max 5-7 tool calls total)\n");
+        prompt.append("2. Do NOT call the same tool multiple times with the same parameters\n");
+        prompt.append("3. After gathering data, STOP and analyze what you have\n");
+        prompt.append("4. Make a decision based on the data collected\n");
+        prompt.append("\nProvide a structured response with:\n");
+        prompt.append("- analysis: Detailed analysis text\n");
+        prompt.append("- rootCause: Identified root cause\n");
+        prompt.append("- remediation: Suggested remediation steps\n");
+        prompt.append("- prLink: GitHub PR link if applicable (can be null)\n");
+        prompt.append("- promote: true to promote canary, false to abort\n");
+        prompt.append("- confidence: Confidence level 0-100\n");
+        
+        return prompt.toString();
+    }
+}
@@ -0,0 +1,114 @@
+package org.csanchez.rollout.k8sagent.service;
+
+import io.quarkus.logging.Log;
+import io.quarkus.virtual.threads.VirtualThreads;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+
+import org.csanchez.rollout.k8sagent.k8s.NamespaceSnapshot;
+import org.csanchez.rollout.k8sagent.k8s.NamespaceSnapshots;
+import org.csanchez.rollout.k8sagent.model.KubernetesAgentRequest;
+import org.csanchez.rollout.k8sagent.model.KubernetesAgentResponse;
+
+/**
+ * Runs a batch of analyses, e.g. every canary of a platform-wide deploy, up to
+ * agent.batch.parallelism at a time. Each namespace named in the requests' context is
+ * listed once up front and its {@link NamespaceSnapshot} is shared by all the analyses of
+ * the batch, so they do not each LIST the same pods, deployments and events. Each analysis
+ * runs under a memory ID of its own, derived from the request's.
+ */
+@ApplicationScoped
+public class BatchAnalysisService {
+
+    @Inject
+    AnalysisService analysisService;
+
+    @Inject
+    NamespaceSnapshots snapshots;
+
+    @Inject
+    @VirtualThreads
+    ExecutorService virtualThreads;
+
+    @Inject
+    @ConfigProperty(name = "agent.batch.parallelism", defaultValue = "4")
+    int parallelism;
+
+    @Inject
+    @ConfigProperty(name = "agent.batch.max-requests", defaultValue = "50")
+    int maxRequests;
+
+    private final AtomicLong batchItems = new AtomicLong();
+
+    public int getMaxRequests() {
+        return maxRequests;
+    }
+
+    /**
+     * @param onFailure Builds the response of a request whose analysis failed
+     * @return One response per request, in request order
+     */
+    public Uni<List<KubernetesAgentResponse>> analyze(List<KubernetesAgentRequest> requests,
+            BiFunction<KubernetesAgentRequest, Throwable, KubernetesAgentResponse> onFailure) {
+        // Requests of a user share its memory ID; each analysis gets its own chat memory,
+        // tool call budget and snapshots, also across overlapping batches
+        List<KubernetesAgentRequest> items = requests.stream().map(this::item).toList();
+
+        return takeSnapshots(requests)
+            .onItem().transformToUni(taken -> {
+                Log.info(MessageFormat.format("Analyzing batch of {0} requests with {1} namespace snapshots",
+                    requests.size(), taken.size()));
+                if (!taken.isEmpty()) {
+                    items.forEach(item -> snapshots.attach(item.memoryId(), taken));
+                }
+
+                List<Uni<KubernetesAgentResponse>> analyses = new ArrayList<>();
+                for (int i = 0; i < requests.size(); i++) {
+                    KubernetesAgentRequest request = requests.get(i);
+                    analyses.add(analysisService.analyze(items.get(i))
+                        .onFailure().recoverWithItem(e -> onFailure.apply(request, e)));
+                }
+                return Uni.join().all(analyses).usingConcurrencyOf(parallelism).andFailFast();
+            })
+            .onTermination().invoke(() -> items.forEach(item -> snapshots.detach(item.memoryId())));
+    }
+
+    /**
+     * The request with a memory ID of its own, e.g. "rollout-1/batch-7"
+     */
+    private KubernetesAgentRequest item(KubernetesAgentRequest request) {
+        String memoryId = request.getEffectiveMemoryId();
+        String itemMemoryId = (memoryId != null ? memoryId + "/" : "") + "batch-" + batchItems.incrementAndGet();
+        return new KubernetesAgentRequest(request.userId(), request.prompt(), request.context(), itemMemoryId);
+    }
+
+    /**
+     * List each namespace of the batch once, on virtual threads since the client blocks
+     */
+    private Uni<List<NamespaceSnapshot>> takeSnapshots(List<KubernetesAgentRequest> requests) {
+        Set<String> namespaces = new LinkedHashSet<>();
+        for (KubernetesAgentRequest request : requests) {
+            Object namespace = request.context() != null ? request.context().get("namespace") : null;
+            if (namespace != null && !namespace.toString().isBlank()) {
+                namespaces.add(namespace.toString().trim());
+            }
+        }
+        return Multi.createFrom().iterable(namespaces)
+            .onItem().transformToUni(namespace -> Uni.createFrom().item(() -> snapshots.take(namespace))
+                .runSubscriptionOn(virtualThreads))
+            .merge(parallelism)
+            .collect().asList();
+    }
+}
@@ -0,0 +1,186 @@
+package org.csanchez.rollout.k8sagent.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.logging.Log;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.csanchez.rollout.k8sagent.utils.RetryHelper;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.text.MessageFormat;
+import java.time.Duration;
+
+/**
+ * Circuit breaker around the LLM provider.
+ * The outcomes of the last {@code window-size} calls are kept; once at least
+ * {@code minimum-calls} have been seen and the failure rate reaches {@code failure-rate},
+ * the circuit opens and calls fail fast with {@link LlmUnavailableException} for
+ * {@code open-duration}. It then goes half-open and lets {@code half-open-probes} calls
+ * through: if they all succeed it closes, if any fails it opens again.
+ * 429s are not counted at all, the {@link RateLimitCoordinator} handles them.
+ */
+@ApplicationScoped
+public class LlmCircuitBreaker {
+
+    /**
+     * Circuit state; the ordinal is exported as the state gauge
+     */
+    public enum State {
+        CLOSED,
+        HALF_OPEN,
+        OPEN
+    }
+
+    @Inject
+    MeterRegistry registry;
+
+    @Inject
+    @ConfigProperty(name = "agent.llm.circuit-breaker.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @Inject
+    @ConfigProperty(name = "agent.llm.circuit-breaker.window-size", defaultValue = "20")
+    int windowSize;
+
+    @Inject
+    @ConfigProperty(name = "agent.llm.circuit-breaker.minimum-calls", defaultValue = "5")
+    int minimumCalls;
+
+    @Inject
+    @ConfigProperty(name = "agent.llm.circuit-breaker.failure-rate", defaultValue = "0.5")
+    double failureRate;
+
+    @Inject
+    @ConfigProperty(name = "agent.llm.circuit-breaker.open-duration", defaultValue = "PT30S")
+    Duration openDuration;
+
+    @Inject
+    @ConfigProperty(name = "agent.llm.circuit-breaker.half-open-probes", defaultValue = "2")
+    int halfOpenProbes;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+
+    // Sliding window of the last windowSize outcomes (true = failure)
+    private boolean[] window;
+    private int next;
+    private int calls;
+    private int failures;
+
+    // Half-open probes started and succeeded
+    private int probes;
+    private int probeSuccesses;
+
+    private Counter rejections;
+
+    @PostConstruct
+    void init() {
+        window = new boolean[windowSize];
+
+        Gauge.builder("agent.llm.circuit.state", this, breaker -> breaker.getState().ordinal())
+            .description("LLM circuit breaker state: 0 closed, 1 half-open, 2 open")
+            .register(registry);
+        rejections = Counter.builder("agent.llm.circuit.rejections")
+            .description("LLM calls failed fast because the circuit was open")
+            .register(registry);
+    }
+
+    /**
+     * Ask to make a call
+     * @throws LlmUnavailableException if the circuit is open (or half-open with all probes taken)
+     */
+    public synchronized void acquire() {
+        if (!enabled) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (state == State.OPEN) {
+            long remaining = openedAt + openDuration.toNanos() - now;
+            if (remaining > 0) {
+                rejections.increment();
+                throw new LlmUnavailableException(Duration.ofNanos(remaining));
+            }
+            transition(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            if (probes >= halfOpenProbes) {
+                rejections.increment();
+                throw new LlmUnavailableException(Duration.ZERO);
+            }
+            probes++;
+        }
+    }
+
+    /**
+     * Record the outcome of a call allowed by {@link #acquire()}
+     * @param failure The call's failure, or null if it succeeded
+     */
+    public synchronized void record(Throwable failure) {
+        if (!enabled) {
+            return;
+        }
+        if (failure != null && RetryHelper.is429Error(failure)) {
+            // Says nothing about the provider's health
+            cancel();
+            return;
+        }
+        boolean failed = failure != null;
+        if (state == State.HALF_OPEN) {
+            if (failed) {
+                transition(State.OPEN);
+            } else if (++probeSuccesses >= halfOpenProbes) {
+                transition(State.CLOSED);
+            }
+            return;
+        }
+        if (state == State.OPEN) {
+            // A call started before the circuit opened
+            return;
+        }
+
+        if (calls == windowSize) {
+            failures -= window[next] ? 1 : 0;
+        } else {
+            calls++;
+        }
+        window[next] = failed;
+        failures += failed ? 1 : 0;
+        next = (next + 1) % windowSize;
+
+        if (calls >= minimumCalls && failures >= failureRate * calls) {
+            Log.warn(MessageFormat.format("LLM failure rate {0}/{1}, opening the circuit for {2} seconds",
+                failures, calls, openDuration.getSeconds()));
+            transition(State.OPEN);
+        }
+    }
+
+    /**
+     * Give back a call allowed by {@link #acquire()} that ended without an outcome (cancelled or rate limited)
+     */
+    public synchronized void cancel() {
+        if (state == State.HALF_OPEN && probes > probeSuccesses) {
+            probes--;
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    private void transition(State to) {
+        Log.info(MessageFormat.format("LLM circuit breaker {0} -> {1}", state, to));
+        state = to;
+        probes = 0;
+        probeSuccesses = 0;
+        if (to == State.OPEN) {
+            openedAt = System.nanoTime();
+        } else if (to == State.CLOSED) {
+            calls = 0;
+            failures = 0;
+            next = 0;
+        }
+    }
+}
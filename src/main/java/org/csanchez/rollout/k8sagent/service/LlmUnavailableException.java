@@ -0,0 +1,23 @@
+package org.csanchez.rollout.k8sagent.service;
+
+import java.time.Duration;
+
+/**
+ * Thrown instead of calling the LLM provider while the {@link LlmCircuitBreaker} is open
+ */
+public class LlmUnavailableException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public LlmUnavailableException(Duration retryAfter) {
+        super("LLM provider circuit is open after repeated failures, not calling it");
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * @return How long until the circuit breaker lets a probe call through
+     */
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,240 @@
+package org.csanchez.rollout.k8sagent.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.logging.Log;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import io.smallrye.mutiny.subscription.UniEmitter;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.csanchez.rollout.k8sagent.utils.RetryHelper;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.text.MessageFormat;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Process-wide coordination of LLM calls under a shared provider quota.
+ * <ul>
+ * <li>Gate: when any call is rejected with a "Please retry in Xs" hint, no new call
+ * starts until that window has passed, instead of every caller collecting its own 429.</li>
+ * <li>Adaptive concurrency (AIMD): the number of calls in flight grows by one per
+ * window of successful calls and is halved on a 429, at most once per window.</li>
+ * </ul>
+ * Waiting callers are queued without holding a thread and resumed by
+ * {@link #release} or by a timer when the gate reopens.
+ */
+@ApplicationScoped
+public class RateLimitCoordinator {
+
+    @Inject
+    MeterRegistry registry;
+
+    @Inject
+    @ConfigProperty(name = "agent.llm.concurrency.adaptive", defaultValue = "true")
+    boolean adaptive;
+
+    @Inject
+    @ConfigProperty(name = "agent.llm.concurrency.initial", defaultValue = "4")
+    int initialLimit;
+
+    @Inject
+    @ConfigProperty(name = "agent.llm.concurrency.min", defaultValue = "1")
+    int minLimit;
+
+    @Inject
+    @ConfigProperty(name = "agent.llm.concurrency.max", defaultValue = "16")
+    int maxLimit;
+
+    private double limit;
+    private int inFlight;
+    private long blockedUntil;
+    private long lastDecrease;
+    private final Deque<Waiter> waiters = new ArrayDeque<>();
+    private Counter rateLimited;
+
+    /**
+     * The right to run one LLM call; must be released exactly once
+     */
+    public static final class Permit {
+        private final long startedAt;
+        private boolean delivered;
+        private boolean released;
+
+        private Permit(long startedAt) {
+            this.startedAt = startedAt;
+        }
+    }
+
+    /**
+     * A caller waiting for a permit; permit is set (under the lock) once one is granted to it
+     */
+    private static final class Waiter {
+        final UniEmitter<? super Permit> emitter;
+        Permit permit;
+
+        Waiter(UniEmitter<? super Permit> emitter) {
+            this.emitter = emitter;
+        }
+    }
+
+    @PostConstruct
+    void init() {
+        limit = adaptive ? Math.max(minLimit, Math.min(initialLimit, maxLimit)) : maxLimit;
+        lastDecrease = System.nanoTime();
+
+        Gauge.builder("agent.llm.concurrency.limit", this, RateLimitCoordinator::getLimit)
+            .description("LLM calls allowed in flight")
+            .register(registry);
+        Gauge.builder("agent.llm.in-flight", this, RateLimitCoordinator::getInFlight)
+            .description("LLM calls in flight")
+            .register(registry);
+        Gauge.builder("agent.llm.waiting", this, RateLimitCoordinator::getWaiting)
+            .description("LLM calls waiting for the rate-limit gate or a concurrency slot")
+            .register(registry);
+        rateLimited = Counter.builder("agent.llm.rate-limited")
+            .description("LLM calls rejected by the provider with a 429")
+            .register(registry);
+    }
+
+    /**
+     * Wait, without blocking, until the gate is open and a concurrency slot is free
+     */
+    public Uni<Permit> acquire() {
+        return Uni.createFrom().<Permit>emitter(emitter -> {
+                Waiter waiter = new Waiter(emitter);
+                synchronized (this) {
+                    waiters.addLast(waiter);
+                }
+                emitter.onTermination(() -> abandon(waiter));
+                grant();
+            })
+            // Runs before the emitter's termination callback, unless the caller cancelled first
+            .onItem().invoke(this::delivered);
+    }
+
+    private synchronized void delivered(Permit permit) {
+        permit.delivered = true;
+    }
+
+    /**
+     * Termination of a waiter's emitter: a caller that gives up (cancellation) leaves the queue,
+     * and a permit granted to it but cancelled before it was delivered is given back
+     */
+    private void abandon(Waiter waiter) {
+        Permit undelivered;
+        synchronized (this) {
+            if (waiter.permit == null) {
+                waiters.remove(waiter);
+                return;
+            }
+            if (waiter.permit.delivered) {
+                return;
+            }
+            undelivered = waiter.permit;
+        }
+        cancel(undelivered);
+    }
+
+    /**
+     * Release a permit and learn from the outcome of its call
+     * @param failure The call's failure, or null if it succeeded
+     */
+    public void release(Permit permit, Throwable failure) {
+        synchronized (this) {
+            if (permit.released) {
+                return;
+            }
+            permit.released = true;
+            inFlight--;
+            if (failure == null) {
+                if (adaptive) {
+                    // Additive increase: +1 per limit's worth of successful calls
+                    limit = Math.min(maxLimit, limit + 1 / limit);
+                }
+            } else if (RetryHelper.is429Error(failure)) {
+                onRateLimited(permit, RetryHelper.extractRetryDelay(failure));
+            }
+        }
+        grant();
+    }
+
+    /**
+     * Release the permit of a call that was cancelled, without learning from it:
+     * an interrupted call is neither a success nor a provider failure
+     */
+    public void cancel(Permit permit) {
+        synchronized (this) {
+            if (permit.released) {
+                return;
+            }
+            permit.released = true;
+            inFlight--;
+        }
+        grant();
+    }
+
+    private void onRateLimited(Permit permit, Duration retryAfter) {
+        rateLimited.increment();
+        long now = System.nanoTime();
+        // Multiplicative decrease, once per window: calls started before the last
+        // decrease were sent at the old limit and their 429s say nothing new
+        if (adaptive && permit.startedAt - lastDecrease > 0) {
+            limit = Math.max(minLimit, limit / 2);
+            lastDecrease = now;
+            Log.info(MessageFormat.format("LLM rate limited, concurrency limit lowered to {0}", (int) limit));
+        }
+        if (retryAfter != null) {
+            long until = now + retryAfter.toNanos();
+            if (until - blockedUntil > 0) {
+                blockedUntil = until;
+                Log.warn(MessageFormat.format("LLM rate limited, holding new calls for {0} seconds", retryAfter.getSeconds()));
+                Infrastructure.getDefaultWorkerPool().schedule(this::grant, retryAfter.toNanos(), TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    /**
+     * Hand out permits to queued callers while the gate is open and slots are free
+     */
+    private void grant() {
+        List<Waiter> granted = new ArrayList<>();
+        synchronized (this) {
+            long now = System.nanoTime();
+            if (blockedUntil - now > 0) {
+                return;
+            }
+            while (inFlight < (int) limit && !waiters.isEmpty()) {
+                Waiter waiter = waiters.pollFirst();
+                waiter.permit = new Permit(now);
+                inFlight++;
+                granted.add(waiter);
+            }
+        }
+        // Complete outside the lock, subscribers may call back into release(); a waiter
+        // cancelled in the meantime drops the item and abandon() gives its permit back
+        for (Waiter waiter : granted) {
+            waiter.emitter.complete(waiter.permit);
+        }
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public synchronized int getWaiting() {
+        return waiters.size();
+    }
+}
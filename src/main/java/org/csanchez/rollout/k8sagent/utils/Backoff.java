@@ -0,0 +1,40 @@
+package org.csanchez.rollout.k8sagent.utils;
+
+import java.time.Duration;
+import java.util.random.RandomGenerator;
+
+/**
+ * Randomized backoff delays, so clients failing together do not retry together.
+ * See "Exponential Backoff And Jitter" (AWS Architecture Blog) for the variants.
+ */
+public final class Backoff {
+
+    private Backoff() {
+    }
+
+    /**
+     * Full jitter: uniform in [0, min(cap, base * 2^(attempt - 1))]
+     * @param attempt 1 for the first retry
+     */
+    public static Duration fullJitter(Duration base, Duration cap, int attempt, RandomGenerator random) {
+        long ceiling = Math.min(cap.toMillis(), base.toMillis() << Math.min(attempt - 1, 30));
+        return Duration.ofMillis(random.nextLong(ceiling + 1));
+    }
+
+    /**
+     * Decorrelated jitter: uniform in [base, min(cap, previous * 3)], each delay growing from the last one
+     * @param previous The previous delay, or base before the first retry
+     */
+    public static Duration decorrelatedJitter(Duration base, Duration cap, Duration previous, RandomGenerator random) {
+        long ceiling = Math.min(cap.toMillis(), Math.max(base.toMillis(), previous.toMillis()) * 3);
+        return Duration.ofMillis(random.nextLong(base.toMillis(), ceiling + 1));
+    }
+
+    /**
+     * Spread a delay requested by the server over [delay, delay * 1.5], so clients told
+     * to wait the same time do not all come back at the same instant
+     */
+    public static Duration spread(Duration delay, RandomGenerator random) {
+        return delay.plusMillis(random.nextLong(delay.toMillis() / 2 + 1));
+    }
+}
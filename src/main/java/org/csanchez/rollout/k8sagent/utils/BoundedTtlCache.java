@@ -0,0 +1,170 @@
+package org.csanchez.rollout.k8sagent.utils;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Map with a maximum size and a time-to-live since last access (or since write).
+ * Entries are kept in access order (write order when expiring after write), so the
+ * least recently used (oldest) entry is evicted when the cache is full and expired
+ * entries can be swept from the eldest end without scanning the whole map.
+ * Eviction counts are kept for monitoring.
+ * All operations are synchronized; this is meant for low-rate bookkeeping (sessions,
+ * tool results), not for hot paths.
+ */
+public class BoundedTtlCache<K, V> {
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LongSupplier nanoClock;
+    private final boolean expireAfterWrite;
+    private final LinkedHashMap<K, Entry<V>> entries;
+    private final AtomicLong sizeEvictions = new AtomicLong();
+    private final AtomicLong expiredEvictions = new AtomicLong();
+
+    /**
+     * @param maxSize Maximum number of entries; the least recently used one is evicted beyond it
+     * @param ttl Entries not accessed for this long expire
+     */
+    public BoundedTtlCache(int maxSize, Duration ttl) {
+        this(maxSize, ttl, false, System::nanoTime);
+    }
+
+    /**
+     * @param expireAfterWrite true to expire entries a TTL after they were put, whether or not they were read
+     */
+    public BoundedTtlCache(int maxSize, Duration ttl, boolean expireAfterWrite) {
+        this(maxSize, ttl, expireAfterWrite, System::nanoTime);
+    }
+
+    /**
+     * @param nanoClock Source of {@link System#nanoTime()}-like timestamps (for tests)
+     */
+    public BoundedTtlCache(int maxSize, Duration ttl, boolean expireAfterWrite, LongSupplier nanoClock) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be at least 1");
+        }
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+        this.expireAfterWrite = expireAfterWrite;
+        this.nanoClock = nanoClock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, !expireAfterWrite);
+    }
+
+    /**
+     * @return The live value for the key, or null if absent or expired
+     */
+    public synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        long now = nanoClock.getAsLong();
+        if (entry.isExpired(now, ttlNanos)) {
+            entries.remove(key);
+            expiredEvictions.incrementAndGet();
+            return null;
+        }
+        if (!expireAfterWrite) {
+            entry.lastAccess = now;
+        }
+        return entry.value;
+    }
+
+    /**
+     * Return the live value for the key, creating it (and evicting the least recently used entry if full) if needed
+     */
+    public synchronized V computeIfAbsent(K key, Function<? super K, ? extends V> factory) {
+        V value = get(key);
+        if (value != null) {
+            return value;
+        }
+        value = factory.apply(key);
+        insert(key, value);
+        return value;
+    }
+
+    /**
+     * Put a value, replacing (and renewing) any previous one for the key
+     */
+    public synchronized void put(K key, V value) {
+        // Remove first so a replaced entry moves to the young end in write order too
+        entries.remove(key);
+        insert(key, value);
+    }
+
+    private void insert(K key, V value) {
+        entries.put(key, new Entry<>(value, nanoClock.getAsLong()));
+        if (entries.size() > maxSize) {
+            Iterator<Map.Entry<K, Entry<V>>> eldest = entries.entrySet().iterator();
+            eldest.next();
+            eldest.remove();
+            sizeEvictions.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return The removed value, or null if there was none
+     */
+    public synchronized V remove(K key) {
+        Entry<V> entry = entries.remove(key);
+        return entry != null ? entry.value : null;
+    }
+
+    /**
+     * Remove all expired entries
+     * @return The number of entries removed
+     */
+    public synchronized int evictExpired() {
+        long now = nanoClock.getAsLong();
+        int removed = 0;
+        Iterator<Entry<V>> it = entries.values().iterator();
+        // Access (or write) order: once an entry is live, every later one was accessed (or written) more recently
+        while (it.hasNext() && it.next().isExpired(now, ttlNanos)) {
+            it.remove();
+            removed++;
+        }
+        expiredEvictions.addAndGet(removed);
+        return removed;
+    }
+
+    /**
+     * @return Number of entries, including expired ones not swept yet
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return Number of entries evicted because the cache was full
+     */
+    public long sizeEvictions() {
+        return sizeEvictions.get();
+    }
+
+    /**
+     * @return Number of entries evicted because they expired
+     */
+    public long expiredEvictions() {
+        return expiredEvictions.get();
+    }
+
+    private static final class Entry<V> {
+        final V value;
+        long lastAccess;
+
+        Entry(V value, long lastAccess) {
+            this.value = value;
+            this.lastAccess = lastAccess;
+        }
+
+        boolean isExpired(long now, long ttlNanos) {
+            return now - lastAccess >= ttlNanos;
+        }
+    }
+}
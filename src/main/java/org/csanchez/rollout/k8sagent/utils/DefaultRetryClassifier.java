@@ -0,0 +1,136 @@
+package org.csanchez.rollout.k8sagent.utils;
+
+import dev.langchain4j.exception.HttpException;
+import dev.langchain4j.exception.RateLimitException;
+import jakarta.ws.rs.WebApplicationException;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Classifies failures cheaply, in order of reliability:
+ * <ol>
+ * <li>typed exceptions and HTTP status codes along the cause chain; what kind of check a
+ * class needs is computed once per exception class,</li>
+ * <li>the Gemini response handler's NullPointerException on empty responses, looking
+ * only at the top stack frames,</li>
+ * <li>one precompiled pattern over the messages, rate-limit markers taking precedence
+ * over transient ones.</li>
+ * </ol>
+ */
+public final class DefaultRetryClassifier implements RetryClassifier {
+
+    // Enough to get through the usual wrapping (AI service -> REST client -> HTTP)
+    private static final int MAX_CAUSE_DEPTH = 5;
+
+    // The handler is where the NPE is thrown, not deep in the stack
+    private static final int MAX_STACK_FRAMES = 5;
+
+    private static final Pattern MESSAGE_PATTERN = Pattern.compile(
+        "(?<rate>429|quota|rate limit|RESOURCE_EXHAUSTED)"
+            + "|(?<transient>503|Service Unavailable|temporarily unavailable|Internal Server Error)");
+
+    /**
+     * The check a failure needs, which depends only on its class
+     */
+    private enum Check {
+        RATE_LIMIT_TYPE,
+        LANGCHAIN4J_STATUS,
+        JAX_RS_STATUS,
+        NULL_POINTER,
+        MESSAGE
+    }
+
+    private static final ClassValue<Check> CHECKS = new ClassValue<>() {
+        @Override
+        protected Check computeValue(Class<?> type) {
+            if (RateLimitException.class.isAssignableFrom(type)) {
+                return Check.RATE_LIMIT_TYPE;
+            }
+            if (HttpException.class.isAssignableFrom(type)) {
+                return Check.LANGCHAIN4J_STATUS;
+            }
+            if (WebApplicationException.class.isAssignableFrom(type)) {
+                return Check.JAX_RS_STATUS;
+            }
+            if (NullPointerException.class.isAssignableFrom(type)) {
+                return Check.NULL_POINTER;
+            }
+            return Check.MESSAGE;
+        }
+    };
+
+    @Override
+    public Classification classify(Throwable failure) {
+        Classification byMessage = null;
+        Throwable current = failure;
+        for (int depth = 0; current != null && depth < MAX_CAUSE_DEPTH; depth++) {
+            Classification typed = switch (CHECKS.get(current.getClass())) {
+                case RATE_LIMIT_TYPE -> Classification.RATE_LIMITED;
+                case LANGCHAIN4J_STATUS -> byStatus(((HttpException) current).statusCode());
+                case JAX_RS_STATUS -> byStatus(jaxRsStatus((WebApplicationException) current));
+                case NULL_POINTER -> isGeminiEmptyResponse(current) ? Classification.TRANSIENT : null;
+                case MESSAGE -> null;
+            };
+            if (typed != null) {
+                return typed;
+            }
+            Classification fromMessage = byMessage(current.getMessage());
+            if (byMessage == null || fromMessage == Classification.RATE_LIMITED) {
+                byMessage = fromMessage != null ? fromMessage : byMessage;
+            }
+            current = current.getCause() == current ? null : current.getCause();
+        }
+        return byMessage != null ? byMessage : Classification.PERMANENT;
+    }
+
+    /**
+     * @return The classification of an HTTP status, or null for statuses that say nothing
+     */
+    static Classification byStatus(int status) {
+        if (status == 429) {
+            return Classification.RATE_LIMITED;
+        }
+        if (status == 500 || status == 502 || status == 503 || status == 504) {
+            return Classification.TRANSIENT;
+        }
+        return status >= 400 ? Classification.PERMANENT : null;
+    }
+
+    private static int jaxRsStatus(WebApplicationException e) {
+        return e.getResponse() != null ? e.getResponse().getStatus() : 0;
+    }
+
+    private static boolean isGeminiEmptyResponse(Throwable e) {
+        String message = e.getMessage();
+        if (message != null && message.contains("\"parts\" is null")) {
+            return true;
+        }
+        StackTraceElement[] stackTrace = e.getStackTrace();
+        for (int i = 0; i < Math.min(stackTrace.length, MAX_STACK_FRAMES); i++) {
+            if (stackTrace[i].getClassName().contains("GenerateContentResponseHandler")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * One pass over the message: a rate-limit marker anywhere wins over transient ones
+     * @return The classification, or null if no marker was found
+     */
+    private static Classification byMessage(String message) {
+        if (message == null) {
+            return null;
+        }
+        Classification result = null;
+        Matcher matcher = MESSAGE_PATTERN.matcher(message);
+        while (matcher.find()) {
+            if (matcher.start("rate") >= 0) {
+                return Classification.RATE_LIMITED;
+            }
+            result = Classification.TRANSIENT;
+        }
+        return result;
+    }
+}
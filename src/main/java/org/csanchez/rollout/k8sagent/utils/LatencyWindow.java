@@ -0,0 +1,56 @@
+package org.csanchez.rollout.k8sagent.utils;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * The last N latencies of an operation, for percentile-based timeouts and hedging delays.
+ * Synchronized; recording and reading happen once per (slow) call.
+ */
+public class LatencyWindow {
+
+    private final long[] nanos;
+    private int next;
+    private int size;
+
+    /**
+     * @param capacity Number of most recent latencies kept
+     */
+    public LatencyWindow(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be at least 1");
+        }
+        nanos = new long[capacity];
+    }
+
+    public synchronized void record(Duration latency) {
+        nanos[next] = latency.toNanos();
+        next = (next + 1) % nanos.length;
+        size = Math.min(size + 1, nanos.length);
+    }
+
+    /**
+     * @return Number of latencies kept
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Nearest-rank percentile of the kept latencies
+     * @param quantile Between 0 and 1, e.g. 0.95 for p95
+     * @return The percentile, or null if nothing was recorded yet
+     */
+    public Duration percentile(double quantile) {
+        long[] sorted;
+        synchronized (this) {
+            if (size == 0) {
+                return null;
+            }
+            sorted = Arrays.copyOf(nanos, size);
+        }
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(quantile * sorted.length);
+        return Duration.ofNanos(sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))]);
+    }
+}
@@ -0,0 +1,18 @@
+package org.csanchez.rollout.k8sagent.utils;
+
+import jakarta.interceptor.InterceptorBinding;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Applies the per-session {@link ToolCallLimiter} to the {@code @Tool} methods of a bean.
+ * Tool methods must declare a {@code @ToolMemoryId} parameter to be limited.
+ */
+@InterceptorBinding
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface LimitToolCalls {
+}
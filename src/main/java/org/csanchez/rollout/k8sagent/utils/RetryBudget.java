@@ -0,0 +1,77 @@
+package org.csanchez.rollout.k8sagent.utils;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Process-wide token bucket bounding retries to a fraction of first attempts.
+ * Every first attempt deposits {@code ratio} tokens and every retry withdraws one,
+ * so when a shared rate limit makes most calls fail, retries add at most
+ * {@code ratio} extra load instead of multiplying it. A small trickle refill keeps
+ * retries possible when there is little traffic.
+ */
+public final class RetryBudget {
+
+    private final double ratio;
+    private final double maxTokens;
+    private final double refillPerNano;
+    private final LongSupplier nanoClock;
+
+    private double tokens;
+    private long lastRefill;
+
+    /**
+     * @param ratio Retries allowed per first attempt (e.g. 0.2 for 20%)
+     * @param maxTokens Bucket size, also the initial balance: the largest burst of retries
+     * @param minRetriesPerSecond Refill independent of traffic
+     */
+    public RetryBudget(double ratio, int maxTokens, double minRetriesPerSecond) {
+        this(ratio, maxTokens, minRetriesPerSecond, System::nanoTime);
+    }
+
+    /**
+     * @param nanoClock Source of {@link System#nanoTime()}-like timestamps (for tests and simulations)
+     */
+    public RetryBudget(double ratio, int maxTokens, double minRetriesPerSecond, LongSupplier nanoClock) {
+        this.ratio = ratio;
+        this.maxTokens = maxTokens;
+        this.refillPerNano = minRetriesPerSecond / 1e9;
+        this.nanoClock = nanoClock;
+        this.tokens = maxTokens;
+        this.lastRefill = nanoClock.getAsLong();
+    }
+
+    /**
+     * Record a first attempt
+     */
+    public synchronized void onFirstAttempt() {
+        refill();
+        tokens = Math.min(maxTokens, tokens + ratio);
+    }
+
+    /**
+     * Take a token for a retry
+     * @return false if the budget is spent and the call should fail instead of being retried
+     */
+    public synchronized boolean tryAcquireRetry() {
+        refill();
+        if (tokens < 1) {
+            return false;
+        }
+        tokens -= 1;
+        return true;
+    }
+
+    /**
+     * @return Retries currently available
+     */
+    public synchronized double available() {
+        refill();
+        return tokens;
+    }
+
+    private void refill() {
+        long now = nanoClock.getAsLong();
+        tokens = Math.min(maxTokens, tokens + (now - lastRefill) * refillPerNano);
+        lastRefill = now;
+    }
+}
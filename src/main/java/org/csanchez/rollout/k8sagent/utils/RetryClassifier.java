@@ -0,0 +1,24 @@
+package org.csanchez.rollout.k8sagent.utils;
+
+/**
+ * Decides whether a failed LLM call is worth retrying.
+ * {@link RetryHelper} uses {@link DefaultRetryClassifier} unless another one is set
+ * with {@link RetryHelper#setClassifier(RetryClassifier)}.
+ */
+@FunctionalInterface
+public interface RetryClassifier {
+
+    /**
+     * What a failure means for retrying
+     */
+    enum Classification {
+        /** Quota or rate limit exceeded (HTTP 429): retry after the suggested delay */
+        RATE_LIMITED,
+        /** Provider-side hiccup (5xx, malformed Gemini response): retry with backoff */
+        TRANSIENT,
+        /** Anything else: retrying will not help */
+        PERMANENT
+    }
+
+    Classification classify(Throwable failure);
+}
@@ -1,33 +1,76 @@
 package org.csanchez.rollout.k8sagent.utils;
 
 import io.quarkus.logging.Log;
+import io.smallrye.mutiny.Uni;
 
 import java.text.MessageFormat;
 import java.time.Duration;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
  * Utility for retrying operations with exponential backoff, 
  * specifically handling Gemini API 429 rate limit errors.
+ * Which failures are retried is decided by a {@link RetryClassifier}.
+ * Backoffs are jittered (decorrelated jitter, or the delay suggested by the API spread
+ * over up to 50% more) so analyses hit by the same rate limit do not retry in lockstep,
+ * and all retries in the process draw from one {@link RetryBudget}: once retries reach
+ * 20% of first attempts, failing calls fail fast instead of adding load.
+ * The async variants return a {@link Uni} and schedule each retry on a timer instead
+ * of sleeping, so no thread is held while waiting out a backoff.
  */
 public class RetryHelper {
 	
 	private static final int MAX_RETRIES = 3;
 	private static final Duration INITIAL_BACKOFF = Duration.ofSeconds(1);
 	private static final Duration MAX_BACKOFF = Duration.ofSeconds(60);
-	private static final double BACKOFF_MULTIPLIER = 2.0;
+	
+	// Retries allowed per first attempt, burst size, and refill when traffic is low
+	private static final RetryBudget RETRY_BUDGET = new RetryBudget(0.2, 10, 0.1);
 	
 	// Pattern to extract retry time from error message: "Please retry in 59.955530121s"
 	private static final Pattern RETRY_PATTERN = Pattern.compile("Please retry in ([0-9.]+)s");
 	
+	// Example: "Quota exceeded for metric: generativelanguage.googleapis.com/generate_content_free_tier_requests, limit: 10"
+	private static final Pattern QUOTA_PATTERN = Pattern.compile("Quota exceeded for metric: ([^,]+), limit: (\\d+)");
+	
+	private static volatile RetryClassifier classifier = new DefaultRetryClassifier();
+	
 	/**
 	 * Execute an operation with exponential backoff retry on 429 errors
 	 */
 	public static <T> T executeWithRetry(Callable<T> operation, String operationName) throws Exception {
+		return execute(operation, operationName, false);
+	}
+	
+	/**
+	 * Replace the classifier deciding which failures are retried
+	 */
+	public static void setClassifier(RetryClassifier retryClassifier) {
+		classifier = retryClassifier;
+	}
+	
+	/**
+	 * Check if the exception is a 429 rate limit error
+	 */
+	public static boolean is429Error(Throwable e) {
+		return classifier.classify(e) == RetryClassifier.Classification.RATE_LIMITED;
+	}
+	
+	/**
+	 * Execute an operation with retry on transient errors (429 and Gemini API errors)
+	 */
+	public static <T> T executeWithRetryOnTransientErrors(Callable<T> operation, String operationName) throws Exception {
+		return execute(operation, operationName, true);
+	}
+	
+	private static <T> T execute(Callable<T> operation, String operationName, boolean retryTransientErrors) throws Exception {
+		RETRY_BUDGET.onFirstAttempt();
 		int attempt = 0;
-		Duration currentBackoff = INITIAL_BACKOFF;
+		Duration previousDelay = INITIAL_BACKOFF;
 		Exception lastException = null;
 		
 		while (attempt < MAX_RETRIES) {
@@ -40,41 +83,22 @@ public class RetryHelper {
 			} catch (Exception e) {
 				lastException = e;
 				
-				// Check if it's a 429 rate limit error
-				if (is429Error(e)) {
-					// Extract retry delay from error message if available
-					Duration waitTime = extractRetryDelay(e);
-					if (waitTime != null) {
-						Log.warn(MessageFormat.format("Rate limit exceeded for {0}, API suggests waiting {1} seconds",
-							operationName, waitTime.getSeconds()));
-						currentBackoff = waitTime;
-					} else {
-						Log.warn(MessageFormat.format("Rate limit exceeded for {0} (attempt {1}/{2}), using exponential backoff: {3} seconds",
-							operationName, attempt, MAX_RETRIES, currentBackoff.getSeconds()));
-					}
-					
-					// Log quota details if available
-					logQuotaDetails(e);
-					
-					if (attempt < MAX_RETRIES) {
-						try {
-							Log.info(MessageFormat.format("Waiting {0} seconds before retry...", currentBackoff.getSeconds()));
-							Thread.sleep(currentBackoff.toMillis());
-						} catch (InterruptedException ie) {
-							Thread.currentThread().interrupt();
-							throw new RuntimeException("Interrupted during retry backoff", ie);
-						}
-						
-						// Calculate next backoff (exponential)
-						currentBackoff = Duration.ofMillis((long) (currentBackoff.toMillis() * BACKOFF_MULTIPLIER));
-						if (currentBackoff.compareTo(MAX_BACKOFF) > 0) {
-							currentBackoff = MAX_BACKOFF;
-						}
-					}
-				} else {
-					// For non-429 errors, don't retry
+				Duration delay = retryDelay(e, operationName, attempt, retryTransientErrors, previousDelay);
+				if (delay == null) {
+					// For non-retryable errors, or when the retry budget is spent, don't retry
 					throw e;
 				}
+				
+				if (attempt < MAX_RETRIES) {
+					try {
+						Log.info(MessageFormat.format("Waiting {0} seconds before retry...", delay.toMillis() / 1000.0));
+						Thread.sleep(delay.toMillis());
+					} catch (InterruptedException ie) {
+						Thread.currentThread().interrupt();
+						throw new RuntimeException("Interrupted during retry backoff", ie);
+					}
+					previousDelay = delay;
+				}
 			}
 		}
 		
@@ -84,128 +108,103 @@ public class RetryHelper {
 	}
 	
 	/**
-	 * Check if the exception is a 429 rate limit error
+	 * Async variant of {@link #executeWithRetry}: retries on 429 errors, waiting out the
+	 * backoff on a timer. Use {@code subscribeAsCompletionStage()} for a CompletionStage.
+	 * @param operation Creates a new attempt; called once per attempt
 	 */
-	private static boolean is429Error(Exception e) {
-		String message = e.getMessage();
-		if (message == null) {
-			return false;
-		}
-		
-		// Check for common 429 error patterns
-		return message.contains("429") ||
-			message.contains("quota") ||
-			message.contains("rate limit") ||
-			message.contains("RESOURCE_EXHAUSTED") ||
-			message.contains("exceeded your current quota");
+	public static <T> Uni<T> executeWithRetryAsync(Supplier<Uni<T>> operation, String operationName) {
+		return Uni.createFrom().deferred(() -> {
+			RETRY_BUDGET.onFirstAttempt();
+			return attemptAsync(operation, operationName, false, 1, INITIAL_BACKOFF);
+		});
 	}
 	
 	/**
-	 * Check if the exception is a transient Gemini API error that should be retried
+	 * Async variant of {@link #executeWithRetryOnTransientErrors}: retries on 429 and transient
+	 * Gemini API errors, waiting out the backoff on a timer.
+	 * Use {@code subscribeAsCompletionStage()} for a CompletionStage.
+	 * @param operation Creates a new attempt; called once per attempt
 	 */
-	private static boolean isTransientGeminiError(Exception e) {
-		// Check for NullPointerException from Gemini response handler
-		if (e instanceof NullPointerException) {
-			String message = e.getMessage();
-			if (message != null && message.contains("\"parts\" is null")) {
-				return true;
+	public static <T> Uni<T> executeWithRetryOnTransientErrorsAsync(Supplier<Uni<T>> operation, String operationName) {
+		return Uni.createFrom().deferred(() -> {
+			RETRY_BUDGET.onFirstAttempt();
+			return attemptAsync(operation, operationName, true, 1, INITIAL_BACKOFF);
+		});
+	}
+	
+	private static <T> Uni<T> attemptAsync(Supplier<Uni<T>> operation, String operationName,
+			boolean retryTransientErrors, int attempt, Duration previousDelay) {
+		return Uni.createFrom().deferred(() -> {
+			Log.debug(MessageFormat.format("Executing {0} (attempt {1}/{2})", operationName, attempt, MAX_RETRIES));
+			return operation.get();
+		}).onFailure().recoverWithUni(e -> {
+			Duration delay = retryDelay(e, operationName, attempt, retryTransientErrors, previousDelay);
+			if (delay == null) {
+				// For non-retryable errors, or when the retry budget is spent, don't retry
+				return Uni.createFrom().failure(e);
 			}
 			
-			// Check stack trace for Gemini response handler
-			StackTraceElement[] stackTrace = e.getStackTrace();
-			if (stackTrace != null && stackTrace.length > 0) {
-				for (StackTraceElement element : stackTrace) {
-					if (element.getClassName().contains("GenerateContentResponseHandler")) {
-						return true;
-					}
-				}
+			if (attempt >= MAX_RETRIES) {
+				Log.error(MessageFormat.format("Max retries ({0}) exceeded for {1}", MAX_RETRIES, operationName));
+				return Uni.createFrom().failure(new RuntimeException(
+					MessageFormat.format("Max retries exceeded after {0} attempts for {1}", attempt, operationName), e));
 			}
-		}
-		
-		// Check for other transient errors
-		String message = e.getMessage();
-		if (message != null) {
-			return message.contains("503") ||
-				message.contains("Service Unavailable") ||
-				message.contains("temporarily unavailable") ||
-				message.contains("Internal Server Error");
-		}
-		
-		return false;
+			
+			// The delay is a timer on the Mutiny scheduler, no thread waits for it
+			Log.info(MessageFormat.format("Waiting {0} seconds before retry...", delay.toMillis() / 1000.0));
+			return Uni.createFrom().voidItem()
+				.onItem().delayIt().by(delay)
+				.onItem().transformToUni(ignored -> attemptAsync(operation, operationName, retryTransientErrors, attempt + 1, delay));
+		});
 	}
 	
 	/**
-	 * Execute an operation with retry on transient errors (429 and Gemini API errors)
+	 * Decide whether a failed attempt is retried and log why
+	 * @param previousDelay The delay before this attempt, or the initial backoff
+	 * @return The jittered delay before the next attempt, or null if the error is not
+	 *         retryable or the process-wide retry budget is spent
 	 */
-	public static <T> T executeWithRetryOnTransientErrors(Callable<T> operation, String operationName) throws Exception {
-		int attempt = 0;
-		Duration currentBackoff = INITIAL_BACKOFF;
-		Exception lastException = null;
+	private static Duration retryDelay(Throwable e, String operationName, int attempt,
+			boolean retryTransientErrors, Duration previousDelay) {
+		RetryClassifier.Classification classification = classifier.classify(e);
+		boolean rateLimited = classification == RetryClassifier.Classification.RATE_LIMITED;
+		if (!rateLimited && !(retryTransientErrors && classification == RetryClassifier.Classification.TRANSIENT)) {
+			return null;
+		}
 		
-		while (attempt < MAX_RETRIES) {
-			attempt++;
-			
-			try {
-				Log.debug(MessageFormat.format("Executing {0} (attempt {1}/{2})", operationName, attempt, MAX_RETRIES));
-				return operation.call();
-				
-			} catch (Exception e) {
-				lastException = e;
-				
-				// Check if it's a retryable error
-				boolean shouldRetry = is429Error(e) || isTransientGeminiError(e);
-				
-				if (shouldRetry) {
-					if (is429Error(e)) {
-						// Extract retry delay from error message if available
-						Duration waitTime = extractRetryDelay(e);
-						if (waitTime != null) {
-							Log.warn(MessageFormat.format("Rate limit exceeded for {0}, API suggests waiting {1} seconds",
-								operationName, waitTime.getSeconds()));
-							currentBackoff = waitTime;
-						} else {
-							Log.warn(MessageFormat.format("Rate limit exceeded for {0} (attempt {1}/{2}), using exponential backoff: {3} seconds",
-								operationName, attempt, MAX_RETRIES, currentBackoff.getSeconds()));
-						}
-						logQuotaDetails(e);
-					} else {
-						Log.warn(MessageFormat.format("Transient Gemini API error for {0} (attempt {1}/{2}): {3}",
-							operationName, attempt, MAX_RETRIES, e.getClass().getSimpleName()));
-						Log.warn(MessageFormat.format("Error details: {0}", e.getMessage()));
-					}
-					
-					if (attempt < MAX_RETRIES) {
-						try {
-							Log.info(MessageFormat.format("Waiting {0} seconds before retry...", currentBackoff.getSeconds()));
-							Thread.sleep(currentBackoff.toMillis());
-						} catch (InterruptedException ie) {
-							Thread.currentThread().interrupt();
-							throw new RuntimeException("Interrupted during retry backoff", ie);
-						}
-						
-						// Calculate next backoff (exponential)
-						currentBackoff = Duration.ofMillis((long) (currentBackoff.toMillis() * BACKOFF_MULTIPLIER));
-						if (currentBackoff.compareTo(MAX_BACKOFF) > 0) {
-							currentBackoff = MAX_BACKOFF;
-						}
-					}
-				} else {
-					// For non-retryable errors, don't retry
-					throw e;
-				}
+		Duration delay;
+		if (rateLimited) {
+			// Extract retry delay from error message if available
+			Duration waitTime = extractRetryDelay(e);
+			if (waitTime != null) {
+				Log.warn(MessageFormat.format("Rate limit exceeded for {0}, API suggests waiting {1} seconds",
+					operationName, waitTime.getSeconds()));
+				delay = Backoff.spread(waitTime, ThreadLocalRandom.current());
+			} else {
+				delay = Backoff.decorrelatedJitter(INITIAL_BACKOFF, MAX_BACKOFF, previousDelay, ThreadLocalRandom.current());
+				Log.warn(MessageFormat.format("Rate limit exceeded for {0} (attempt {1}/{2}), using jittered backoff: {3} seconds",
+					operationName, attempt, MAX_RETRIES, delay.toMillis() / 1000.0));
 			}
+			logQuotaDetails(e);
+		} else {
+			delay = Backoff.decorrelatedJitter(INITIAL_BACKOFF, MAX_BACKOFF, previousDelay, ThreadLocalRandom.current());
+			Log.warn(MessageFormat.format("Transient Gemini API error for {0} (attempt {1}/{2}): {3}",
+				operationName, attempt, MAX_RETRIES, e.getClass().getSimpleName()));
+			Log.warn(MessageFormat.format("Error details: {0}", e.getMessage()));
 		}
 		
-		// Max retries exceeded
-		Log.error(MessageFormat.format("Max retries ({0}) exceeded for {1}", MAX_RETRIES, operationName));
-		throw new RuntimeException(MessageFormat.format("Max retries exceeded after {0} attempts for {1}", attempt, operationName), lastException);
+		if (attempt < MAX_RETRIES && !RETRY_BUDGET.tryAcquireRetry()) {
+			Log.warn(MessageFormat.format("Retry budget exhausted, not retrying {0}", operationName));
+			return null;
+		}
+		return delay;
 	}
 	
 	/**
 	 * Extract retry delay from error message
 	 * Looks for patterns like "Please retry in 59.955530121s"
 	 */
-	private static Duration extractRetryDelay(Exception e) {
+	public static Duration extractRetryDelay(Throwable e) {
 		String message = e.getMessage();
 		if (message == null) {
 			return null;
@@ -230,26 +229,22 @@ public class RetryHelper {
 	/**
 	 * Log quota details from the error message
 	 */
-	private static void logQuotaDetails(Exception e) {
+	private static void logQuotaDetails(Throwable e) {
 		String message = e.getMessage();
 		if (message == null) {
 			return;
 		}
 		
 		// Extract quota metric info
-		// Example: "Quota exceeded for metric: generativelanguage.googleapis.com/generate_content_free_tier_requests, limit: 10"
-		if (message.contains("Quota exceeded for metric:")) {
-			Pattern quotaPattern = Pattern.compile("Quota exceeded for metric: ([^,]+), limit: (\\d+)");
-			Matcher matcher = quotaPattern.matcher(message);
-			if (matcher.find()) {
-				String quotaMetric = matcher.group(1);
-				String limit = matcher.group(2);
-				
-				Log.warn("Quota violation details:");
-				Log.warn(MessageFormat.format("  - Metric: {0}", quotaMetric));
-				Log.warn(MessageFormat.format("  - Limit: {0}", limit));
-				Log.warn("  - For more info: https://ai.google.dev/gemini-api/docs/rate-limits");
-			}
+		Matcher matcher = QUOTA_PATTERN.matcher(message);
+		if (matcher.find()) {
+			String quotaMetric = matcher.group(1);
+			String limit = matcher.group(2);
+			
+			Log.warn("Quota violation details:");
+			Log.warn(MessageFormat.format("  - Metric: {0}", quotaMetric));
+			Log.warn(MessageFormat.format("  - Limit: {0}", limit));
+			Log.warn("  - For more info: https://ai.google.dev/gemini-api/docs/rate-limits");
 		}
 	}
 }
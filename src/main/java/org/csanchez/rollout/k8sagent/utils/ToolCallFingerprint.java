@@ -0,0 +1,118 @@
+package org.csanchez.rollout.k8sagent.utils;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * 64-bit fingerprint of a tool call (tool name plus canonicalized arguments) used
+ * for duplicate detection without building String keys.
+ * Arguments are canonicalized so that calls the tools treat the same hash the same:
+ * strings are compared without surrounding whitespace, a blank string equals null,
+ * integral numbers hash by value whatever their boxed type, and maps hash
+ * independently of their iteration order. Strings, numbers and booleans are hashed
+ * in place with no allocation.
+ */
+public final class ToolCallFingerprint {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    // Distinct seeds so e.g. null, "" and false, or 1 and "1", do not collide by construction
+    private static final long NULL = 0x6a09e667f3bcc908L;
+    private static final long TRUE = 0xbb67ae8584caa73bL;
+    private static final long FALSE = 0x3c6ef372fe94f82bL;
+    private static final long NUMBER = 0xa54ff53a5f1d36f1L;
+    private static final long STRING = 0x510e527fade682d1L;
+    private static final long MAP = 0x9b05688c2b3e6c1fL;
+    private static final long COLLECTION = 0x1f83d9abfb41bd6bL;
+
+    private ToolCallFingerprint() {
+    }
+
+    /**
+     * @param toolName The tool being called
+     * @param args The call arguments, in declaration order
+     */
+    public static long of(String toolName, Object... args) {
+        long h = hashString(toolName);
+        if (args != null) {
+            for (Object arg : args) {
+                h = mix(h * FNV_PRIME + hash(arg));
+            }
+        }
+        return h;
+    }
+
+    private static long hash(Object value) {
+        if (value == null) {
+            return NULL;
+        }
+        if (value instanceof CharSequence s) {
+            return hashString(s);
+        }
+        if (value instanceof Boolean b) {
+            return b ? TRUE : FALSE;
+        }
+        if (value instanceof Byte || value instanceof Short || value instanceof Integer || value instanceof Long) {
+            return mix(NUMBER ^ ((Number) value).longValue());
+        }
+        if (value instanceof Number n) {
+            return mix(NUMBER ^ Double.doubleToLongBits(n.doubleValue()));
+        }
+        if (value instanceof Map<?, ?> map) {
+            // Order-independent: a sum of entry hashes
+            long h = MAP;
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                h += mix(hash(entry.getKey()) * FNV_PRIME ^ hash(entry.getValue()));
+            }
+            return mix(h);
+        }
+        if (value instanceof Collection<?> collection) {
+            long h = COLLECTION;
+            for (Object element : collection) {
+                h = mix(h * FNV_PRIME + hash(element));
+            }
+            return h;
+        }
+        return hashString(value.toString());
+    }
+
+    /**
+     * FNV-1a over the chars of the string without leading and trailing whitespace;
+     * blank and null strings hash the same
+     */
+    private static long hashString(CharSequence s) {
+        if (s == null) {
+            return NULL;
+        }
+        int start = 0;
+        int end = s.length();
+        while (start < end && Character.isWhitespace(s.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(s.charAt(end - 1))) {
+            end--;
+        }
+        if (start == end) {
+            return NULL;
+        }
+        long h = FNV_OFFSET ^ STRING;
+        for (int i = start; i < end; i++) {
+            h ^= s.charAt(i);
+            h *= FNV_PRIME;
+        }
+        return mix(h);
+    }
+
+    /**
+     * Final avalanche step of MurmurHash3 (fmix64)
+     */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
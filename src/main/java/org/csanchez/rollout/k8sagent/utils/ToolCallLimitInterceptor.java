@@ -0,0 +1,68 @@
+package org.csanchez.rollout.k8sagent.utils;
+
+import dev.langchain4j.agent.tool.Tool;
+import dev.langchain4j.agent.tool.ToolMemoryId;
+import io.quarkus.logging.Log;
+import jakarta.annotation.Priority;
+import jakarta.inject.Inject;
+import jakarta.interceptor.AroundInvoke;
+import jakarta.interceptor.Interceptor;
+import jakarta.interceptor.InvocationContext;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.text.MessageFormat;
+import java.util.Map;
+
+/**
+ * Checks every {@code @Tool} call of a {@link LimitToolCalls} bean against the
+ * {@link ToolCallLimiter} before it runs. A rejected call is not executed; the LLM
+ * gets an error result telling it to stop calling tools or not to repeat the call.
+ * Calls answered by the {@code ToolResultCacheInterceptor} are counted there.
+ */
+@LimitToolCalls
+@Interceptor
+@Priority(Interceptor.Priority.APPLICATION)
+public class ToolCallLimitInterceptor {
+
+    @Inject
+    ToolCallLimiter limiter;
+
+    @AroundInvoke
+    Object limit(InvocationContext ctx) throws Exception {
+        Method method = ctx.getMethod();
+        Tool tool = method.getAnnotation(Tool.class);
+        if (tool == null) {
+            return ctx.proceed();
+        }
+
+        String toolName = tool.name().isEmpty() ? method.getName() : tool.name();
+        Object memoryId = memoryId(method, ctx.getParameters());
+        if (memoryId == null) {
+            Log.debug(MessageFormat.format("No memory ID for tool call {0}, not limiting it", toolName));
+            return ctx.proceed();
+        }
+
+        ToolCallLimiter.Decision decision = limiter.acquire(memoryId.toString(), toolName, ctx.getParameters());
+        if (decision == ToolCallLimiter.Decision.ALLOWED) {
+            return ctx.proceed();
+        }
+
+        String error = limiter.rejectionMessage(decision, toolName);
+        // All tools return Map<String, Object> and report failures as an "error" entry
+        if (method.getReturnType().isAssignableFrom(Map.class)) {
+            return Map.of("error", error);
+        }
+        throw new IllegalStateException(error);
+    }
+
+    private static Object memoryId(Method method, Object[] args) {
+        Parameter[] parameters = method.getParameters();
+        for (int i = 0; i < parameters.length; i++) {
+            if (parameters[i].isAnnotationPresent(ToolMemoryId.class)) {
+                return args[i];
+            }
+        }
+        return null;
+    }
+}
@@ -1,89 +1,267 @@
 package org.csanchez.rollout.k8sagent.utils;
 
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.quarkus.logging.Log;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.Config;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
 import java.text.MessageFormat;
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Limits tool calls per session to prevent rate limiting issues.
- * Tracks tool calls by memory ID and enforces a maximum limit.
+ * Tracks tool calls by memory ID and enforces a maximum limit per session and,
+ * optionally, per tool. Slots are taken with lock-free compare-and-set loops, so
+ * concurrent tool calls in one session can never exceed the limits.
+ * Applied to every tool by {@link ToolCallLimitInterceptor}.
+ * Sessions live in a {@link BoundedTtlCache}: they expire after the session TTL without
+ * activity, the least recently used one is evicted when the store is full, and a
+ * scheduled sweeper removes expired sessions. Live sessions and evictions are exposed
+ * as metrics.
  */
+@ApplicationScoped
 public class ToolCallLimiter {
-    
-    private static final int MAX_TOOL_CALLS = 5;
-    private static final Map<String, AtomicInteger> callCounts = new ConcurrentHashMap<>();
-    private static final Map<String, Map<String, Integer>> toolCallHistory = new ConcurrentHashMap<>();
-    
+
     /**
-     * Check if a tool call should be allowed
+     * Outcome of a tool call check
+     */
+    public enum Decision {
+        ALLOWED,
+        SESSION_LIMIT,
+        TOOL_LIMIT,
+        DUPLICATE
+    }
+
+    @Inject
+    MeterRegistry registry;
+
+    @Inject
+    Config config;
+
+    @Inject
+    @ConfigProperty(name = "agent.tool-calls.max-per-session", defaultValue = "5")
+    int maxToolCalls;
+
+    @Inject
+    @ConfigProperty(name = "agent.tool-calls.max-sessions", defaultValue = "10000")
+    int maxSessions;
+
+    @Inject
+    @ConfigProperty(name = "agent.tool-calls.session-ttl", defaultValue = "PT30M")
+    Duration sessionTtl;
+
+    @Inject
+    @ConfigProperty(name = "agent.tool-calls.sweep-interval", defaultValue = "PT1M")
+    Duration sweepInterval;
+
+    private BoundedTtlCache<String, Session> sessions;
+    private ScheduledExecutorService sweeper;
+
+    /** Per-tool limits from agent.tool-calls.max-per-tool.<toolName>, 0 when the tool has none */
+    private final Map<String, Integer> toolLimits = new ConcurrentHashMap<>();
+
+    /**
+     * Tool calls made in one session; history holds the {@link ToolCallFingerprint}s of the calls made
+     */
+    private static final class Session {
+        final AtomicInteger count = new AtomicInteger(0);
+        final Map<String, AtomicInteger> toolCounts = new ConcurrentHashMap<>();
+        final LongHashSet history;
+
+        Session(int maxToolCalls) {
+            history = new LongHashSet(maxToolCalls);
+        }
+    }
+
+    @PostConstruct
+    void init() {
+        sessions = new BoundedTtlCache<>(maxSessions, sessionTtl);
+
+        Gauge.builder("agent.tool.limiter.sessions", sessions, BoundedTtlCache::size)
+            .description("Sessions tracked by the tool call limiter")
+            .register(registry);
+        FunctionCounter.builder("agent.tool.limiter.evictions", sessions, BoundedTtlCache::sizeEvictions)
+            .description("Sessions evicted from the tool call limiter")
+            .tag("cause", "size")
+            .register(registry);
+        FunctionCounter.builder("agent.tool.limiter.evictions", sessions, BoundedTtlCache::expiredEvictions)
+            .description("Sessions evicted from the tool call limiter")
+            .tag("cause", "expired")
+            .register(registry);
+
+        sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "tool-call-limiter-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(this::cleanup,
+            sweepInterval.toMillis(), sweepInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        sweeper.shutdownNow();
+    }
+
+    /**
+     * Check if a tool call should be allowed and, if so, count it against the session
      * @param memoryId The session/memory ID
      * @param toolName The name of the tool being called
-     * @param params String representation of parameters for duplicate detection
-     * @return true if the call should be allowed, false otherwise
+     * @param args The call arguments, fingerprinted for duplicate detection
+     * @return {@link Decision#ALLOWED}, or the reason the call is rejected
      */
-    public static boolean allowToolCall(String memoryId, String toolName, String params) {
-        // Get or create call count for this session
-        AtomicInteger count = callCounts.computeIfAbsent(memoryId, k -> new AtomicInteger(0));
-        
-        // Check if we've exceeded the limit
-        if (count.get() >= MAX_TOOL_CALLS) {
-            Log.warn(MessageFormat.format(
-                "Tool call limit ({0}) reached for session {1}. Rejecting call to {2}",
-                MAX_TOOL_CALLS, memoryId, toolName
-            ));
-            return false;
+    public Decision acquire(String memoryId, String toolName, Object... args) {
+        // Get or create the session
+        Session session = sessions.computeIfAbsent(memoryId, k -> new Session(maxToolCalls));
+
+        // Take a session slot, then a tool slot if the tool has its own limit
+        if (!tryIncrement(session.count, maxToolCalls)) {
+            return reject(Decision.SESSION_LIMIT, memoryId, toolName, args);
         }
-        
-        // Check for duplicate calls
-        Map<String, Integer> history = toolCallHistory.computeIfAbsent(memoryId, k -> new ConcurrentHashMap<>());
-        String callKey = toolName + ":" + params;
-        
-        if (history.containsKey(callKey)) {
-            Log.warn(MessageFormat.format(
-                "Duplicate tool call detected for session {0}: {1} with params {2}",
-                memoryId, toolName, params
-            ));
-            return false;
+        int toolLimit = toolLimit(toolName);
+        AtomicInteger toolCount = toolLimit > 0
+            ? session.toolCounts.computeIfAbsent(toolName, k -> new AtomicInteger(0))
+            : null;
+        if (toolCount != null && !tryIncrement(toolCount, toolLimit)) {
+            session.count.decrementAndGet();
+            return reject(Decision.TOOL_LIMIT, memoryId, toolName, args);
+        }
+
+        // Check for duplicate calls, giving the slots back if it is one
+        long fingerprint = ToolCallFingerprint.of(toolName, args);
+        boolean added;
+        synchronized (session.history) {
+            added = session.history.add(fingerprint);
         }
-        
-        // Record this call
-        history.put(callKey, count.incrementAndGet());
+        if (!added) {
+            if (toolCount != null) {
+                toolCount.decrementAndGet();
+            }
+            session.count.decrementAndGet();
+            return reject(Decision.DUPLICATE, memoryId, toolName, args);
+        }
+
         Log.info(MessageFormat.format(
             "Tool call {0}/{1} for session {2}: {3}",
-            count.get(), MAX_TOOL_CALLS, memoryId, toolName
+            session.count.get(), maxToolCalls, memoryId, toolName
         ));
-        
-        return true;
+        return Decision.ALLOWED;
     }
-    
+
+    /**
+     * Check, without taking a slot, whether the session already made this call
+     * @param args The call arguments, as passed to {@link #acquire}
+     */
+    public boolean isRepeat(String memoryId, String toolName, Object... args) {
+        Session session = sessions.get(memoryId);
+        if (session == null) {
+            return false;
+        }
+        long fingerprint = ToolCallFingerprint.of(toolName, args);
+        synchronized (session.history) {
+            return session.history.contains(fingerprint);
+        }
+    }
+
+    /**
+     * @return The error result telling the LLM why a tool call was rejected
+     */
+    public String rejectionMessage(Decision decision, String toolName) {
+        return switch (decision) {
+            case SESSION_LIMIT -> MessageFormat.format(
+                "Tool call limit of {0} reached for this analysis. Do not call any more tools; analyze the data you already have.",
+                maxToolCalls);
+            case TOOL_LIMIT -> MessageFormat.format(
+                "{0} cannot be called again in this analysis.", toolName);
+            default -> MessageFormat.format(
+                "{0} was already called with the same parameters in this analysis. Use the result you already have.", toolName);
+        };
+    }
+
+    /**
+     * @return The maximum number of tool calls per session
+     */
+    public int getMaxToolCalls() {
+        return maxToolCalls;
+    }
+
+    /**
+     * Increment the counter unless it has reached the limit
+     */
+    private static boolean tryIncrement(AtomicInteger counter, int limit) {
+        while (true) {
+            int current = counter.get();
+            if (current >= limit) {
+                return false;
+            }
+            if (counter.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private int toolLimit(String toolName) {
+        return toolLimits.computeIfAbsent(toolName, name ->
+            config.getOptionalValue("agent.tool-calls.max-per-tool." + name, Integer.class).orElse(0));
+    }
+
+    private Decision reject(Decision decision, String memoryId, String toolName, Object[] args) {
+        switch (decision) {
+            case SESSION_LIMIT -> Log.warn(MessageFormat.format(
+                "Tool call limit ({0}) reached for session {1}. Rejecting call to {2}",
+                maxToolCalls, memoryId, toolName));
+            case TOOL_LIMIT -> Log.warn(MessageFormat.format(
+                "Tool call limit ({0}) for {1} reached for session {2}. Rejecting call",
+                toolLimit(toolName), toolName, memoryId));
+            default -> Log.warn(MessageFormat.format(
+                "Duplicate tool call detected for session {0}: {1} with params {2}",
+                memoryId, toolName, Arrays.toString(args)));
+        }
+        registry.counter("agent.tool.limiter.rejections", "reason", decision.name().toLowerCase()).increment();
+        return decision;
+    }
+
     /**
      * Reset the call count for a session (call this when starting a new analysis)
      */
-    public static void resetSession(String memoryId) {
-        callCounts.remove(memoryId);
-        toolCallHistory.remove(memoryId);
+    public void resetSession(String memoryId) {
+        sessions.remove(memoryId);
         Log.debug(MessageFormat.format("Reset tool call limiter for session {0}", memoryId));
     }
-    
+
     /**
      * Get the current call count for a session
      */
-    public static int getCallCount(String memoryId) {
-        AtomicInteger count = callCounts.get(memoryId);
-        return count != null ? count.get() : 0;
+    public int getCallCount(String memoryId) {
+        Session session = sessions.get(memoryId);
+        return session != null ? session.count.get() : 0;
     }
-    
+
     /**
-     * Clean up old sessions (call periodically to prevent memory leaks)
+     * Remove sessions that have been idle for longer than the session TTL (run periodically by the sweeper)
      */
-    public static void cleanup() {
-        // In a production system, you'd want to track timestamps and remove old entries
-        // For now, we'll keep it simple
-        if (callCounts.size() > 100) {
-            Log.warn("Tool call limiter has many sessions, consider implementing cleanup");
+    public void cleanup() {
+        try {
+            int removed = sessions.evictExpired();
+            if (removed > 0) {
+                Log.debug(MessageFormat.format("Evicted {0} idle tool call limiter sessions, {1} left",
+                    removed, sessions.size()));
+            }
+        } catch (Exception e) {
+            Log.error("Error sweeping tool call limiter sessions", e);
         }
     }
 }
-
@@ -4,10 +4,13 @@ import io.a2a.server.agentexecution.AgentExecutor;
 import io.a2a.server.agentexecution.RequestContext;
 import io.a2a.spec.Message;
 import io.a2a.spec.Task;
+import io.smallrye.mutiny.Uni;
 import org.csanchez.rollout.k8sagent.a2a.A2AAgentExecutor;
 import org.csanchez.rollout.k8sagent.agents.KubernetesAgent;
+import org.csanchez.rollout.k8sagent.service.AgentInvocationService;
 import org.csanchez.rollout.k8sagent.service.AgentResponseFormatter;
 import org.csanchez.rollout.k8sagent.service.AgentResponseParser;
+import org.csanchez.rollout.k8sagent.utils.ToolCallLimiter;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -32,11 +35,17 @@ class A2AAgentExecutorTest {
     @Mock
     private KubernetesAgent kubernetesAgent;
     
+    @Mock
+    private AgentInvocationService agentInvocationService;
+    
     @Mock
     private AgentResponseParser responseParser;
     
     @Mock
     private AgentResponseFormatter responseFormatter;
+    
+    @Mock
+    private ToolCallLimiter toolCallLimiter;
 
     private A2AAgentExecutor a2aAgentExecutor;
     private AgentExecutor executor;
@@ -46,9 +55,12 @@ class A2AAgentExecutorTest {
         a2aAgentExecutor = new A2AAgentExecutor();
         
         // Inject mocks using reflection
-        Field kubernetesAgentField = A2AAgentExecutor.class.getDeclaredField("kubernetesAgent");
-        kubernetesAgentField.setAccessible(true);
-        kubernetesAgentField.set(a2aAgentExecutor, kubernetesAgent);
+        Field agentInvocationServiceField = A2AAgentExecutor.class.getDeclaredField("agentInvocationService");
+        agentInvocationServiceField.setAccessible(true);
+        agentInvocationServiceField.set(a2aAgentExecutor, agentInvocationService);
+        // The invocation service passes the call through to the agent
+        lenient().when(agentInvocationService.chat(anyString(), anyString())).thenAnswer(invocation ->
+            Uni.createFrom().item(() -> kubernetesAgent.chat(invocation.getArgument(0), invocation.getArgument(1))));
         
         Field responseParserField = A2AAgentExecutor.class.getDeclaredField("responseParser");
         responseParserField.setAccessible(true);
@@ -58,6 +70,10 @@ class A2AAgentExecutorTest {
         responseFormatterField.setAccessible(true);
         responseFormatterField.set(a2aAgentExecutor, responseFormatter);
         
+        Field toolCallLimiterField = A2AAgentExecutor.class.getDeclaredField("toolCallLimiter");
+        toolCallLimiterField.setAccessible(true);
+        toolCallLimiterField.set(a2aAgentExecutor, toolCallLimiter);
+        
         executor = a2aAgentExecutor.agentExecutor();
     }
 
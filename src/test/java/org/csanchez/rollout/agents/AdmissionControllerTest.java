@@ -0,0 +1,127 @@
+package org.csanchez.rollout.agents;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.QuarkusTestProfile;
+import io.quarkus.test.junit.TestProfile;
+import io.smallrye.mutiny.Uni;
+import jakarta.inject.Inject;
+import org.csanchez.rollout.k8sagent.service.AdmissionController;
+import org.csanchez.rollout.k8sagent.service.AdmissionController.Priority;
+import org.csanchez.rollout.k8sagent.service.AnalysisRejectedException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for admission control, with one analysis in flight and two queued at most
+ */
+@QuarkusTest
+@TestProfile(AdmissionControllerTest.SmallQueueProfile.class)
+class AdmissionControllerTest {
+
+    public static class SmallQueueProfile implements QuarkusTestProfile {
+        @Override
+        public Map<String, String> getConfigOverrides() {
+            return Map.of(
+                "agent.admission.max-in-flight", "1",
+                "agent.admission.max-queued", "2",
+                "agent.admission.queue-timeout", "PT1S");
+        }
+    }
+
+    @Inject
+    AdmissionController admission;
+
+    private CompletableFuture<String> admit(Priority priority, List<String> order, String name) {
+        return admission.admit(priority, () -> Uni.createFrom().item(() -> {
+            order.add(name);
+            return name;
+        })).subscribeAsCompletionStage();
+    }
+
+    private static Throwable failureOf(CompletableFuture<?> future) throws Exception {
+        ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        return e.getCause();
+    }
+
+    @Test
+    void testPriorityOf() {
+        assertEquals(Priority.HIGH, admission.priorityOf(Map.of("namespace", "payments-prod")));
+        assertEquals(Priority.LOW, admission.priorityOf(Map.of("namespace", "team-dev")));
+        assertEquals(Priority.NORMAL, admission.priorityOf(Map.of("namespace", "rollouts-test-system-2")));
+        assertEquals(Priority.HIGH, admission.priorityOf(Map.of("namespace", "team-dev", "abortCheck", true)));
+        assertEquals(Priority.LOW, admission.priorityOf(Map.of("namespace", "payments-prod", "priority", "low")));
+        assertEquals(Priority.NORMAL, admission.priorityOf(null));
+    }
+
+    @Test
+    void testHigherPriorityAdmittedFirst() throws Exception {
+        CompletableFuture<String> running = new CompletableFuture<>();
+        CompletableFuture<String> first = admission.admit(Priority.NORMAL, () -> Uni.createFrom().completionStage(running))
+            .subscribeAsCompletionStage();
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        CompletableFuture<String> dev = admit(Priority.LOW, order, "dev");
+        CompletableFuture<String> prod = admit(Priority.HIGH, order, "prod");
+        assertEquals(2, admission.getQueued());
+
+        running.complete("first");
+        assertEquals("first", first.get(5, TimeUnit.SECONDS));
+        assertEquals("prod", prod.get(5, TimeUnit.SECONDS));
+        assertEquals("dev", dev.get(5, TimeUnit.SECONDS));
+        assertEquals(List.of("prod", "dev"), order);
+        assertEquals(0, admission.getInFlight());
+    }
+
+    @Test
+    void testFullQueueRejectsOrEvictsLowerPriority() throws Exception {
+        CompletableFuture<String> running = new CompletableFuture<>();
+        admission.admit(Priority.NORMAL, () -> Uni.createFrom().completionStage(running)).subscribeAsCompletionStage();
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        CompletableFuture<String> normal = admit(Priority.NORMAL, order, "normal");
+        CompletableFuture<String> dev = admit(Priority.LOW, order, "dev");
+
+        // Not higher than anything queued: rejected right away
+        Throwable rejected = failureOf(admit(Priority.LOW, order, "dev-2"));
+        assertInstanceOf(AnalysisRejectedException.class, rejected);
+        assertTrue(((AnalysisRejectedException) rejected).getRetryAfter().toSeconds() >= 1);
+
+        // Higher priority: takes the place of the queued dev analysis
+        CompletableFuture<String> prod = admit(Priority.HIGH, order, "prod");
+        assertInstanceOf(AnalysisRejectedException.class, failureOf(dev));
+
+        running.complete("done");
+        assertEquals("prod", prod.get(5, TimeUnit.SECONDS));
+        assertEquals("normal", normal.get(5, TimeUnit.SECONDS));
+        assertEquals(List.of("prod", "normal"), order);
+    }
+
+    @Test
+    void testQueueTimeout() throws Exception {
+        CompletableFuture<String> running = new CompletableFuture<>();
+        admission.admit(Priority.NORMAL, () -> Uni.createFrom().completionStage(running)).subscribeAsCompletionStage();
+        CompletableFuture<String> waiting = admit(Priority.HIGH, new ArrayList<>(), "waiting");
+
+        assertInstanceOf(AnalysisRejectedException.class, failureOf(waiting));
+        assertEquals(0, admission.getQueued());
+        running.complete("done");
+    }
+
+    @Test
+    void testFailedAnalysisReleasesSlot() {
+        assertThrows(IllegalStateException.class, () -> admission.admit(Priority.NORMAL,
+                () -> Uni.createFrom().<String>failure(new IllegalStateException("LLM error")))
+            .await().atMost(Duration.ofSeconds(5)));
+        assertEquals(0, admission.getInFlight());
+        assertEquals("ok", admission.admit(Priority.NORMAL, () -> Uni.createFrom().item("ok"))
+            .await().atMost(Duration.ofSeconds(5)));
+    }
+}
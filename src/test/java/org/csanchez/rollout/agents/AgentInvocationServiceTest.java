@@ -0,0 +1,88 @@
+package org.csanchez.rollout.agents;
+
+import io.quarkus.test.InjectMock;
+import io.quarkus.test.junit.QuarkusTest;
+import io.smallrye.mutiny.subscription.Cancellable;
+import jakarta.inject.Inject;
+import org.csanchez.rollout.k8sagent.agents.KubernetesAgent;
+import org.csanchez.rollout.k8sagent.service.AgentInvocationService;
+import org.csanchez.rollout.k8sagent.service.RateLimitCoordinator;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+@QuarkusTest
+class AgentInvocationServiceTest {
+
+    @InjectMock
+    KubernetesAgent kubernetesAgent;
+
+    @Inject
+    AgentInvocationService agentInvocationService;
+
+    @Inject
+    RateLimitCoordinator rateLimits;
+
+    @Test
+    void testCancellingInterruptsTheConversationAndReleasesThePermitWhenItReturns() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        CountDownLatch mayReturn = new CountDownLatch(1);
+        when(kubernetesAgent.chat(anyString(), anyString())).thenAnswer(invocation -> {
+            started.countDown();
+            try {
+                Thread.sleep(60_000);
+                return "not cancelled";
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                // Keep the call running after the interrupt, like a tool finishing its request
+                mayReturn.await(30, TimeUnit.SECONDS);
+                throw new IllegalStateException("Conversation interrupted", e);
+            }
+        });
+
+        int limit = rateLimits.getLimit();
+        AtomicBoolean terminated = new AtomicBoolean();
+        Cancellable analysis = agentInvocationService.chat("cancel-test", "Analyze canary")
+            .subscribe().with(result -> terminated.set(true), failure -> terminated.set(true));
+        assertTrue(started.await(10, TimeUnit.SECONDS), "Conversation should have started");
+        assertEquals(1, rateLimits.getInFlight());
+
+        analysis.cancel();
+        assertTrue(interrupted.await(10, TimeUnit.SECONDS), "Cancelling should interrupt the conversation thread");
+        Thread.sleep(200);
+        assertEquals(1, rateLimits.getInFlight(), "The permit should be held until the call returns");
+
+        mayReturn.countDown();
+        awaitTrue(() -> rateLimits.getInFlight() == 0, "The permit should be released once the call returns");
+        assertEquals(limit, rateLimits.getLimit(), "A cancelled call should neither raise nor lower the limit");
+        assertFalse(terminated.get(), "A cancelled analysis should not deliver a result");
+    }
+
+    @Test
+    void testCompletedCallReleasesItsPermit() {
+        when(kubernetesAgent.chat(anyString(), anyString())).thenReturn("Root cause: none found");
+
+        String result = agentInvocationService.chat("complete-test", "Analyze canary")
+            .await().atMost(Duration.ofSeconds(10));
+
+        assertEquals("Root cause: none found", result);
+        assertEquals(0, rateLimits.getInFlight());
+    }
+
+    private static void awaitTrue(BooleanSupplier condition, String message) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, message);
+            Thread.sleep(20);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package org.csanchez.rollout.agents;
+
+import io.quarkus.test.InjectMock;
+import io.quarkus.test.common.http.TestHTTPResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.QuarkusTestProfile;
+import io.quarkus.test.junit.TestProfile;
+import org.csanchez.rollout.k8sagent.agents.KubernetesAgent;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+/**
+ * Load test of how many analyses POST /a2a/analyze runs at once. The agent is mocked
+ * with a conversation that blocks for a few seconds, like the LLM and tool round trips
+ * of a real analysis, and the worker pool is sized like a saturated production one.
+ *
+ * Not run by default. Compare the worker pool (before) with virtual threads (after):
+ * <pre>
+ * mvn test -Dtest=AnalysisCapacityLoadTest -Dload-test=true -Dagent.llm.virtual-threads=false
+ * mvn test -Dtest=AnalysisCapacityLoadTest -Dload-test=true
+ * </pre>
+ */
+@QuarkusTest
+@TestProfile(AnalysisCapacityLoadTest.LoadProfile.class)
+@EnabledIfSystemProperty(named = "load-test", matches = "true")
+class AnalysisCapacityLoadTest {
+
+    private static final int ANALYSES = 256;
+    private static final Duration CONVERSATION = Duration.ofSeconds(2);
+
+    public static class LoadProfile implements QuarkusTestProfile {
+        @Override
+        public Map<String, String> getConfigOverrides() {
+            return Map.of(
+                "quarkus.thread-pool.max-threads", "32",
+                // Measure thread capacity, not the LLM provider limits
+                "agent.llm.concurrency.adaptive", "false",
+                "agent.llm.concurrency.max", String.valueOf(ANALYSES),
+                "agent.admission.max-in-flight", String.valueOf(ANALYSES),
+                "agent.llm.circuit-breaker.enabled", "false");
+        }
+    }
+
+    @InjectMock
+    KubernetesAgent kubernetesAgent;
+
+    @TestHTTPResource("/a2a/analyze")
+    URI analyzeUri;
+
+    @ConfigProperty(name = "agent.llm.virtual-threads")
+    boolean virtualThreads;
+
+    @ConfigProperty(name = "quarkus.thread-pool.max-threads")
+    int workerThreads;
+
+    @Test
+    void testConcurrentAnalysisCapacity() {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        when(kubernetesAgent.chat(anyString(), anyString())).thenAnswer(invocation -> {
+            peak.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(CONVERSATION);
+            } finally {
+                inFlight.decrementAndGet();
+            }
+            return "Root cause: none found\nRemediation: none needed\npromote: true";
+        });
+
+        HttpClient client = HttpClient.newHttpClient();
+        long start = System.nanoTime();
+        List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+        for (int i = 0; i < ANALYSES; i++) {
+            // Distinct sessions and prompts, so every request is a separate analysis
+            String body = """
+                {"userId": "load-test", "memoryId": "load-test-%d", "prompt": "Analyze canary %d", "context": {"namespace": "default"}}
+                """.formatted(i, i);
+            HttpRequest request = HttpRequest.newBuilder(analyzeUri)
+                .header("Content-Type", "application/json")
+                .timeout(Duration.ofMinutes(5))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+            responses.add(client.sendAsync(request, HttpResponse.BodyHandlers.ofString()));
+        }
+        CompletableFuture.allOf(responses.toArray(CompletableFuture[]::new)).join();
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+        for (CompletableFuture<HttpResponse<String>> response : responses) {
+            assertEquals(200, response.join().statusCode());
+        }
+
+        System.out.println("=== Analysis capacity: " + (virtualThreads ? "virtual threads" : "worker pool") + " ===");
+        System.out.println("Analyses: " + ANALYSES + " of " + CONVERSATION.toMillis() + "ms, worker threads: " + workerThreads);
+        System.out.println("Peak concurrent analyses: " + peak.get());
+        System.out.println("Elapsed: " + elapsed.toMillis() + "ms, throughput: "
+            + String.format("%.1f", ANALYSES * 1000.0 / elapsed.toMillis()) + " analyses/s");
+
+        if (virtualThreads) {
+            assertTrue(peak.get() > workerThreads,
+                "Analyses on virtual threads should not be bounded by the worker pool");
+        } else {
+            assertTrue(peak.get() <= workerThreads);
+        }
+    }
+}
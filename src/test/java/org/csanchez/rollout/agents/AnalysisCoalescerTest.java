@@ -0,0 +1,118 @@
+package org.csanchez.rollout.agents;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.subscription.UniEmitter;
+import jakarta.inject.Inject;
+import org.csanchez.rollout.k8sagent.model.KubernetesAgentRequest;
+import org.csanchez.rollout.k8sagent.model.KubernetesAgentResponse;
+import org.csanchez.rollout.k8sagent.service.AnalysisCoalescer;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for single-flight deduplication of identical analyses
+ */
+@QuarkusTest
+class AnalysisCoalescerTest {
+
+    @Inject
+    AnalysisCoalescer coalescer;
+
+    private static KubernetesAgentResponse response(String analysis) {
+        return KubernetesAgentResponse.empty().withAnalysis(analysis);
+    }
+
+    @Test
+    void testKeyIsCanonical() {
+        Map<String, Object> context = new LinkedHashMap<>();
+        context.put("namespace", "default");
+        context.put("rolloutName", "canary-demo");
+        context.put("revision", 3);
+        Map<String, Object> reordered = new LinkedHashMap<>();
+        reordered.put("revision", 3);
+        reordered.put("rolloutName", "canary-demo");
+        reordered.put("namespace", "default");
+        reordered.put("canaryVersion", null);
+
+        String key = AnalysisCoalescer.key(new KubernetesAgentRequest("argo", "Analyze the canary", context));
+        // Order, null values, surrounding whitespace and the user or memory ID do not matter
+        assertEquals(key, AnalysisCoalescer.key(new KubernetesAgentRequest("other", " Analyze the canary\n", reordered, "session-2")));
+
+        Map<String, Object> otherRevision = new HashMap<>(context);
+        otherRevision.put("revision", 4);
+        assertNotEquals(key, AnalysisCoalescer.key(new KubernetesAgentRequest("argo", "Analyze the canary", otherRevision)));
+        assertNotEquals(key, AnalysisCoalescer.key(new KubernetesAgentRequest("argo", "Analyze the stable", context)));
+        assertNotEquals(
+            AnalysisCoalescer.key(new KubernetesAgentRequest("argo", "a", Map.of("b", "c"))),
+            AnalysisCoalescer.key(new KubernetesAgentRequest("argo", "a", Map.of("bc", ""))));
+    }
+
+    @Test
+    void testConcurrentDuplicatesShareOneAnalysis() {
+        String key = UUID.randomUUID().toString();
+        AtomicInteger started = new AtomicInteger();
+        AtomicReference<UniEmitter<? super KubernetesAgentResponse>> analysis = new AtomicReference<>();
+
+        List<CompletableFuture<KubernetesAgentResponse>> results = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            results.add(coalescer.analyze(key, () -> {
+                started.incrementAndGet();
+                return Uni.createFrom().<KubernetesAgentResponse>emitter(analysis::set);
+            }).subscribeAsCompletionStage());
+        }
+        assertEquals(1, started.get());
+        results.forEach(result -> assertFalse(result.isDone()));
+
+        KubernetesAgentResponse response = response("shared");
+        analysis.get().complete(response);
+        results.forEach(result -> assertSame(response, result.join()));
+    }
+
+    @Test
+    void testLateDuplicateIsServedFromCache() {
+        String key = UUID.randomUUID().toString();
+        AtomicInteger started = new AtomicInteger();
+        KubernetesAgentResponse response = response("cached");
+
+        for (int i = 0; i < 3; i++) {
+            KubernetesAgentResponse result = coalescer.analyze(key, () -> {
+                started.incrementAndGet();
+                return Uni.createFrom().item(response);
+            }).await().atMost(Duration.ofSeconds(5));
+            assertSame(response, result);
+        }
+        assertEquals(1, started.get());
+    }
+
+    @Test
+    void testFailuresAreNotShared() {
+        String key = UUID.randomUUID().toString();
+        AtomicInteger started = new AtomicInteger();
+
+        assertThrows(IllegalStateException.class, () -> coalescer.analyze(key, () -> {
+            started.incrementAndGet();
+            return Uni.createFrom().failure(new IllegalStateException("LLM error"));
+        }).await().atMost(Duration.ofSeconds(5)));
+
+        KubernetesAgentResponse retried = coalescer.analyze(key, () -> {
+            started.incrementAndGet();
+            return Uni.createFrom().item(response("retried"));
+        }).await().atMost(Duration.ofSeconds(5));
+
+        assertEquals("retried", retried.analysis());
+        assertEquals(2, started.get());
+    }
+}
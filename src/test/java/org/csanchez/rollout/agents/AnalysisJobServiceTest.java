@@ -0,0 +1,118 @@
+package org.csanchez.rollout.agents;
+
+import io.quarkus.test.InjectMock;
+import io.quarkus.test.junit.QuarkusTest;
+import io.smallrye.mutiny.Uni;
+import jakarta.inject.Inject;
+import org.csanchez.rollout.k8sagent.model.AnalysisJob;
+import org.csanchez.rollout.k8sagent.model.AnalysisJob.Status;
+import org.csanchez.rollout.k8sagent.model.KubernetesAgentRequest;
+import org.csanchez.rollout.k8sagent.model.KubernetesAgentResponse;
+import org.csanchez.rollout.k8sagent.service.AnalysisJobService;
+import org.csanchez.rollout.k8sagent.service.AnalysisService;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for background analysis jobs (agent.jobs.max-running=8, agent.jobs.max-queued=100)
+ */
+@QuarkusTest
+class AnalysisJobServiceTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    @Inject
+    AnalysisJobService jobService;
+
+    @InjectMock
+    AnalysisService analysisService;
+
+    private static KubernetesAgentRequest request(String prompt) {
+        return new KubernetesAgentRequest("test-user", prompt, Map.of("namespace", "default"));
+    }
+
+    private AnalysisJob awaitDone(String id) {
+        AnalysisJob job = jobService.await(id, TIMEOUT).await().atMost(TIMEOUT.plusSeconds(5));
+        assertTrue(job.status().isDone(), "Job should be done: " + job);
+        return job;
+    }
+
+    @Test
+    void testJobSucceeds() {
+        KubernetesAgentResponse response = KubernetesAgentResponse.empty().withAnalysis("All good").withPromote(true);
+        when(analysisService.analyze(any())).thenReturn(Uni.createFrom().item(response));
+
+        AnalysisJob submitted = jobService.submit(request("Analyze the canary"));
+        assertNotNull(submitted.id());
+        assertNotNull(submitted.submittedAt());
+
+        AnalysisJob job = awaitDone(submitted.id());
+        assertEquals(Status.SUCCEEDED, job.status());
+        assertEquals(response, job.result());
+        assertNotNull(job.completedAt());
+        assertNull(job.error());
+        assertEquals(Status.SUCCEEDED, jobService.get(submitted.id()).status());
+    }
+
+    @Test
+    void testJobFails() {
+        when(analysisService.analyze(any())).thenReturn(Uni.createFrom().failure(new IllegalStateException("LLM error")));
+
+        AnalysisJob job = awaitDone(jobService.submit(request("Analyze the failing canary")).id());
+        assertEquals(Status.FAILED, job.status());
+        assertEquals("LLM error", job.error());
+        assertNull(job.result());
+    }
+
+    @Test
+    void testUnknownJob() {
+        assertNull(jobService.get("no-such-job"));
+        assertNull(jobService.await("no-such-job", Duration.ofSeconds(1)).await().atMost(TIMEOUT));
+    }
+
+    @Test
+    void testLongPollReturnsPendingJobAfterWait() {
+        CompletableFuture<KubernetesAgentResponse> analysis = new CompletableFuture<>();
+        when(analysisService.analyze(any())).thenReturn(Uni.createFrom().completionStage(analysis));
+
+        String id = jobService.submit(request("Analyze the slow canary")).id();
+        AnalysisJob pending = jobService.await(id, Duration.ofMillis(200)).await().atMost(TIMEOUT);
+        assertFalse(pending.status().isDone());
+
+        // The timed out poll did not cancel the job
+        analysis.complete(KubernetesAgentResponse.empty().withAnalysis("Done"));
+        assertEquals(Status.SUCCEEDED, awaitDone(id).status());
+    }
+
+    @Test
+    void testFullQueueRejectsJobs() {
+        CompletableFuture<KubernetesAgentResponse> analysis = new CompletableFuture<>();
+        when(analysisService.analyze(any())).thenReturn(Uni.createFrom().completionStage(analysis));
+
+        List<String> accepted = new ArrayList<>();
+        boolean rejected = false;
+        for (int i = 0; i < 200 && !rejected; i++) {
+            try {
+                accepted.add(jobService.submit(request("Analyze canary " + i)).id());
+            } catch (RejectedExecutionException e) {
+                rejected = true;
+            }
+        }
+        assertTrue(rejected);
+        // 100 queued, plus up to 8 taken by the running slots by then
+        assertTrue(accepted.size() >= 100 && accepted.size() <= 108, "Accepted " + accepted.size());
+
+        analysis.complete(KubernetesAgentResponse.empty().withAnalysis("Done"));
+        accepted.forEach(id -> assertEquals(Status.SUCCEEDED, awaitDone(id).status()));
+    }
+}
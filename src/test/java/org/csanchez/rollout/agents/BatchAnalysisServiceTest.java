@@ -0,0 +1,159 @@
+package org.csanchez.rollout.agents;
+
+import io.quarkus.test.InjectMock;
+import io.quarkus.test.junit.QuarkusTest;
+import io.smallrye.mutiny.Uni;
+import jakarta.inject.Inject;
+import org.csanchez.rollout.k8sagent.k8s.NamespaceSnapshot;
+import org.csanchez.rollout.k8sagent.k8s.NamespaceSnapshots;
+import org.csanchez.rollout.k8sagent.model.KubernetesAgentRequest;
+import org.csanchez.rollout.k8sagent.model.KubernetesAgentResponse;
+import org.csanchez.rollout.k8sagent.service.AnalysisService;
+import org.csanchez.rollout.k8sagent.service.BatchAnalysisService;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for batch analyses (agent.batch.parallelism=4)
+ */
+@QuarkusTest
+class BatchAnalysisServiceTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    @Inject
+    BatchAnalysisService batchService;
+
+    @InjectMock
+    AnalysisService analysisService;
+
+    @InjectMock
+    NamespaceSnapshots snapshots;
+
+    private static KubernetesAgentRequest request(String memoryId, String prompt, String namespace) {
+        return new KubernetesAgentRequest("test-user", prompt, Map.of("namespace", namespace), memoryId);
+    }
+
+    private static KubernetesAgentResponse failed(KubernetesAgentRequest request, Throwable e) {
+        return KubernetesAgentResponse.empty().withAnalysis("Failed: " + e.getMessage()).withConfidence(0);
+    }
+
+    @Test
+    void testResponsesInRequestOrder() {
+        // Later requests complete first
+        AtomicInteger remaining = new AtomicInteger(3);
+        when(analysisService.analyze(any())).thenAnswer(invocation -> {
+            KubernetesAgentRequest request = invocation.getArgument(0);
+            return Uni.createFrom().item(KubernetesAgentResponse.empty().withAnalysis(request.prompt()))
+                .onItem().delayIt().by(Duration.ofMillis(100L * remaining.getAndDecrement()));
+        });
+
+        List<KubernetesAgentResponse> responses = batchService.analyze(List.of(
+                request("rollout-1", "first", "default"),
+                request("rollout-2", "second", "default"),
+                request("rollout-3", "third", "default")),
+            BatchAnalysisServiceTest::failed).await().atMost(TIMEOUT);
+
+        assertEquals(List.of("first", "second", "third"),
+            responses.stream().map(KubernetesAgentResponse::analysis).toList());
+    }
+
+    @Test
+    void testFailedAnalysisGetsFallbackResponse() {
+        when(analysisService.analyze(any())).thenAnswer(invocation -> {
+            KubernetesAgentRequest request = invocation.getArgument(0);
+            return request.prompt().equals("broken")
+                ? Uni.createFrom().failure(new IllegalStateException("LLM error"))
+                : Uni.createFrom().item(KubernetesAgentResponse.empty().withAnalysis("ok"));
+        });
+
+        List<KubernetesAgentResponse> responses = batchService.analyze(List.of(
+                request("rollout-1", "fine", "default"),
+                request("rollout-2", "broken", "default")),
+            BatchAnalysisServiceTest::failed).await().atMost(TIMEOUT);
+
+        assertEquals("ok", responses.get(0).analysis());
+        assertEquals("Failed: LLM error", responses.get(1).analysis());
+        assertEquals(0, responses.get(1).confidence());
+    }
+
+    @Test
+    void testNamespaceSnapshottedOncePerBatch() {
+        NamespaceSnapshot payments = mock(NamespaceSnapshot.class);
+        when(payments.namespace()).thenReturn("payments");
+        when(snapshots.take("payments")).thenReturn(payments);
+        when(analysisService.analyze(any())).thenReturn(Uni.createFrom().item(KubernetesAgentResponse.empty()));
+
+        batchService.analyze(List.of(
+                request("rollout-1", "canary 1", "payments"),
+                request("rollout-2", "canary 2", "payments"),
+                request("rollout-3", "canary 3", "payments")),
+            BatchAnalysisServiceTest::failed).await().atMost(TIMEOUT);
+
+        verify(snapshots, times(1)).take("payments");
+        ArgumentCaptor<KubernetesAgentRequest> analyzed = ArgumentCaptor.forClass(KubernetesAgentRequest.class);
+        var order = inOrder(snapshots, analysisService);
+        order.verify(snapshots, times(3)).attach(anyString(), eq(List.of(payments)));
+        order.verify(analysisService, times(3)).analyze(analyzed.capture());
+        order.verify(snapshots, times(3)).detach(anyString());
+        for (KubernetesAgentRequest request : analyzed.getAllValues()) {
+            verify(snapshots).attach(request.memoryId(), List.of(payments));
+            verify(snapshots).detach(request.memoryId());
+        }
+    }
+
+    @Test
+    void testRequestsOfOneUserGetTheirOwnMemoryIds() {
+        NamespaceSnapshot payments = mock(NamespaceSnapshot.class);
+        when(payments.namespace()).thenReturn("payments");
+        when(snapshots.take("payments")).thenReturn(payments);
+        when(analysisService.analyze(any())).thenReturn(Uni.createFrom().item(KubernetesAgentResponse.empty()));
+
+        // No memoryId: both fall back to the userId
+        List<KubernetesAgentRequest> requests = List.of(
+            new KubernetesAgentRequest("platform-deploy", "canary 1", Map.of("namespace", "payments")),
+            new KubernetesAgentRequest("platform-deploy", "canary 2", Map.of("namespace", "payments")));
+        batchService.analyze(requests, BatchAnalysisServiceTest::failed).await().atMost(TIMEOUT);
+        batchService.analyze(requests, BatchAnalysisServiceTest::failed).await().atMost(TIMEOUT);
+
+        ArgumentCaptor<KubernetesAgentRequest> analyzed = ArgumentCaptor.forClass(KubernetesAgentRequest.class);
+        verify(analysisService, times(4)).analyze(analyzed.capture());
+        List<String> memoryIds = analyzed.getAllValues().stream().map(KubernetesAgentRequest::memoryId).toList();
+        assertEquals(4, memoryIds.stream().distinct().count(), "Each analysis should have its own memory ID: " + memoryIds);
+        for (KubernetesAgentRequest request : analyzed.getAllValues()) {
+            assertTrue(request.memoryId().startsWith("platform-deploy/batch-"), request.memoryId());
+            assertEquals("platform-deploy", request.userId());
+            verify(snapshots).attach(request.memoryId(), List.of(payments));
+            verify(snapshots).detach(request.memoryId());
+        }
+        verify(snapshots, times(0)).attach(eq("platform-deploy"), anyCollection());
+    }
+
+    @Test
+    void testNoSnapshotNoAttach() {
+        // Informer cache covers the namespace, or it is too large
+        when(snapshots.take(anyString())).thenReturn(null);
+        when(analysisService.analyze(any())).thenReturn(Uni.createFrom().item(KubernetesAgentResponse.empty()));
+
+        batchService.analyze(List.of(request("rollout-1", "canary", "default")), BatchAnalysisServiceTest::failed)
+            .await().atMost(TIMEOUT);
+
+        verify(snapshots, times(0)).attach(anyString(), anyCollection());
+    }
+}
@@ -0,0 +1,101 @@
+package org.csanchez.rollout.agents;
+
+import org.csanchez.rollout.k8sagent.k8s.BoundedLogReader;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for reading log tails under a byte budget and a per-line cap
+ */
+class BoundedLogReaderTest {
+
+    private final List<String> lines = new ArrayList<>();
+
+    private BoundedLogReader.Result read(String log, long maxBytes, int maxLineBytes) throws IOException {
+        return BoundedLogReader.read(new ByteArrayInputStream(log.getBytes(StandardCharsets.UTF_8)), maxBytes, maxLineBytes, lines::add);
+    }
+
+    private static String numberedLines(int count) {
+        return IntStream.rangeClosed(1, count)
+            .mapToObj(i -> String.format("line-%03d", i))
+            .collect(Collectors.joining("\n", "", "\n"));
+    }
+
+    @Test
+    void testWholeLogWithinBudget() throws IOException {
+        BoundedLogReader.Result result = read("first\r\nsecond\nthird", 1024, 100);
+
+        assertEquals(List.of("first", "second", "third"), lines);
+        assertEquals(3, result.lines());
+        assertEquals(0, result.droppedLines());
+        assertFalse(result.budgetExhausted());
+        assertEquals(19, result.bytesRead());
+    }
+
+    @Test
+    void testBudgetKeepsTheNewestLines() throws IOException {
+        // 100 lines of 8 bytes, each counting 9 bytes with its terminator: the last 11 fit in 100
+        BoundedLogReader.Result result = read(numberedLines(100), 100, 100);
+
+        assertEquals(IntStream.rangeClosed(90, 100).mapToObj(i -> String.format("line-%03d", i)).toList(), lines);
+        assertEquals(11, result.lines());
+        assertEquals(89, result.droppedLines());
+        assertTrue(result.budgetExhausted());
+        assertEquals(900, result.bytesRead());
+    }
+
+    @Test
+    void testBudgetNotAMultipleOfTheLineSize() throws IOException {
+        BoundedLogReader.Result result = read(numberedLines(10), 25, 100);
+
+        assertEquals(List.of("line-009", "line-010"), lines);
+        assertEquals(8, result.droppedLines());
+    }
+
+    @Test
+    void testLongLinesAreCutAtTheLineCap() throws IOException {
+        String longLine = "x".repeat(5000);
+        BoundedLogReader.Result result = read("short\n" + longLine + "\nafter\n" + longLine, 1024, 10);
+
+        assertEquals(List.of("short", "xxxxxxxxxx ...(line truncated)", "after", "xxxxxxxxxx ...(line truncated)"), lines);
+        assertEquals(2, result.truncatedLines());
+        assertEquals(0, result.droppedLines());
+    }
+
+    @Test
+    void testCutLinesCountTheirCappedSizeAgainstTheBudget() throws IOException {
+        // Each line is cut to 10 bytes, so four of them (44 bytes with terminators) fit in 50
+        String log = IntStream.rangeClosed(1, 6).mapToObj(i -> i + "y".repeat(1000)).collect(Collectors.joining("\n", "", "\n"));
+        BoundedLogReader.Result result = read(log, 50, 10);
+
+        assertEquals(4, result.lines());
+        assertEquals(2, result.droppedLines());
+        assertTrue(lines.get(0).startsWith("3"));
+        assertTrue(lines.get(3).startsWith("6"));
+    }
+
+    @Test
+    void testNewestLineIsKeptEvenIfLargerThanTheBudget() throws IOException {
+        BoundedLogReader.Result result = read("old\n" + "z".repeat(40) + "\n", 16, 64);
+
+        assertEquals(List.of("z".repeat(40)), lines);
+        assertEquals(1, result.droppedLines());
+    }
+
+    @Test
+    void testEmptyStream() throws IOException {
+        BoundedLogReader.Result result = read("", 1024, 100);
+
+        assertTrue(lines.isEmpty());
+        assertEquals(new BoundedLogReader.Result(0, 0, 0, 0), result);
+    }
+}
@@ -0,0 +1,111 @@
+package org.csanchez.rollout.agents;
+
+import org.csanchez.rollout.k8sagent.utils.BoundedTtlCache;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the bounded, TTL-evicting store behind the tool call limiter
+ */
+class BoundedTtlCacheTest {
+
+    private final AtomicLong clock = new AtomicLong();
+
+    private BoundedTtlCache<String, String> cache(int maxSize) {
+        return new BoundedTtlCache<>(maxSize, Duration.ofMinutes(30), false, clock::get);
+    }
+
+    private void advance(Duration duration) {
+        clock.addAndGet(duration.toNanos());
+    }
+
+    @Test
+    void testComputeIfAbsentReturnsExistingValue() {
+        BoundedTtlCache<String, String> cache = cache(10);
+        assertEquals("a", cache.computeIfAbsent("session-1", k -> "a"));
+        assertEquals("a", cache.computeIfAbsent("session-1", k -> "b"));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void testLeastRecentlyUsedIsEvictedWhenFull() {
+        BoundedTtlCache<String, String> cache = cache(2);
+        cache.computeIfAbsent("session-1", k -> "1");
+        cache.computeIfAbsent("session-2", k -> "2");
+        cache.get("session-1");
+        cache.computeIfAbsent("session-3", k -> "3");
+
+        assertEquals(2, cache.size());
+        assertEquals("1", cache.get("session-1"));
+        assertNull(cache.get("session-2"));
+        assertEquals(1, cache.sizeEvictions());
+    }
+
+    @Test
+    void testIdleEntriesExpire() {
+        BoundedTtlCache<String, String> cache = cache(10);
+        cache.computeIfAbsent("session-1", k -> "1");
+        advance(Duration.ofMinutes(31));
+
+        assertNull(cache.get("session-1"));
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.expiredEvictions());
+    }
+
+    @Test
+    void testAccessExtendsLifetime() {
+        BoundedTtlCache<String, String> cache = cache(10);
+        cache.computeIfAbsent("session-1", k -> "1");
+        advance(Duration.ofMinutes(20));
+        cache.get("session-1");
+        advance(Duration.ofMinutes(20));
+
+        assertEquals("1", cache.get("session-1"));
+    }
+
+    @Test
+    void testSweepRemovesOnlyExpiredEntries() {
+        BoundedTtlCache<String, String> cache = cache(10);
+        cache.computeIfAbsent("old-1", k -> "1");
+        cache.computeIfAbsent("old-2", k -> "2");
+        advance(Duration.ofMinutes(20));
+        cache.computeIfAbsent("recent", k -> "3");
+        advance(Duration.ofMinutes(15));
+
+        assertEquals(2, cache.evictExpired());
+        assertEquals(1, cache.size());
+        assertEquals("3", cache.get("recent"));
+        assertEquals(2, cache.expiredEvictions());
+    }
+
+    @Test
+    void testExpireAfterWrite() {
+        BoundedTtlCache<String, String> cache = new BoundedTtlCache<>(10, Duration.ofSeconds(15), true, clock::get);
+        cache.put("getLogs", "v1");
+        advance(Duration.ofSeconds(10));
+        assertEquals("v1", cache.get("getLogs"));
+        advance(Duration.ofSeconds(10));
+
+        // Reading did not extend the lifetime
+        assertNull(cache.get("getLogs"));
+
+        cache.put("getLogs", "v2");
+        cache.put("getLogs", "v3");
+        assertEquals("v3", cache.get("getLogs"));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void testRemove() {
+        BoundedTtlCache<String, String> cache = cache(10);
+        cache.computeIfAbsent("session-1", k -> "1");
+
+        assertEquals("1", cache.remove("session-1"));
+        assertNull(cache.remove("session-1"));
+        assertEquals(0, cache.size());
+    }
+}
@@ -292,7 +292,7 @@ class ComprehensiveE2ETest {
         
         // Call the agent (this may take 30-60 seconds)
         long startTime = System.currentTimeMillis();
-        Response response = agentResource.analyze(request);
+        Response response = agentResource.analyze(request).await().indefinitely();
         long duration = System.currentTimeMillis() - startTime;
         
         System.out.println("✅ Agent responded in " + duration + "ms");
@@ -341,7 +341,7 @@ class ComprehensiveE2ETest {
             context
         );
         
-        Response response = agentResource.analyze(request);
+        Response response = agentResource.analyze(request).await().indefinitely();
         KubernetesAgentResponse agentResponse = (KubernetesAgentResponse) response.getEntity();
         
         // Verify analysis contains key information
@@ -419,7 +419,7 @@ class ComprehensiveE2ETest {
         
         System.out.println("📤 Requesting PR creation for repo: " + testRepo);
         
-        Response response = agentResource.analyze(request);
+        Response response = agentResource.analyze(request).await().indefinitely();
         KubernetesAgentResponse agentResponse = (KubernetesAgentResponse) response.getEntity();
         
         // Check if PR was created
@@ -464,7 +464,7 @@ class ComprehensiveE2ETest {
             memoryId
         );
         
-        Response response1 = agentResource.analyze(request1);
+        Response response1 = agentResource.analyze(request1).await().indefinitely();
         KubernetesAgentResponse agentResponse1 = (KubernetesAgentResponse) response1.getEntity();
         
         assertNotNull(agentResponse1);
@@ -481,7 +481,7 @@ class ComprehensiveE2ETest {
             memoryId
         );
         
-        Response response2 = agentResource.analyze(request2);
+        Response response2 = agentResource.analyze(request2).await().indefinitely();
         KubernetesAgentResponse agentResponse2 = (KubernetesAgentResponse) response2.getEntity();
         
         assertNotNull(agentResponse2);
@@ -0,0 +1,95 @@
+package org.csanchez.rollout.agents;
+
+import io.quarkus.test.junit.QuarkusTest;
+import org.csanchez.rollout.k8sagent.k8s.ConcurrentFetches;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the concurrent fan-out used by inspectResources, snapshotPod and compareCohorts
+ */
+@QuarkusTest
+class ConcurrentFetchesTest {
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static long deadlineIn(Duration timeout) {
+        return System.nanoTime() + timeout.toNanos();
+    }
+
+    @Test
+    void testSectionsRunConcurrently() {
+        Map<String, Callable<Map<String, Object>>> fetches = new LinkedHashMap<>();
+        for (String section : new String[] {"deployments", "pods", "services", "configMaps"}) {
+            fetches.put(section, () -> {
+                Thread.sleep(300);
+                return Map.of(section, "ok");
+            });
+        }
+
+        long start = System.nanoTime();
+        Map<String, Object> result = ConcurrentFetches.fetchAll(executor, fetches, deadlineIn(Duration.ofSeconds(5)));
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals(Map.of("deployments", "ok", "pods", "ok", "services", "ok", "configMaps", "ok"), result);
+        assertTrue(elapsedMillis < 1000, "Sections should not run one after another, took " + elapsedMillis + " ms");
+    }
+
+    @Test
+    void testTimedOutSectionIsCancelledAndReportedWithPartialResults() throws Exception {
+        CountDownLatch interrupted = new CountDownLatch(1);
+        Map<String, Callable<Map<String, Object>>> fetches = new LinkedHashMap<>();
+        fetches.put("deployments", () -> Map.of("deployments", "ok"));
+        fetches.put("pods", () -> {
+            try {
+                Thread.sleep(30_000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                throw e;
+            }
+            return Map.of("pods", "late");
+        });
+        fetches.put("services", () -> Map.of("services", "ok"));
+
+        long start = System.nanoTime();
+        Map<String, Object> result = ConcurrentFetches.fetchAll(executor, fetches, deadlineIn(Duration.ofMillis(300)));
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals("ok", result.get("deployments"));
+        assertEquals("ok", result.get("services"));
+        assertFalse(result.containsKey("pods"));
+        assertEquals("Timed out before the tool deadline", result.get("podsError"));
+        assertTrue(elapsedMillis < 5000, "Should return at the deadline, took " + elapsedMillis + " ms");
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS), "The timed out fetch should be interrupted");
+    }
+
+    @Test
+    void testFailedSectionIsReportedWithPartialResults() {
+        Map<String, Callable<Map<String, Object>>> fetches = new LinkedHashMap<>();
+        fetches.put("deployments", () -> {
+            throw new IllegalStateException("forbidden");
+        });
+        fetches.put("pods", () -> Map.of("pods", "ok"));
+
+        Map<String, Object> result = ConcurrentFetches.fetchAll(executor, fetches, deadlineIn(Duration.ofSeconds(5)));
+
+        assertEquals("ok", result.get("pods"));
+        assertEquals("forbidden", result.get("deploymentsError"));
+    }
+}
@@ -0,0 +1,119 @@
+package org.csanchez.rollout.agents;
+
+import org.csanchez.rollout.k8sagent.k8s.ErrorSignatureIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Indexes 1000 log lines with {@link ErrorSignatureIndex} and, for comparison, with
+ * regular expressions for the same markers, for a log without errors, an access log
+ * with 5xx responses and an application log with repeated stack traces.
+ * Run with -prof gc to check allocation: the clean log should only allocate the index
+ * itself, and the other logs one signature text per occurrence.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ErrorSignatureIndexBenchmark {
+
+    private static final int LINES = 1000;
+
+    private static final Pattern EXCEPTION = Pattern.compile("([A-Za-z_$][\\w$]*(?:\\.[A-Za-z_$][\\w$]*)*(?:Exception|Error))\\b");
+    private static final Pattern FRAME = Pattern.compile("^\\s+at\\s+([^(]+)");
+    private static final Pattern HTTP_5XX = Pattern.compile("(?i)(?:http/[\\d.]+\"?|http|status(?: code)?)\\W{0,4}(5\\d\\d)\\b");
+    private static final Pattern OOM = Pattern.compile("OutOfMemoryError|OOMKilled|[Oo]ut of memory|oom-kill|OOM killer");
+
+    @Param({ "clean", "access", "stacktraces" })
+    public String logType;
+
+    private List<String> lines;
+
+    @Setup
+    public void setup() {
+        lines = new ArrayList<>(LINES);
+        for (int i = 0; lines.size() < LINES; i++) {
+            switch (logType) {
+                case "clean" -> lines.add("2026-01-01T10:00:" + (i % 60) + "Z INFO OrderService placed order " + i
+                    + " for customer c-" + (i * 7) + " in " + (i % 40) + "ms");
+                case "access" -> lines.add("10.0.0." + (i % 250) + " - - [01/Jan/2026:10:00:00 +0000] \"GET /api/orders/" + i
+                    + " HTTP/1.1\" " + (i % 20 == 0 ? 503 : 200) + " " + (100 + i) + " \"-\" \"curl/8.0\"");
+                default -> {
+                    lines.add("2026-01-01T10:00:00Z ERROR Request " + i + " failed");
+                    lines.add("java.lang.IllegalStateException: pool closed for request " + i);
+                    lines.add("\tat com.acme.db.Pool.borrow(Pool.java:88)");
+                    lines.add("\tat com.acme.orders.OrderRepository.save(OrderRepository.java:31)");
+                    lines.add("\tat com.acme.orders.OrderService.place(OrderService.java:17)");
+                    lines.add("\tat com.acme.orders.OrderResource.post(OrderResource.java:12)");
+                    lines.add("\t... 42 more");
+                    for (int j = 0; j < 13; j++) {
+                        lines.add("2026-01-01T10:00:01Z INFO handled request " + (i * 13 + j));
+                    }
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public ErrorSignatureIndex index() {
+        ErrorSignatureIndex index = new ErrorSignatureIndex(50);
+        for (String line : lines) {
+            index.accept(line);
+        }
+        index.keys();
+        return index;
+    }
+
+    @Benchmark
+    public int regex() {
+        int found = 0;
+        for (String line : lines) {
+            if (OOM.matcher(line).find()) {
+                found++;
+                continue;
+            }
+            Matcher exception = EXCEPTION.matcher(line);
+            if (exception.find()) {
+                found += exception.group(1).length();
+                continue;
+            }
+            Matcher frame = FRAME.matcher(line);
+            if (frame.find()) {
+                found += frame.group(1).length();
+                continue;
+            }
+            Matcher status = HTTP_5XX.matcher(line);
+            if (status.find()) {
+                found += status.group(1).length();
+            }
+        }
+        return found;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(ErrorSignatureIndexBenchmark.class.getSimpleName())
+            .addProfiler("gc")
+            .build()).run();
+    }
+}
@@ -0,0 +1,153 @@
+package org.csanchez.rollout.agents;
+
+import org.csanchez.rollout.k8sagent.k8s.ErrorSignatureIndex;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the error signature index used by getErrorSignatures and compareCohorts
+ */
+class ErrorSignatureIndexTest {
+
+    private static ErrorSignatureIndex index(String... lines) {
+        ErrorSignatureIndex index = new ErrorSignatureIndex(50);
+        for (String line : lines) {
+            index.accept(line);
+        }
+        return index;
+    }
+
+    @Test
+    void testRepeatedStackTracesCollapseIntoOneSignature() {
+        String[] trace = {
+            "2024-01-01 10:00:00 ERROR Request failed",
+            "java.lang.NullPointerException: Cannot invoke \"String.length()\" because \"name\" is null",
+            "\tat com.acme.orders.OrderService.validate(OrderService.java:42)",
+            "\tat com.acme.orders.OrderService.place(OrderService.java:17)",
+            "\tat com.acme.orders.OrderResource.post(OrderResource.java:30)",
+            "\tat io.quarkus.runtime.Handler.handle(Handler.java:99)",
+            "\t... 12 more"
+        };
+        ErrorSignatureIndex index = new ErrorSignatureIndex(50);
+        for (int i = 0; i < 100; i++) {
+            for (String line : trace) {
+                index.accept(line);
+            }
+        }
+
+        List<Map<String, Object>> signatures = index.toList();
+        assertEquals(1, signatures.size());
+        assertEquals("EXCEPTION", signatures.get(0).get("kind"));
+        assertEquals(100, signatures.get(0).get("count"));
+        assertEquals(2, signatures.get(0).get("firstLine"));
+        assertEquals("java.lang.NullPointerException"
+            + " < com.acme.orders.OrderService.validate"
+            + " < com.acme.orders.OrderService.place"
+            + " < com.acme.orders.OrderResource.post", signatures.get(0).get("signature"));
+    }
+
+    @Test
+    void testSameExceptionFromDifferentFramesIsDistinct() {
+        ErrorSignatureIndex index = index(
+            "java.io.IOException: Connection reset",
+            "\tat com.acme.Client.read(Client.java:10)",
+            "java.io.IOException: Broken pipe",
+            "\tat com.acme.Client.write(Client.java:20)",
+            "java.io.IOException: Connection reset by peer",
+            "\tat com.acme.Client.read(Client.java:11)"
+        );
+
+        List<Map<String, Object>> signatures = index.toList();
+        assertEquals(2, signatures.size());
+        assertEquals("java.io.IOException < com.acme.Client.read", signatures.get(0).get("signature"));
+        assertEquals(2, signatures.get(0).get("count"));
+    }
+
+    @Test
+    void testCausedByIsIndexedSeparately() {
+        ErrorSignatureIndex index = index(
+            "jakarta.ws.rs.ProcessingException: Request failed",
+            "\tat com.acme.Api.call(Api.java:5)",
+            "Caused by: java.net.ConnectException: Connection refused",
+            "\tat java.base/sun.nio.ch.Net.connect(Net.java:579)"
+        );
+
+        assertEquals(2, index.toList().size());
+        assertEquals(1, index.count("EXCEPTION: java.net.ConnectException < java.base/sun.nio.ch.Net.connect"));
+    }
+
+    @Test
+    void testBareErrorWordsAreNotExceptions() {
+        ErrorSignatureIndex index = index(
+            "Error: Cannot connect to database at localhost:5432",
+            "ERROR something went wrong",
+            "No Exception was thrown",
+            "ErrorHandler registered"
+        );
+
+        assertTrue(index.toList().isEmpty());
+    }
+
+    @Test
+    void testHttp5xxStatuses() {
+        ErrorSignatureIndex index = index(
+            "10.0.0.1 - - [01/Jan/2024:10:00:00 +0000] \"GET /api/orders HTTP/1.1\" 503 512",
+            "10.0.0.2 - - [01/Jan/2024:10:00:01 +0000] \"GET /api/orders HTTP/1.1\" 503 87",
+            "10.0.0.3 - - [01/Jan/2024:10:00:02 +0000] \"GET /api/orders HTTP/1.1\" 200 512",
+            "upstream returned status=500 after 12ms",
+            "request failed with status code: 502",
+            "GET /health status 200 in 512ms"
+        );
+
+        assertEquals(2, index.count("HTTP_5XX: HTTP 503"));
+        assertEquals(1, index.count("HTTP_5XX: HTTP 500"));
+        assertEquals(1, index.count("HTTP_5XX: HTTP 502"));
+        assertEquals(3, index.toList().size());
+    }
+
+    @Test
+    void testOutOfMemoryMarkers() {
+        ErrorSignatureIndex index = index(
+            "Exception in thread \"main\" java.lang.OutOfMemoryError: Java heap space",
+            "\tat com.acme.Cache.put(Cache.java:10)",
+            "Memory cgroup out of memory: Killed process 1234 (java)"
+        );
+
+        assertEquals(1, index.count("OOM: OutOfMemoryError:Java heap space"));
+        assertEquals(1, index.count("OOM: out of memory"));
+        assertEquals(2, index.toList().size());
+    }
+
+    @Test
+    void testAbsentFromBaseline() {
+        ErrorSignatureIndex stable = index(
+            "\"GET /api HTTP/1.1\" 500 10"
+        );
+        ErrorSignatureIndex canary = index(
+            "\"GET /api HTTP/1.1\" 500 10",
+            "java.lang.IllegalStateException: not initialized",
+            "\tat com.acme.Feature.run(Feature.java:3)"
+        );
+
+        List<Map<String, Object>> newSignatures = canary.absentFrom(stable);
+        assertEquals(1, newSignatures.size());
+        assertEquals("java.lang.IllegalStateException < com.acme.Feature.run", newSignatures.get(0).get("signature"));
+    }
+
+    @Test
+    void testMergeAndBoundedSignatures() {
+        ErrorSignatureIndex merged = new ErrorSignatureIndex(2);
+        merged.merge(index("status=500", "status=501"));
+        merged.merge(index("status=500", "status=502"));
+
+        assertEquals(2, merged.count("HTTP_5XX: HTTP 500"));
+        assertEquals(1, merged.count("HTTP_5XX: HTTP 501"));
+        assertEquals(0, merged.count("HTTP_5XX: HTTP 502"));
+        assertEquals(1, merged.omitted());
+        assertEquals(4, merged.lines());
+    }
+}
@@ -0,0 +1,113 @@
+package org.csanchez.rollout.agents;
+
+import io.fabric8.kubernetes.api.model.EventBuilder;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodBuilder;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.QuarkusTestProfile;
+import io.quarkus.test.junit.TestProfile;
+import io.quarkus.test.kubernetes.client.WithKubernetesTestServer;
+import jakarta.inject.Inject;
+import org.csanchez.rollout.k8sagent.k8s.K8sInformerCache;
+import org.csanchez.rollout.k8sagent.k8s.K8sTools;
+import org.csanchez.rollout.k8sagent.k8s.NamespaceView;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the informer cache against a mock API server: reads of the watched
+ * namespace are served from the informers, other namespaces fall back to the API server
+ */
+@QuarkusTest
+@WithKubernetesTestServer
+@TestProfile(K8sInformerCacheTest.CacheProfile.class)
+class K8sInformerCacheTest {
+
+    private static final String CACHED = "cached";
+    private static final String UNCACHED = "uncached";
+
+    public static class CacheProfile implements QuarkusTestProfile {
+        @Override
+        public Map<String, String> getConfigOverrides() {
+            return Map.of(
+                "k8s.cache.enabled", "true",
+                "k8s.cache.namespaces", CACHED);
+        }
+    }
+
+    @Inject
+    K8sInformerCache informerCache;
+
+    @Inject
+    K8sTools k8sTools;
+
+    @Inject
+    KubernetesClient k8sClient;
+
+    static Pod pod(String namespace, String name, Map<String, String> labels) {
+        return new PodBuilder()
+            .withNewMetadata().withNamespace(namespace).withName(name).withLabels(labels).endMetadata()
+            .withNewSpec().addNewContainer().withName("app").withImage("app:1").endContainer().endSpec()
+            .withNewStatus().withPhase("Running").endStatus()
+            .build();
+    }
+
+    static void awaitTrue(BooleanSupplier condition, String message) {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, message);
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail(message);
+            }
+        }
+    }
+
+    @Test
+    void testWatchedNamespaceIsServedFromInformers() {
+        awaitTrue(informerCache::isReady, "Informers should sync");
+        assertTrue(informerCache.covers(CACHED));
+        assertTrue(informerCache.unsyncedScopes().isEmpty());
+
+        k8sClient.pods().inNamespace(CACHED).resource(pod(CACHED, "canary-1", Map.of("role", "canary", "app", "demo"))).create();
+        k8sClient.pods().inNamespace(CACHED).resource(pod(CACHED, "stable-1", Map.of("role", "stable", "app", "demo"))).create();
+        k8sClient.v1().events().inNamespace(CACHED).resource(new EventBuilder()
+            .withNewMetadata().withNamespace(CACHED).withName("canary-1.oom").endMetadata()
+            .withNewInvolvedObject().withKind("Pod").withName("canary-1").withNamespace(CACHED).endInvolvedObject()
+            .withReason("OOMKilled")
+            .build()).create();
+
+        NamespaceView view = informerCache.view(CACHED);
+        assertNotNull(view);
+        awaitTrue(() -> view.getPod("canary-1") != null && view.listEvents("canary-1").size() == 1,
+            "Informers should see the new pod and event");
+
+        List<Pod> canaries = view.listPods(Map.of("role", "canary", "app", "demo"));
+        assertEquals(List.of("canary-1"), canaries.stream().map(p -> p.getMetadata().getName()).toList());
+        assertEquals(2, view.listPods(Map.of()).size());
+        assertTrue(view.listEvents("stable-1").isEmpty());
+        assertTrue(informerCache.generation(CACHED) > 0);
+    }
+
+    @Test
+    void testOtherNamespacesFallBackToApiServer() {
+        assertFalse(informerCache.covers(UNCACHED));
+        assertNull(informerCache.view(UNCACHED));
+        assertEquals(-1, informerCache.generation(UNCACHED));
+
+        k8sClient.pods().inNamespace(UNCACHED).resource(pod(UNCACHED, "live-1", Map.of("app", "demo"))).create();
+        Map<String, Object> debug = k8sTools.debugPod("test-" + UUID.randomUUID(), UNCACHED, "live-1");
+        assertEquals("live-1", debug.get("podName"), String.valueOf(debug));
+        assertEquals("Running", debug.get("phase"));
+    }
+}
@@ -0,0 +1,297 @@
+package org.csanchez.rollout.agents;
+
+import io.fabric8.kubernetes.api.model.EventBuilder;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodBuilder;
+import io.fabric8.kubernetes.api.model.Quantity;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.kubernetes.client.WithKubernetesTestServer;
+import jakarta.inject.Inject;
+import org.csanchez.rollout.k8sagent.k8s.K8sTools;
+import org.csanchez.rollout.k8sagent.k8s.NamespaceSnapshot;
+import org.csanchez.rollout.k8sagent.k8s.NamespaceSnapshots;
+import org.csanchez.rollout.k8sagent.k8s.ToolResultCache;
+import org.csanchez.rollout.k8sagent.utils.ToolCallFingerprint;
+import org.csanchez.rollout.k8sagent.utils.ToolCallLimiter;
+import org.junit.jupiter.api.Test;
+
+import java.text.MessageFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the K8s tools against a mock API server (informer cache disabled)
+ */
+@QuarkusTest
+@WithKubernetesTestServer
+class K8sToolsTest {
+
+    @Inject
+    K8sTools k8sTools;
+
+    @Inject
+    KubernetesClient k8sClient;
+
+    @Inject
+    NamespaceSnapshots snapshots;
+
+    @Inject
+    ToolResultCache resultCache;
+
+    @Inject
+    ToolCallLimiter limiter;
+
+    /**
+     * A fresh session, so tool call limits and cached results of other tests do not apply
+     */
+    private static String newSession() {
+        return "test-" + UUID.randomUUID();
+    }
+
+    private void createEvent(String namespace, String podName, String reason, String lastTimestamp) {
+        k8sClient.v1().events().inNamespace(namespace).resource(new EventBuilder()
+            .withNewMetadata().withNamespace(namespace).withName(podName + "." + reason).endMetadata()
+            .withNewInvolvedObject().withKind("Pod").withName(podName).withNamespace(namespace).endInvolvedObject()
+            .withReason(reason)
+            .withType("Warning")
+            .withLastTimestamp(lastTimestamp)
+            .build()).create();
+    }
+
+    /**
+     * A running pod with an application container and a sidecar, restarted once after an OOM kill
+     */
+    private Pod createRestartedPod(String namespace, String podName) {
+        return k8sClient.pods().inNamespace(namespace).resource(new PodBuilder()
+            .withNewMetadata().withNamespace(namespace).withName(podName).addToLabels("role", "canary").endMetadata()
+            .withNewSpec()
+                .addNewContainer().withName("istio-proxy").withImage("proxy").endContainer()
+                .addNewContainer().withName("app").withImage("app")
+                    .withNewResources().addToRequests("memory", new Quantity("128Mi")).endResources()
+                .endContainer()
+            .endSpec()
+            .withNewStatus()
+                .withPhase("Running")
+                .addNewCondition().withType("Ready").withStatus("True").endCondition()
+                .addNewContainerStatus().withName("app").withReady(true).withRestartCount(1).withImage("app")
+                    .withNewState().withNewRunning().withStartedAt("2026-01-01T10:00:06Z").endRunning().endState()
+                    .withNewLastState().withNewTerminated().withReason("OOMKilled").withExitCode(137).endTerminated().endLastState()
+                .endContainerStatus()
+            .endStatus()
+            .build()).create();
+    }
+
+    private void createCohortPod(String namespace, String podName, String role, boolean ready, int restarts) {
+        k8sClient.pods().inNamespace(namespace).resource(new PodBuilder()
+            .withNewMetadata().withNamespace(namespace).withName(podName).addToLabels("role", role).endMetadata()
+            .withNewSpec().addNewContainer().withName("app").withImage("app").endContainer().endSpec()
+            .withNewStatus()
+                .withPhase("Running")
+                .addNewContainerStatus().withName("app").withReady(ready).withRestartCount(restarts).withImage("app")
+                    .withNewState().withNewRunning().endRunning().endState()
+                .endContainerStatus()
+            .endStatus()
+            .build()).create();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String> reasons(Map<String, Object> result) {
+        assertNull(result.get("error"), String.valueOf(result.get("error")));
+        return ((List<Map<String, Object>>) result.get("events")).stream()
+            .map(event -> (String) event.get("reason"))
+            .toList();
+    }
+
+    @Test
+    void testGetEventsReturnsNewestFirstUpToLimit() {
+        String namespace = "events-" + UUID.randomUUID().toString().substring(0, 8);
+        // Created out of order, so the result order can only come from the timestamps
+        createEvent(namespace, "canary-1", "Scheduled", "2026-01-01T10:00:01Z");
+        createEvent(namespace, "canary-1", "BackOff", "2026-01-01T10:00:05Z");
+        createEvent(namespace, "stable-1", "Pulled", "2026-01-01T10:00:02Z");
+        createEvent(namespace, "canary-1", "OOMKilled", "2026-01-01T10:00:04Z");
+        createEvent(namespace, "stable-1", "Started", "2026-01-01T10:00:03Z");
+
+        assertEquals(List.of("BackOff", "OOMKilled", "Started"),
+            reasons(k8sTools.getEvents(newSession(), namespace, null, 3)));
+        assertEquals(List.of("BackOff", "OOMKilled", "Started", "Pulled", "Scheduled"),
+            reasons(k8sTools.getEvents(newSession(), namespace, null, 50)));
+    }
+
+    @Test
+    void testGetEventsForPodFromNamespaceView() {
+        String namespace = "events-" + UUID.randomUUID().toString().substring(0, 8);
+        createEvent(namespace, "canary-1", "Scheduled", "2026-01-01T10:00:01Z");
+        createEvent(namespace, "canary-1", "BackOff", "2026-01-01T10:00:05Z");
+        createEvent(namespace, "stable-1", "Pulled", "2026-01-01T10:00:02Z");
+        createEvent(namespace, "canary-1", "OOMKilled", "2026-01-01T10:00:04Z");
+
+        // Served from a batch snapshot: filtered by involved object locally
+        NamespaceSnapshot snapshot = snapshots.take(namespace);
+        assertNotNull(snapshot);
+        String session = newSession();
+        snapshots.attach(session, List.of(snapshot));
+        try {
+            assertEquals(List.of("BackOff", "OOMKilled"), reasons(k8sTools.getEvents(session, namespace, "canary-1", 2)));
+        } finally {
+            snapshots.detach(session);
+        }
+    }
+
+    @Test
+    void testSnapshotReadsAreNotSharedThroughTheResultCache() {
+        String namespace = "events-" + UUID.randomUUID().toString().substring(0, 8);
+        createEvent(namespace, "canary-1", "Scheduled", "2026-01-01T10:00:01Z");
+
+        NamespaceSnapshot snapshot = snapshots.take(namespace);
+        assertNotNull(snapshot);
+        String session = newSession();
+        snapshots.attach(session, List.of(snapshot));
+        try {
+            assertEquals(List.of("Scheduled"), reasons(k8sTools.getEvents(session, namespace, "canary-1", 10)));
+        } finally {
+            snapshots.detach(session);
+        }
+
+        // A live session making the same call reads the namespace as it is now
+        createEvent(namespace, "canary-1", "BackOff", "2026-01-01T10:00:05Z");
+        assertEquals(List.of("BackOff", "Scheduled"), reasons(k8sTools.getEvents(newSession(), namespace, "canary-1", 10)));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testSnapshotPodGathersAllSectionsInOneCall() {
+        String namespace = "snapshot-" + UUID.randomUUID().toString().substring(0, 8);
+        createRestartedPod(namespace, "canary-1");
+        createEvent(namespace, "canary-1", "OOMKilled", "2026-01-01T10:00:04Z");
+        createEvent(namespace, "canary-1", "BackOff", "2026-01-01T10:00:05Z");
+        createEvent(namespace, "stable-1", "Pulled", "2026-01-01T10:00:02Z");
+
+        NamespaceSnapshot snapshot = snapshots.take(namespace);
+        assertNotNull(snapshot);
+        String session = newSession();
+        snapshots.attach(session, List.of(snapshot));
+        try {
+            Map<String, Object> result = k8sTools.snapshotPod(session, namespace, "canary-1", null);
+
+            assertNull(result.get("error"), String.valueOf(result.get("error")));
+            // The sidecar is skipped when picking the container
+            assertEquals("app", result.get("container"));
+            Map<String, Object> status = (Map<String, Object>) result.get("status");
+            assertEquals("canary-1", status.get("podName"));
+            assertEquals("Running", status.get("phase"));
+            assertEquals(List.of("BackOff", "OOMKilled"), reasons(result));
+            // Each section is reported either with its content or with its own error
+            assertTrue(result.containsKey("logs") || result.containsKey("logsError"), result.keySet().toString());
+            assertTrue(result.containsKey("previousLogs") || result.containsKey("previousLogsError"),
+                "A restarted container should also have its previous logs read: " + result.keySet());
+            // No metrics-server on the mock API server: falls back to the pod spec
+            Map<String, Object> metrics = (Map<String, Object>) result.get("metrics");
+            assertNotNull(metrics, result.keySet().toString());
+            assertEquals("canary-1", metrics.get("podName"));
+            assertNotNull(metrics.get("containers"));
+        } finally {
+            snapshots.detach(session);
+        }
+    }
+
+    @Test
+    void testSnapshotPodReportsMissingPod() {
+        String namespace = "snapshot-" + UUID.randomUUID().toString().substring(0, 8);
+
+        Map<String, Object> result = k8sTools.snapshotPod(newSession(), namespace, "missing", null);
+
+        assertEquals(MessageFormat.format("Pod not found: {0}/missing", namespace), result.get("error"));
+        assertEquals(Map.of("error", "namespace and podName are required and cannot be empty"),
+            k8sTools.snapshotPod(newSession(), namespace, "", null));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testCompareCohortsDiffsCanaryAgainstStable() {
+        String namespace = "cohorts-" + UUID.randomUUID().toString().substring(0, 8);
+        createCohortPod(namespace, "stable-1", "stable", true, 0);
+        createCohortPod(namespace, "stable-2", "stable", true, 0);
+        createCohortPod(namespace, "canary-1", "canary", true, 1);
+        createCohortPod(namespace, "canary-2", "canary", false, 3);
+
+        NamespaceSnapshot snapshot = snapshots.take(namespace);
+        assertNotNull(snapshot);
+        String session = newSession();
+        snapshots.attach(session, List.of(snapshot));
+        try {
+            Map<String, Object> result = k8sTools.compareCohorts(session, namespace, null, null, 2);
+
+            assertNull(result.get("error"), String.valueOf(result.get("error")));
+            Map<String, Object> stable = (Map<String, Object>) result.get("stable");
+            Map<String, Object> canary = (Map<String, Object>) result.get("canary");
+            assertEquals(2, stable.get("pods"));
+            assertEquals(2, stable.get("readyPods"));
+            assertEquals(0, stable.get("restarts"));
+            assertEquals(2, canary.get("pods"));
+            assertEquals(1, canary.get("readyPods"));
+            assertEquals(4, canary.get("restarts"));
+
+            Map<String, Object> diff = (Map<String, Object>) result.get("diff");
+            assertEquals(2.0, diff.get("restartsPerPod"));
+            assertEquals(-0.5, diff.get("readyRatio"));
+        } finally {
+            snapshots.detach(session);
+        }
+    }
+
+    @Test
+    void testUnsupportedLabelSelectorsAreRejected() {
+        String namespace = "cohorts-" + UUID.randomUUID().toString().substring(0, 8);
+        createCohortPod(namespace, "stable-1", "stable", true, 0);
+
+        // A label map cannot express these, and an empty one would select every pod
+        for (String selector : List.of("role in (canary,preview)", "role!=stable", "!role", "role")) {
+            Map<String, Object> compared = k8sTools.compareCohorts(newSession(), namespace, "role=stable", selector, 1);
+            assertTrue(String.valueOf(compared.get("error")).startsWith("Unsupported label selector"), selector + ": " + compared);
+            assertFalse(compared.containsKey("canary"));
+
+            Map<String, Object> inspected = k8sTools.inspectResources(newSession(), namespace, "pods", null, selector);
+            assertTrue(String.valueOf(inspected.get("error")).startsWith("Unsupported label selector"), selector + ": " + inspected);
+            assertFalse(inspected.containsKey("pods"));
+        }
+    }
+
+    @Test
+    void testCacheHitsCountAgainstTheSessionLimit() {
+        String namespace = "cached-" + UUID.randomUUID().toString().substring(0, 8);
+        int max = limiter.getMaxToolCalls();
+        // Results another session already fetched, one per pod
+        for (int i = 0; i <= max; i++) {
+            String podName = "pod-" + i;
+            resultCache.put(ToolCallFingerprint.of("debugPod", namespace, podName),
+                resultCache.generation(namespace), Map.of("podName", podName, "phase", "Running"));
+        }
+
+        String session = newSession();
+        for (int i = 0; i < max; i++) {
+            assertEquals(Map.of("podName", "pod-" + i, "phase", "Running"), k8sTools.debugPod(session, namespace, "pod-" + i));
+        }
+        assertEquals(max, limiter.getCallCount(session));
+
+        Map<String, Object> rejected = k8sTools.debugPod(session, namespace, "pod-" + max);
+        assertTrue(String.valueOf(rejected.get("error")).startsWith("Tool call limit of " + max + " reached"), rejected.toString());
+    }
+
+    @Test
+    void testRepeatInTheSameSessionIsServedTheEarlierResult() {
+        String namespace = "cached-" + UUID.randomUUID().toString().substring(0, 8);
+        resultCache.put(ToolCallFingerprint.of("debugPod", namespace, "pod-0"),
+            resultCache.generation(namespace), Map.of("podName", "pod-0", "phase", "Running"));
+
+        String session = newSession();
+        assertEquals("Running", k8sTools.debugPod(session, namespace, "pod-0").get("phase"));
+        Map<String, Object> repeated = k8sTools.debugPod(session, namespace, "pod-0");
+        assertEquals(Map.of("podName", "pod-0", "phase", "Running"), repeated);
+        assertEquals(1, limiter.getCallCount(session), "A repeat should not take another slot");
+    }
+}
@@ -0,0 +1,47 @@
+package org.csanchez.rollout.agents;
+
+import org.csanchez.rollout.k8sagent.utils.LatencyWindow;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the latency window the hedging delay is computed from
+ */
+class LatencyWindowTest {
+
+    @Test
+    void testEmptyWindowHasNoPercentile() {
+        LatencyWindow window = new LatencyWindow(10);
+        assertEquals(0, window.size());
+        assertNull(window.percentile(0.95));
+    }
+
+    @Test
+    void testNearestRankPercentile() {
+        LatencyWindow window = new LatencyWindow(100);
+        // Recorded out of order
+        for (int i = 100; i >= 1; i--) {
+            window.record(Duration.ofSeconds(i));
+        }
+        assertEquals(Duration.ofSeconds(95), window.percentile(0.95));
+        assertEquals(Duration.ofSeconds(50), window.percentile(0.5));
+        assertEquals(Duration.ofSeconds(100), window.percentile(1.0));
+        assertEquals(Duration.ofSeconds(1), window.percentile(0.0));
+    }
+
+    @Test
+    void testOnlyMostRecentLatenciesAreKept() {
+        LatencyWindow window = new LatencyWindow(3);
+        window.record(Duration.ofSeconds(60));
+        window.record(Duration.ofSeconds(1));
+        window.record(Duration.ofSeconds(2));
+        window.record(Duration.ofSeconds(3));
+
+        assertEquals(3, window.size());
+        // The 60s outlier was overwritten
+        assertEquals(Duration.ofSeconds(3), window.percentile(1.0));
+    }
+}
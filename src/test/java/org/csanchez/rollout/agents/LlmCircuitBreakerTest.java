@@ -0,0 +1,50 @@
+package org.csanchez.rollout.agents;
+
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.csanchez.rollout.k8sagent.service.LlmCircuitBreaker;
+import org.csanchez.rollout.k8sagent.service.LlmCircuitBreaker.State;
+import org.csanchez.rollout.k8sagent.service.LlmUnavailableException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the LLM circuit breaker (open-duration is PT1S in the test profile)
+ */
+@QuarkusTest
+class LlmCircuitBreakerTest {
+
+    @Inject
+    LlmCircuitBreaker breaker;
+
+    @Test
+    void testOpensOnFailuresAndRecoversThroughHalfOpen() throws Exception {
+        assertEquals(State.CLOSED, breaker.getState());
+
+        // 429s are left to the rate-limit coordinator
+        for (int i = 0; i < 20; i++) {
+            breaker.acquire();
+            breaker.record(new RuntimeException("429 Too Many Requests"));
+        }
+        assertEquals(State.CLOSED, breaker.getState());
+
+        while (breaker.getState() == State.CLOSED) {
+            breaker.acquire();
+            breaker.record(new RuntimeException("503 Service Unavailable"));
+        }
+        assertEquals(State.OPEN, breaker.getState());
+        LlmUnavailableException e = assertThrows(LlmUnavailableException.class, breaker::acquire);
+        assertTrue(e.getRetryAfter().toMillis() > 0);
+
+        // After the open duration, probes are let through and close the circuit
+        Thread.sleep(1100);
+        breaker.acquire();
+        assertEquals(State.HALF_OPEN, breaker.getState());
+        breaker.acquire();
+        assertThrows(LlmUnavailableException.class, breaker::acquire);
+        breaker.record(null);
+        breaker.record(null);
+        assertEquals(State.CLOSED, breaker.getState());
+    }
+}
@@ -0,0 +1,116 @@
+package org.csanchez.rollout.agents;
+
+import org.csanchez.rollout.k8sagent.k8s.LogCompactor;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for log compaction into templates
+ */
+class LogCompactorTest {
+
+    private static LogCompactor compact(int maxEntries, List<String> lines) {
+        LogCompactor compactor = new LogCompactor(maxEntries);
+        lines.forEach(compactor);
+        return compactor;
+    }
+
+    @Test
+    void testTemplateMasksVariableTokens() {
+        assertEquals("<TS> GET /orders/<N> took <N>ms request=<UUID> span=<HEX>",
+            LogCompactor.template("2026-01-01T10:00:00.123Z GET /orders/42 took 3.5ms request=123e4567-e89b-12d3-a456-426614174000 span=0x1f"));
+    }
+
+    @Test
+    void testRepeatedLinesCollapseKeepingTheFirstSample() {
+        LogCompactor compactor = compact(10, List.of(
+            "2026-01-01T10:00:01Z GET /health 200",
+            "2026-01-01T10:00:02Z GET /health 200",
+            "2026-01-01T10:00:03Z GET /health 200",
+            "started"));
+
+        assertEquals(4, compactor.lines());
+        assertEquals(2, compactor.entries());
+        assertEquals("""
+            [×3, lines 1-3] <TS> GET /health <N>
+                first: 2026-01-01T10:00:01Z GET /health 200
+            started
+            """, compactor.render());
+    }
+
+    @Test
+    void testTimestampedErrorRepeatsCollapse() {
+        LogCompactor compactor = compact(10, List.of(
+            "2026-01-01T10:00:01Z ERROR connection to db-7 refused after 3 retries",
+            "2026-01-01T10:00:02Z INFO retrying",
+            "2026-01-01T10:00:05Z ERROR connection to db-7 refused after 4 retries",
+            "2026-01-01T10:00:09Z ERROR connection to db-7 refused after 5 retries"));
+
+        assertEquals(2, compactor.entries());
+        assertEquals("""
+            [×3, lines 1-4] <TS> ERROR connection to db-<N> refused after <N> retries
+                first: 2026-01-01T10:00:01Z ERROR connection to db-7 refused after 3 retries
+            2026-01-01T10:00:02Z INFO retrying
+            """, compactor.render());
+    }
+
+    @Test
+    void testErrorsDoNotShareTemplatesWithOrdinaryLines() {
+        LogCompactor compactor = compact(10, List.of(
+            "request 1 failed with exception",
+            "request 2 failed with exception",
+            "request 3 failed with exception"));
+
+        assertEquals(1, compactor.entries());
+
+        compactor = compact(10, List.of("value error 1", "value ok 1"));
+        assertEquals(2, compactor.entries());
+    }
+
+    @Test
+    void testErrorsEvictTemplatesOnceFull() {
+        LogCompactor compactor = compact(3, List.of(
+            "INFO tick 1",
+            "INFO tick 2",
+            "DEBUG cache warm",
+            "WARN slow request",
+            "ERROR out of connections",
+            "java.lang.IllegalStateException: pool closed"));
+
+        String rendered = compactor.render();
+        assertEquals(3, compactor.entries());
+        // The most repeated template survives, the least repeated ones made room for the errors
+        assertTrue(rendered.contains("[×2, lines 1-2] INFO tick <N>"), rendered);
+        assertTrue(rendered.contains("ERROR out of connections"), rendered);
+        assertTrue(rendered.contains("java.lang.IllegalStateException: pool closed"), rendered);
+        assertFalse(rendered.contains("DEBUG cache warm"), rendered);
+        assertFalse(rendered.contains("WARN slow request"), rendered);
+        // The evicted lines are reported as omitted
+        assertTrue(rendered.endsWith("...(2 lines with further distinct patterns omitted)\n"), rendered);
+    }
+
+    @Test
+    void testErrorsAreOmittedOnlyWhenEveryEntryIsAnError() {
+        LogCompactor compactor = compact(2, List.of(
+            "ERROR first",
+            "ERROR second",
+            "ERROR third",
+            "INFO ignored"));
+
+        String rendered = compactor.render();
+        assertEquals(2, compactor.entries());
+        assertTrue(rendered.startsWith("ERROR first\nERROR second\n"), rendered);
+        assertTrue(rendered.endsWith("...(2 lines with further distinct patterns omitted)\n"), rendered);
+    }
+
+    @Test
+    void testBlankLinesAreCountedButNotKept() {
+        LogCompactor compactor = compact(10, List.of("", "  ", "ready"));
+
+        assertEquals(3, compactor.lines());
+        assertEquals("ready\n", compactor.render());
+    }
+}
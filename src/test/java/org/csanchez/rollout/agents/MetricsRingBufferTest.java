@@ -0,0 +1,72 @@
+package org.csanchez.rollout.agents;
+
+import org.csanchez.rollout.k8sagent.k8s.MetricsRingBuffer;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the ring buffer behind the pod metrics sampler
+ */
+class MetricsRingBufferTest {
+
+    @Test
+    void testEmptyBufferHasNoStats() {
+        assertNull(new MetricsRingBuffer(4).stats());
+    }
+
+    @Test
+    void testStatsOverWindow() {
+        MetricsRingBuffer buffer = new MetricsRingBuffer(20);
+        for (int i = 1; i <= 20; i++) {
+            buffer.add(i * 15_000L, i * 10L);
+        }
+
+        MetricsRingBuffer.Stats stats = buffer.stats();
+        assertEquals(20, stats.samples());
+        assertEquals(200, stats.latest());
+        assertEquals(10, stats.min());
+        assertEquals(200, stats.max());
+        assertEquals(100, stats.p50());
+        assertEquals(190, stats.p95());
+        // +10 every 15 seconds
+        assertEquals(40.0, stats.trendPerMinute(), 0.001);
+        assertEquals(19 * 15_000L, stats.windowMillis());
+    }
+
+    @Test
+    void testOldestSamplesAreOverwritten() {
+        MetricsRingBuffer buffer = new MetricsRingBuffer(3);
+        buffer.add(1_000, 500);
+        buffer.add(2_000, 1);
+        buffer.add(3_000, 2);
+        buffer.add(4_000, 3);
+
+        MetricsRingBuffer.Stats stats = buffer.stats();
+        assertEquals(3, buffer.size());
+        assertEquals(1, stats.min());
+        assertEquals(3, stats.max());
+        assertEquals(3, stats.latest());
+        assertEquals(2_000, stats.windowMillis());
+    }
+
+    @Test
+    void testSameTimestampIsIgnored() {
+        MetricsRingBuffer buffer = new MetricsRingBuffer(3);
+        buffer.add(1_000, 100);
+        buffer.add(1_000, 100);
+
+        assertEquals(1, buffer.size());
+        assertEquals(0.0, buffer.stats().trendPerMinute());
+    }
+
+    @Test
+    void testFlatSeriesHasNoTrend() {
+        MetricsRingBuffer buffer = new MetricsRingBuffer(10);
+        for (int i = 0; i < 10; i++) {
+            buffer.add(i * 15_000L, 256L * 1024 * 1024);
+        }
+
+        assertEquals(0.0, buffer.stats().trendPerMinute(), 0.001);
+    }
+}
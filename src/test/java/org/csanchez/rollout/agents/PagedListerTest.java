@@ -0,0 +1,110 @@
+package org.csanchez.rollout.agents;
+
+import io.fabric8.kubernetes.api.model.ListOptions;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodBuilder;
+import io.fabric8.kubernetes.api.model.PodList;
+import io.fabric8.kubernetes.api.model.PodListBuilder;
+import io.fabric8.kubernetes.client.Config;
+import io.fabric8.kubernetes.client.ConfigBuilder;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.kubernetes.client.dsl.FilterWatchListDeletable;
+import io.fabric8.kubernetes.client.dsl.PodResource;
+import io.fabric8.kubernetes.client.http.HttpClient;
+import io.fabric8.kubernetes.client.http.HttpRequest;
+import org.csanchez.rollout.k8sagent.k8s.PagedLister;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.net.URL;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for chunked LISTs: page sizes, continue tokens and truncation
+ */
+class PagedListerTest {
+
+    private static PodList page(int size, String continueToken) {
+        List<Pod> pods = IntStream.range(0, size)
+            .mapToObj(i -> new PodBuilder().withNewMetadata().withName("pod-" + i).endMetadata().build())
+            .toList();
+        return new PodListBuilder().withNewMetadata().withContinue(continueToken).endMetadata().withItems(pods).build();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static FilterWatchListDeletable<Pod, PodList, PodResource> query(PodList first, PodList... rest) {
+        FilterWatchListDeletable<Pod, PodList, PodResource> query = mock(FilterWatchListDeletable.class);
+        when(query.list(any(ListOptions.class))).thenReturn(first, rest);
+        when(query.withField(any(), any())).thenReturn(query);
+        return query;
+    }
+
+    @Test
+    void testReadsAllPagesFollowingContinueTokens() {
+        var query = query(page(250, "t1"), page(250, "t2"), page(100, null));
+
+        PagedLister.Page<Pod> result = PagedLister.list(query, null, 1000);
+
+        assertEquals(600, result.items().size());
+        assertFalse(result.truncated());
+        ArgumentCaptor<ListOptions> options = ArgumentCaptor.forClass(ListOptions.class);
+        verify(query, times(3)).list(options.capture());
+        assertNull(options.getAllValues().get(0).getContinue());
+        assertEquals("t1", options.getAllValues().get(1).getContinue());
+        assertEquals("t2", options.getAllValues().get(2).getContinue());
+        options.getAllValues().forEach(o -> assertEquals(PagedLister.PAGE_SIZE, o.getLimit()));
+    }
+
+    @Test
+    void testStopsAtMaxItemsAndFlagsTruncation() {
+        var query = query(page(250, "t1"), page(50, "t2"));
+
+        PagedLister.Page<Pod> result = PagedLister.list(query, null, 300);
+
+        assertEquals(300, result.items().size());
+        assertTrue(result.truncated());
+        ArgumentCaptor<ListOptions> options = ArgumentCaptor.forClass(ListOptions.class);
+        verify(query, times(2)).list(options.capture());
+        // The last page only asks for what is left of the budget
+        assertEquals(50L, options.getAllValues().get(1).getLimit());
+    }
+
+    @Test
+    void testNameIsPushedDownAsFieldSelector() {
+        var query = query(page(1, null));
+
+        PagedLister.Page<Pod> result = PagedLister.list(query, "pod-0", 500);
+
+        assertEquals(1, result.items().size());
+        assertFalse(result.truncated());
+        verify(query).withField("metadata.name", "pod-0");
+    }
+
+    @Test
+    void testMetadataListTimesOut() throws Exception {
+        KubernetesClient client = mock(KubernetesClient.class);
+        HttpClient http = mock(HttpClient.class);
+        HttpRequest.Builder builder = mock(HttpRequest.Builder.class, RETURNS_SELF);
+        Config config = new ConfigBuilder().withRequestTimeout(200).build();
+        when(client.getHttpClient()).thenReturn(http);
+        when(client.getMasterUrl()).thenReturn(new URL("https://kubernetes.default.svc/"));
+        when(client.getConfiguration()).thenReturn(config);
+        when(http.newHttpRequestBuilder()).thenReturn(builder);
+        // An API server that never answers
+        when(http.sendAsync(any(), eq(String.class))).thenReturn(new CompletableFuture<>());
+
+        long start = System.nanoTime();
+        KubernetesClientException e = assertThrows(KubernetesClientException.class,
+            () -> PagedLister.listMetadata(client, "default", "configmaps", null, 500));
+        assertTrue(e.getMessage().contains("Timed out"), e.getMessage());
+        assertTrue(System.nanoTime() - start < 5_000_000_000L, "Should give up after the request timeout");
+    }
+}
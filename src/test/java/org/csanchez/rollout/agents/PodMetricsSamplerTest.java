@@ -0,0 +1,99 @@
+package org.csanchez.rollout.agents;
+
+import io.fabric8.kubernetes.api.model.Quantity;
+import io.fabric8.kubernetes.api.model.metrics.v1beta1.PodMetrics;
+import io.fabric8.kubernetes.api.model.metrics.v1beta1.PodMetricsBuilder;
+import io.fabric8.kubernetes.client.server.mock.KubernetesServer;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.QuarkusTestProfile;
+import io.quarkus.test.junit.TestProfile;
+import io.quarkus.test.kubernetes.client.KubernetesTestServer;
+import io.quarkus.test.kubernetes.client.WithKubernetesTestServer;
+import jakarta.inject.Inject;
+import org.csanchez.rollout.k8sagent.k8s.K8sTools;
+import org.csanchez.rollout.k8sagent.k8s.PodMetricsSampler;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for serving getMetrics from the background sampler, and for falling back
+ * to metrics-server once the sampled readings are stale
+ */
+@QuarkusTest
+@WithKubernetesTestServer
+@TestProfile(PodMetricsSamplerTest.FastSamplingProfile.class)
+class PodMetricsSamplerTest {
+
+    public static class FastSamplingProfile implements QuarkusTestProfile {
+        @Override
+        public Map<String, String> getConfigOverrides() {
+            return Map.of("k8s.metrics.sampler.interval", "PT0.2S");
+        }
+    }
+
+    @KubernetesTestServer
+    KubernetesServer mockServer;
+
+    @Inject
+    K8sTools k8sTools;
+
+    @Inject
+    PodMetricsSampler sampler;
+
+    private static String newSession() {
+        return "test-" + UUID.randomUUID();
+    }
+
+    private static PodMetrics podMetrics(String namespace, String podName, String cpu, String timestamp) {
+        return new PodMetricsBuilder()
+            .withNewMetadata().withNamespace(namespace).withName(podName).endMetadata()
+            .withTimestamp(timestamp)
+            .withWindow("30s")
+            .addNewContainer()
+                .withName("app")
+                .addToUsage("cpu", new Quantity(cpu))
+                .addToUsage("memory", new Quantity("64Mi"))
+            .endContainer()
+            .build();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static String cpu(Map<String, Object> metrics) {
+        return (String) ((List<Map<String, Object>>) metrics.get("containers")).get(0).get("cpu");
+    }
+
+    @Test
+    void testStaleSamplesFallBackToMetricsServer() throws InterruptedException {
+        String namespace = "metrics-" + UUID.randomUUID().toString().substring(0, 8);
+        String path = "/apis/metrics.k8s.io/v1beta1/namespaces/" + namespace + "/pods/canary-1";
+        mockServer.expect().get().withPath(path)
+            .andReturn(200, podMetrics(namespace, "canary-1", "100m", "2026-01-01T10:00:00Z")).once();
+        mockServer.expect().get().withPath(path)
+            .andReturn(200, podMetrics(namespace, "canary-1", "300m", "2026-01-01T10:05:00Z")).always();
+
+        // Nothing sampled yet: read live, which also seeds the sampler
+        Map<String, Object> live = k8sTools.getMetrics(newSession(), namespace, "canary-1");
+        assertNull(live.get("source"), live.toString());
+        assertEquals("100m", cpu(live));
+
+        // Fresh reading: served from memory
+        Map<String, Object> sampled = k8sTools.getMetrics(newSession(), namespace, "canary-1");
+        assertEquals("sampler", sampled.get("source"), sampled.toString());
+        assertNotNull(sampler.latest(namespace, "canary-1"));
+
+        // The mock has no pod metrics to LIST for the namespace, so the sampler gets no further readings
+        Thread.sleep(1000);
+        assertNull(sampler.track(namespace, "canary-1"));
+        assertNull(sampler.latest(namespace, "canary-1"));
+
+        Map<String, Object> refreshed = k8sTools.getMetrics(newSession(), namespace, "canary-1");
+        assertNull(refreshed.get("source"), refreshed.toString());
+        assertEquals("300m", cpu(refreshed));
+        assertEquals("2026-01-01T10:05:00Z", refreshed.get("timestamp"));
+    }
+}
@@ -0,0 +1,92 @@
+package org.csanchez.rollout.agents;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.smallrye.mutiny.subscription.Cancellable;
+import jakarta.inject.Inject;
+import org.csanchez.rollout.k8sagent.service.RateLimitCoordinator;
+import org.csanchez.rollout.k8sagent.service.RateLimitCoordinator.Permit;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the shared LLM rate-limit gate and concurrency limit
+ */
+@QuarkusTest
+class RateLimitCoordinatorTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    @Inject
+    RateLimitCoordinator coordinator;
+
+    @Test
+    void testCallsBeyondLimitWaitForSlot() throws Exception {
+        int limit = coordinator.getLimit();
+        List<Permit> permits = new ArrayList<>();
+        for (int i = 0; i < limit; i++) {
+            permits.add(coordinator.acquire().await().atMost(TIMEOUT));
+        }
+
+        CompletableFuture<Permit> waiting = coordinator.acquire().subscribeAsCompletionStage();
+        assertFalse(waiting.isDone());
+        assertEquals(1, coordinator.getWaiting());
+
+        coordinator.release(permits.remove(0), null);
+        permits.add(waiting.get());
+        assertEquals(0, coordinator.getWaiting());
+
+        permits.forEach(permit -> coordinator.release(permit, null));
+        assertEquals(0, coordinator.getInFlight());
+    }
+
+    @Test
+    void testRetryHintHoldsNewCalls() throws Exception {
+        Permit permit = coordinator.acquire().await().atMost(TIMEOUT);
+        coordinator.release(permit, new RuntimeException("429 RESOURCE_EXHAUSTED. Please retry in 1s"));
+
+        long start = System.nanoTime();
+        CompletableFuture<Permit> next = coordinator.acquire().subscribeAsCompletionStage();
+        assertFalse(next.isDone());
+
+        coordinator.release(next.get(), null);
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() >= 900);
+    }
+
+    @Test
+    void testCancelledCallersDoNotLeakSlots() throws Exception {
+        // Callers that give up race with the grants; a permit granted to a caller that
+        // cancelled before it was delivered must be given back
+        ExecutorService callers = Executors.newFixedThreadPool(4);
+        for (int t = 0; t < 4; t++) {
+            callers.submit(() -> {
+                for (int i = 0; i < 2000; i++) {
+                    Cancellable subscription = coordinator.acquire().subscribe()
+                        .with(permit -> ForkJoinPool.commonPool().execute(() -> coordinator.release(permit, null)));
+                    if (ThreadLocalRandom.current().nextBoolean()) {
+                        subscription.cancel();
+                    }
+                }
+            });
+        }
+        callers.shutdown();
+        assertTrue(callers.awaitTermination(TIMEOUT.toSeconds(), TimeUnit.SECONDS));
+
+        long deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while ((coordinator.getInFlight() > 0 || coordinator.getWaiting() > 0) && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(0, coordinator.getWaiting());
+        assertEquals(0, coordinator.getInFlight());
+    }
+}
@@ -0,0 +1,123 @@
+package org.csanchez.rollout.agents;
+
+import org.csanchez.rollout.k8sagent.utils.DefaultRetryClassifier;
+import org.csanchez.rollout.k8sagent.utils.RetryClassifier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares classifying a failed LLM call with the former RetryHelper checks
+ * (is429Error, then isTransientGeminiError: String.contains scans and a full stack
+ * walk) against {@link DefaultRetryClassifier}, for a Gemini quota error, a 503,
+ * an unrelated NullPointerException with a deep stack and a permanent error.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RetryClassifierBenchmark {
+
+    @Param({ "quota", "unavailable", "npe", "permanent" })
+    public String failureType;
+
+    private final RetryClassifier classifier = new DefaultRetryClassifier();
+    private Exception failure;
+
+    @Setup
+    public void setup() {
+        failure = switch (failureType) {
+            case "quota" -> new RuntimeException("{\"error\": {\"code\": 429, \"message\": \"You exceeded your current quota, "
+                + "please check your plan and billing details. Quota exceeded for metric: "
+                + "generativelanguage.googleapis.com/generate_content_free_tier_requests, limit: 10. "
+                + "Please retry in 59.955530121s.\", \"status\": \"RESOURCE_EXHAUSTED\"}}");
+            case "unavailable" -> new RuntimeException("{\"error\": {\"code\": 503, \"message\": "
+                + "\"The model is overloaded. Please try again later.\", \"status\": \"UNAVAILABLE\"}}");
+            case "npe" -> deepNullPointer(60);
+            default -> new IllegalArgumentException("{\"error\": {\"code\": 400, \"message\": "
+                + "\"API key not valid. Please pass a valid API key.\", \"status\": \"INVALID_ARGUMENT\"}}");
+        };
+    }
+
+    private static NullPointerException deepNullPointer(int depth) {
+        try {
+            recurse(depth);
+            throw new IllegalStateException();
+        } catch (NullPointerException e) {
+            return e;
+        }
+    }
+
+    private static void recurse(int depth) {
+        if (depth == 0) {
+            Object nothing = null;
+            nothing.hashCode();
+        }
+        recurse(depth - 1);
+    }
+
+    @Benchmark
+    public boolean legacyContains() {
+        return legacyIs429Error(failure) || legacyIsTransientGeminiError(failure);
+    }
+
+    @Benchmark
+    public RetryClassifier.Classification classifier() {
+        return classifier.classify(failure);
+    }
+
+    private static boolean legacyIs429Error(Exception e) {
+        String message = e.getMessage();
+        if (message == null) {
+            return false;
+        }
+        return message.contains("429") ||
+            message.contains("quota") ||
+            message.contains("rate limit") ||
+            message.contains("RESOURCE_EXHAUSTED") ||
+            message.contains("exceeded your current quota");
+    }
+
+    private static boolean legacyIsTransientGeminiError(Exception e) {
+        if (e instanceof NullPointerException) {
+            String message = e.getMessage();
+            if (message != null && message.contains("\"parts\" is null")) {
+                return true;
+            }
+            for (StackTraceElement element : e.getStackTrace()) {
+                if (element.getClassName().contains("GenerateContentResponseHandler")) {
+                    return true;
+                }
+            }
+        }
+        String message = e.getMessage();
+        if (message != null) {
+            return message.contains("503") ||
+                message.contains("Service Unavailable") ||
+                message.contains("temporarily unavailable") ||
+                message.contains("Internal Server Error");
+        }
+        return false;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(RetryClassifierBenchmark.class.getSimpleName())
+            .build()).run();
+    }
+}
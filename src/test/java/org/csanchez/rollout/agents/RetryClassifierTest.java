@@ -0,0 +1,67 @@
+package org.csanchez.rollout.agents;
+
+import jakarta.ws.rs.WebApplicationException;
+import org.csanchez.rollout.k8sagent.utils.DefaultRetryClassifier;
+import org.csanchez.rollout.k8sagent.utils.RetryClassifier;
+import org.csanchez.rollout.k8sagent.utils.RetryClassifier.Classification;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the default classification of retryable LLM failures
+ */
+class RetryClassifierTest {
+
+    private final RetryClassifier classifier = new DefaultRetryClassifier();
+
+    @Test
+    void testMessageMarkers() {
+        assertEquals(Classification.RATE_LIMITED, classifier.classify(new RuntimeException("HTTP 429 Too Many Requests")));
+        assertEquals(Classification.RATE_LIMITED, classifier.classify(new RuntimeException(
+            "You exceeded your current quota, please check your plan and billing details. Please retry in 59.9s")));
+        assertEquals(Classification.TRANSIENT, classifier.classify(new RuntimeException("503 Service Unavailable")));
+        assertEquals(Classification.TRANSIENT, classifier.classify(new RuntimeException("The model is temporarily unavailable")));
+        assertEquals(Classification.PERMANENT, classifier.classify(new IllegalArgumentException("Invalid API key")));
+        assertEquals(Classification.PERMANENT, classifier.classify(new RuntimeException((String) null)));
+    }
+
+    @Test
+    void testRateLimitWinsOverTransientMarkers() {
+        assertEquals(Classification.RATE_LIMITED,
+            classifier.classify(new RuntimeException("503 Service Unavailable: RESOURCE_EXHAUSTED")));
+    }
+
+    @Test
+    void testHttpStatusTakesPrecedenceOverMessage() {
+        assertEquals(Classification.RATE_LIMITED, classifier.classify(new WebApplicationException(429)));
+        assertEquals(Classification.TRANSIENT, classifier.classify(new WebApplicationException(502)));
+        assertEquals(Classification.PERMANENT, classifier.classify(new WebApplicationException("quota project not set", 400)));
+    }
+
+    @Test
+    void testCauseChainIsInspected() {
+        Exception wrapped = new RuntimeException("AI service call failed",
+            new IllegalStateException("request failed", new WebApplicationException(503)));
+        assertEquals(Classification.TRANSIENT, classifier.classify(wrapped));
+
+        Exception rateLimitedCause = new RuntimeException("503 Service Unavailable",
+            new RuntimeException("RESOURCE_EXHAUSTED"));
+        assertEquals(Classification.RATE_LIMITED, classifier.classify(rateLimitedCause));
+    }
+
+    @Test
+    void testGeminiEmptyResponse() {
+        assertEquals(Classification.TRANSIENT, classifier.classify(
+            new NullPointerException("Cannot invoke \"java.util.List.size()\" because \"parts\" is null")));
+
+        NullPointerException fromHandler = new NullPointerException();
+        fromHandler.setStackTrace(new StackTraceElement[] {
+            new StackTraceElement("io.quarkiverse.langchain4j.gemini.common.GenerateContentResponseHandler",
+                "getText", "GenerateContentResponseHandler.java", 42)
+        });
+        assertEquals(Classification.TRANSIENT, classifier.classify(fromHandler));
+
+        assertEquals(Classification.PERMANENT, classifier.classify(new NullPointerException("other")));
+    }
+}
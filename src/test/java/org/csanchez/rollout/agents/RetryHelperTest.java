@@ -0,0 +1,62 @@
+package org.csanchez.rollout.agents;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.smallrye.mutiny.Uni;
+import org.csanchez.rollout.k8sagent.utils.RetryHelper;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the async retry variants of RetryHelper
+ * (a Quarkus test so io.quarkus.logging.Log is available)
+ */
+@QuarkusTest
+class RetryHelperTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    @Test
+    void testRetriesRateLimitedCallOnTimer() {
+        AtomicInteger attempts = new AtomicInteger();
+        Uni<String> result = RetryHelper.executeWithRetryAsync(() -> attempts.incrementAndGet() == 1
+                ? Uni.createFrom().failure(new RuntimeException("429 Too Many Requests. Please retry in 0.1s"))
+                : Uni.createFrom().item("ok"),
+            "test");
+
+        // Subscribing does not wait out the backoff on the calling thread
+        CompletableFuture<String> future = result.subscribeAsCompletionStage();
+        assertFalse(future.isDone());
+
+        assertEquals("ok", Uni.createFrom().completionStage(future).await().atMost(TIMEOUT));
+        assertEquals(2, attempts.get());
+    }
+
+    @Test
+    void testDoesNotRetryOtherErrors() {
+        AtomicInteger attempts = new AtomicInteger();
+        Uni<String> result = RetryHelper.executeWithRetryOnTransientErrorsAsync(() -> {
+            attempts.incrementAndGet();
+            return Uni.createFrom().failure(new IllegalArgumentException("bad request"));
+        }, "test");
+
+        assertThrows(IllegalArgumentException.class, () -> result.await().atMost(TIMEOUT));
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    void testRetriesTransientErrorsOnlyWhenAsked() {
+        AtomicInteger attempts = new AtomicInteger();
+        Uni<String> result = RetryHelper.executeWithRetryAsync(() -> {
+            attempts.incrementAndGet();
+            return Uni.createFrom().failure(new RuntimeException("503 Service Unavailable"));
+        }, "test");
+
+        assertThrows(RuntimeException.class, () -> result.await().atMost(TIMEOUT));
+        assertEquals(1, attempts.get());
+    }
+}
@@ -0,0 +1,161 @@
+package org.csanchez.rollout.agents;
+
+import org.csanchez.rollout.k8sagent.utils.Backoff;
+import org.csanchez.rollout.k8sagent.utils.RetryBudget;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Discrete-time simulation of many analyses hitting a shared rate limit at the same
+ * moment, comparing how their retries land on the server with deterministic
+ * exponential backoff, jittered backoff and a retry budget.
+ */
+class RetryStormSimulationTest {
+
+    private static final int CLIENTS = 200;
+    private static final int MAX_ATTEMPTS = 3;
+    private static final Duration BASE = Duration.ofSeconds(1);
+    private static final Duration CAP = Duration.ofSeconds(60);
+
+    /** Server capacity: requests accepted per 100ms slot, the rest get a 429 */
+    private static final int SLOT_MILLIS = 100;
+    private static final int SLOT_CAPACITY = 10;
+
+    private enum Policy { DETERMINISTIC, FULL_JITTER, DECORRELATED_JITTER }
+
+    private record Result(int peakRetriesPerSlot, int rejected, int succeeded, int retries) {
+    }
+
+    private record Attempt(long atMillis, int number, Duration previousDelay) {
+    }
+
+    /**
+     * Every client's first attempt at t=0 gets a 429 (the shared rate-limit event);
+     * the clients then retry per the policy against a server with a fixed capacity per slot
+     */
+    private static Result simulate(Policy policy, RetryBudget budget, AtomicLong clock, long seed) {
+        Random random = new Random(seed);
+        PriorityQueue<Attempt> queue = new PriorityQueue<>((a, b) -> Long.compare(a.atMillis(), b.atMillis()));
+        for (int i = 0; i < CLIENTS; i++) {
+            budget.onFirstAttempt();
+            queue.add(new Attempt(0, 1, BASE));
+        }
+
+        int[] load = new int[10_000];
+        int[] retryLoad = new int[load.length];
+        int peak = 0;
+        int rejected = 0;
+        int succeeded = 0;
+        int retries = 0;
+        while (!queue.isEmpty()) {
+            Attempt attempt = queue.poll();
+            clock.set(TimeUnit.MILLISECONDS.toNanos(attempt.atMillis()));
+            int slot = (int) (attempt.atMillis() / SLOT_MILLIS);
+            load[slot]++;
+            if (attempt.number() > 1) {
+                retries++;
+                retryLoad[slot]++;
+                peak = Math.max(peak, retryLoad[slot]);
+            }
+
+            // The shared rate-limit event: every first attempt is rejected
+            if (attempt.number() > 1 && load[slot] <= SLOT_CAPACITY) {
+                succeeded++;
+                continue;
+            }
+            rejected++;
+            if (attempt.number() == MAX_ATTEMPTS || !budget.tryAcquireRetry()) {
+                continue;
+            }
+            Duration delay = switch (policy) {
+                case DETERMINISTIC -> BASE.multipliedBy(1L << (attempt.number() - 1));
+                case FULL_JITTER -> Backoff.fullJitter(BASE, CAP, attempt.number(), random);
+                case DECORRELATED_JITTER -> Backoff.decorrelatedJitter(BASE, CAP, attempt.previousDelay(), random);
+            };
+            queue.add(new Attempt(attempt.atMillis() + delay.toMillis(), attempt.number() + 1, delay));
+        }
+        return new Result(peak, rejected, succeeded, retries);
+    }
+
+    private static Result simulate(Policy policy) {
+        AtomicLong clock = new AtomicLong();
+        // A budget large enough not to interfere
+        return simulate(policy, new RetryBudget(1.0, CLIENTS * MAX_ATTEMPTS, 0, clock::get), clock, 42);
+    }
+
+    @Test
+    void testDeterministicBackoffRetriesInLockstep() {
+        Result result = simulate(Policy.DETERMINISTIC);
+
+        // All clients come back in the same slot, and each of the two retry rounds
+        // only gets one slot's worth of capacity
+        assertEquals(CLIENTS, result.peakRetriesPerSlot());
+        assertEquals(2 * SLOT_CAPACITY, result.succeeded());
+    }
+
+    @Test
+    void testJitterFlattensRetryStorm() {
+        Result deterministic = simulate(Policy.DETERMINISTIC);
+        for (Policy policy : new Policy[] { Policy.FULL_JITTER, Policy.DECORRELATED_JITTER }) {
+            Result jittered = simulate(policy);
+
+            assertTrue(jittered.peakRetriesPerSlot() <= CLIENTS / 5,
+                policy + " peak " + jittered.peakRetriesPerSlot());
+            assertTrue(jittered.succeeded() > 2 * deterministic.succeeded(),
+                policy + " succeeded " + jittered.succeeded() + " vs " + deterministic.succeeded());
+            assertTrue(jittered.rejected() < deterministic.rejected(),
+                policy + " rejected " + jittered.rejected() + " vs " + deterministic.rejected());
+        }
+    }
+
+    @Test
+    void testRetryBudgetBoundsRetries() {
+        AtomicLong clock = new AtomicLong();
+        RetryBudget budget = new RetryBudget(0.2, 10, 0.1, clock::get);
+        Result budgeted = simulate(Policy.DECORRELATED_JITTER, budget, clock, 42);
+        Result unbudgeted = simulate(Policy.DECORRELATED_JITTER);
+
+        // At most 20% of first attempts (the bucket was already full, so the burst
+        // covers the deposits) plus the trickle over the simulated time
+        double trickle = 0.1 * TimeUnit.NANOSECONDS.toSeconds(clock.get());
+        assertTrue(budgeted.retries() <= 0.2 * CLIENTS + trickle, "retries " + budgeted.retries());
+        assertTrue(budgeted.retries() < unbudgeted.retries() / 10,
+            "retries " + budgeted.retries() + " vs " + unbudgeted.retries());
+    }
+
+    @Test
+    void testBudgetRefillsWithTraffic() {
+        AtomicLong clock = new AtomicLong();
+        RetryBudget budget = new RetryBudget(0.5, 2, 0, clock::get);
+        assertTrue(budget.tryAcquireRetry());
+        assertTrue(budget.tryAcquireRetry());
+        assertFalse(budget.tryAcquireRetry());
+
+        budget.onFirstAttempt();
+        assertFalse(budget.tryAcquireRetry());
+        budget.onFirstAttempt();
+        assertTrue(budget.tryAcquireRetry());
+    }
+
+    @Test
+    void testJitterStaysInBounds() {
+        Random random = new Random(7);
+        for (int i = 0; i < 1000; i++) {
+            Duration full = Backoff.fullJitter(BASE, CAP, 10, random);
+            assertTrue(!full.isNegative() && full.compareTo(CAP) <= 0);
+
+            Duration decorrelated = Backoff.decorrelatedJitter(BASE, CAP, Duration.ofSeconds(30), random);
+            assertTrue(decorrelated.compareTo(BASE) >= 0 && decorrelated.compareTo(CAP) <= 0);
+
+            Duration spread = Backoff.spread(Duration.ofSeconds(10), random);
+            assertTrue(spread.getSeconds() >= 10 && spread.compareTo(Duration.ofSeconds(15)) <= 0);
+        }
+    }
+}
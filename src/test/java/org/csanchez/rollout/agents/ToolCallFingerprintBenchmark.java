@@ -0,0 +1,80 @@
+package org.csanchez.rollout.agents;
+
+import org.csanchez.rollout.k8sagent.utils.LongHashSet;
+import org.csanchez.rollout.k8sagent.utils.ToolCallFingerprint;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the duplicate check of ToolCallLimiter: the former String key
+ * (toolName + ":" + params dump) in a ConcurrentHashMap against the 64-bit
+ * fingerprint in a LongHashSet. Each invocation builds the key of a new call and
+ * looks it up in a session history that already holds four calls.
+ * Run with -prof gc to compare allocation rates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ToolCallFingerprintBenchmark {
+
+    private static final String TOOL = "getLogs";
+
+    private final Object[][] history = {
+        { "rollouts-test-system", "canary-demo-7d8f9c5b6-abc12", null, Boolean.FALSE, 100, null, null },
+        { "rollouts-test-system", "canary-demo-7d8f9c5b6-def34", "app", Boolean.TRUE, 200, null, null },
+        { "rollouts-test-system", "stable-demo-5c6d7e8f9-ghi56", null, Boolean.FALSE, 100, 300, null },
+        { "default", "canary-demo-7d8f9c5b6-abc12", null, null, null, null, "2024-01-01T10:00:00Z" },
+    };
+
+    private final Object[] call = { "rollouts-test-system", "canary-demo-7d8f9c5b6-abc12", null, Boolean.TRUE, 100, null, null };
+
+    private Map<String, Integer> stringHistory;
+    private LongHashSet fingerprintHistory;
+
+    @Setup
+    public void setup() {
+        stringHistory = new ConcurrentHashMap<>();
+        fingerprintHistory = new LongHashSet(5);
+        for (int i = 0; i < history.length; i++) {
+            stringHistory.put(TOOL + ":" + Arrays.toString(history[i]), i + 1);
+            fingerprintHistory.add(ToolCallFingerprint.of(TOOL, history[i]));
+        }
+    }
+
+    @Benchmark
+    public boolean stringKey() {
+        String callKey = TOOL + ":" + Arrays.toString(call);
+        return !stringHistory.containsKey(callKey);
+    }
+
+    @Benchmark
+    public boolean fingerprint() {
+        long fingerprint = ToolCallFingerprint.of(TOOL, call);
+        return !fingerprintHistory.contains(fingerprint);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(ToolCallFingerprintBenchmark.class.getSimpleName())
+            .build()).run();
+    }
+}
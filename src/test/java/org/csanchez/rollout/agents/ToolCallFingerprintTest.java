@@ -0,0 +1,83 @@
+package org.csanchez.rollout.agents;
+
+import org.csanchez.rollout.k8sagent.utils.LongHashSet;
+import org.csanchez.rollout.k8sagent.utils.ToolCallFingerprint;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for tool call fingerprints and the primitive set that stores them
+ */
+class ToolCallFingerprintTest {
+
+    @Test
+    void testSameCallSameFingerprint() {
+        assertEquals(
+            ToolCallFingerprint.of("getLogs", "default", "my-pod", null, false, 100),
+            ToolCallFingerprint.of("getLogs", "default", "my-pod", null, false, 100));
+    }
+
+    @Test
+    void testArgumentsAreCanonicalized() {
+        assertEquals(
+            ToolCallFingerprint.of("getLogs", "default", "my-pod", null),
+            ToolCallFingerprint.of("getLogs", " default ", "my-pod", "  "));
+        assertEquals(
+            ToolCallFingerprint.of("getEvents", "default", 20),
+            ToolCallFingerprint.of("getEvents", "default", 20L));
+
+        Map<String, String> changes = new LinkedHashMap<>();
+        changes.put("a.txt", "1");
+        changes.put("b.txt", "2");
+        Map<String, String> reordered = new LinkedHashMap<>();
+        reordered.put("b.txt", "2");
+        reordered.put("a.txt", "1");
+        assertEquals(
+            ToolCallFingerprint.of("createGitHubPR", "repo", changes),
+            ToolCallFingerprint.of("createGitHubPR", "repo", reordered));
+    }
+
+    @Test
+    void testDifferentCallsDifferentFingerprints() {
+        long base = ToolCallFingerprint.of("getLogs", "default", "my-pod", null, false);
+        assertNotEquals(base, ToolCallFingerprint.of("getMetrics", "default", "my-pod", null, false));
+        assertNotEquals(base, ToolCallFingerprint.of("getLogs", "default", "my-pod", null, true));
+        assertNotEquals(base, ToolCallFingerprint.of("getLogs", "default", "other-pod", null, false));
+        // Arguments are positional
+        assertNotEquals(
+            ToolCallFingerprint.of("inspectResources", "default", null, "app"),
+            ToolCallFingerprint.of("inspectResources", "default", "app", null));
+        assertNotEquals(
+            ToolCallFingerprint.of("getLogs", "default", 1),
+            ToolCallFingerprint.of("getLogs", "default", "1"));
+    }
+
+    @Test
+    void testLongHashSet() {
+        LongHashSet set = new LongHashSet();
+        assertTrue(set.add(42));
+        assertFalse(set.add(42));
+        assertTrue(set.add(0));
+        assertFalse(set.add(0));
+        assertTrue(set.contains(0));
+        assertFalse(set.contains(7));
+
+        // Grow well past the initial table
+        for (long i = 1; i <= 1000; i++) {
+            set.add(i * 0x9E3779B97F4A7C15L);
+        }
+        for (long i = 1; i <= 1000; i++) {
+            assertTrue(set.contains(i * 0x9E3779B97F4A7C15L));
+        }
+        assertEquals(1002, set.size());
+
+        set.clear();
+        assertEquals(0, set.size());
+        assertFalse(set.contains(42));
+        assertFalse(set.contains(0));
+    }
+}
@@ -0,0 +1,123 @@
+package org.csanchez.rollout.agents;
+
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.csanchez.rollout.k8sagent.utils.ToolCallLimiter;
+import org.csanchez.rollout.k8sagent.utils.ToolCallLimiter.Decision;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the per-session tool call limits, including under concurrent tool calls
+ */
+@QuarkusTest
+class ToolCallLimiterTest {
+
+    @Inject
+    ToolCallLimiter limiter;
+
+    private static String newSession() {
+        return "test-" + UUID.randomUUID();
+    }
+
+    @Test
+    void testSessionLimit() {
+        String session = newSession();
+        int max = limiter.getMaxToolCalls();
+        for (int i = 0; i < max; i++) {
+            assertEquals(Decision.ALLOWED, limiter.acquire(session, "getLogs", "default", "pod-" + i));
+        }
+        assertEquals(Decision.SESSION_LIMIT, limiter.acquire(session, "getLogs", "default", "pod-" + max));
+        assertEquals(max, limiter.getCallCount(session));
+    }
+
+    @Test
+    void testDuplicateDoesNotConsumeSlot() {
+        String session = newSession();
+        assertEquals(Decision.ALLOWED, limiter.acquire(session, "getLogs", "default", "pod-1"));
+        assertEquals(Decision.DUPLICATE, limiter.acquire(session, "getLogs", "default", "pod-1"));
+        assertEquals(1, limiter.getCallCount(session));
+    }
+
+    @Test
+    void testPerToolLimit() {
+        // agent.tool-calls.max-per-tool.createGitHubPR=1
+        String session = newSession();
+        assertEquals(Decision.ALLOWED, limiter.acquire(session, "createGitHubPR", "https://github.com/org/repo", "fix 1"));
+        assertEquals(Decision.TOOL_LIMIT, limiter.acquire(session, "createGitHubPR", "https://github.com/org/repo", "fix 2"));
+        assertEquals(1, limiter.getCallCount(session));
+    }
+
+    @Test
+    void testResetSession() {
+        String session = newSession();
+        limiter.acquire(session, "getLogs", "default", "pod-1");
+        limiter.resetSession(session);
+        assertEquals(0, limiter.getCallCount(session));
+        assertEquals(Decision.ALLOWED, limiter.acquire(session, "getLogs", "default", "pod-1"));
+    }
+
+    @Test
+    void testLimitHoldsUnderConcurrentCalls() throws Exception {
+        int threads = 64;
+        for (int round = 0; round < 20; round++) {
+            String session = newSession();
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Decision>> results = new ArrayList<>();
+            try (ExecutorService executor = Executors.newFixedThreadPool(threads)) {
+                for (int i = 0; i < threads; i++) {
+                    String pod = "pod-" + i;
+                    results.add(executor.submit(() -> {
+                        start.await();
+                        return limiter.acquire(session, "getLogs", "default", pod);
+                    }));
+                }
+                start.countDown();
+
+                int allowed = 0;
+                for (Future<Decision> result : results) {
+                    if (result.get() == Decision.ALLOWED) {
+                        allowed++;
+                    }
+                }
+                assertEquals(limiter.getMaxToolCalls(), allowed);
+                assertEquals(limiter.getMaxToolCalls(), limiter.getCallCount(session));
+            }
+        }
+    }
+
+    @Test
+    void testConcurrentDuplicatesAllowedOnce() throws Exception {
+        String session = newSession();
+        int threads = 32;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Decision>> results = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(threads)) {
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return limiter.acquire(session, "snapshotPod", "default", "pod-1", null);
+                }));
+            }
+            start.countDown();
+
+            long allowed = 0;
+            for (Future<Decision> result : results) {
+                if (result.get() == Decision.ALLOWED) {
+                    allowed++;
+                }
+            }
+            assertEquals(1, allowed);
+            assertEquals(1, limiter.getCallCount(session));
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package org.csanchez.rollout.agents;
+
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.csanchez.rollout.k8sagent.k8s.ToolResultCache;
+import org.csanchez.rollout.k8sagent.utils.ToolCallFingerprint;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the shared tool result cache (informer cache disabled, so entries only expire by TTL)
+ */
+@QuarkusTest
+class ToolResultCacheTest {
+
+    @Inject
+    ToolResultCache cache;
+
+    @Test
+    void testRepeatedCallIsServedFromCache() {
+        long key = ToolCallFingerprint.of("debugPod", "default", "cached-pod");
+        assertNull(cache.get("debugPod", key, "default"));
+
+        Map<String, Object> result = Map.of("podName", "cached-pod", "phase", "Running");
+        cache.put(key, cache.generation("default"), result);
+
+        assertSame(result, cache.get("debugPod", key, "default"));
+    }
+
+    @Test
+    void testErrorsAreNotCached() {
+        long key = ToolCallFingerprint.of("debugPod", "default", "missing-pod");
+        cache.put(key, cache.generation("default"), Map.of("error", "Pod not found"));
+
+        assertNull(cache.get("debugPod", key, "default"));
+    }
+
+    @Test
+    void testUntrackedNamespaceHasNoGeneration() {
+        assertEquals(-1, cache.generation("default"));
+        assertEquals(-1, cache.generation(null));
+    }
+}